@@ -52,14 +52,14 @@ public abstract class AnimBuilder
      * Starts a tween on the supplied layer's x-translation.
      */
     public Animation.One tweenX (Layer layer) {
-        return tween(onX(layer));
+        return tween(layer, LayerValue.X);
     }
 
     /**
      * Starts a tween on the supplied layer's y-translation.
      */
     public Animation.One tweenY (Layer layer) {
-        return tween(onY(layer));
+        return tween(layer, LayerValue.Y);
     }
 
     /**
@@ -72,23 +72,15 @@ public abstract class AnimBuilder
     /**
      * Starts a tween on the supplied layer's rotation.
      */
-    public Animation.One tweenRotation (final Layer layer) {
-        Asserts.checkNotNull(layer);
-        return tween(new Animation.Value() {
-            public float initial () { return layer.rotation(); }
-            public void set (float value) { layer.setRotation(value); }
-        });
+    public Animation.One tweenRotation (Layer layer) {
+        return tween(layer, LayerValue.ROTATION);
     }
 
     /**
      * Starts a tween on the supplied layer's x/y-scale.
      */
-    public Animation.One tweenScale (final Layer layer) {
-        Asserts.checkNotNull(layer);
-        return tween(new Animation.Value() {
-            public float initial () { return layer.scaleX(); }
-            public void set (float value) { layer.setScale(value); }
-        });
+    public Animation.One tweenScale (Layer layer) {
+        return tween(layer, LayerValue.SCALE);
     }
 
     /**
@@ -102,25 +94,21 @@ public abstract class AnimBuilder
      * Starts a tween on the supplied layer's x-scale.
      */
     public Animation.One tweenScaleX (Layer layer) {
-        return tween(onScaleX(layer));
+        return tween(layer, LayerValue.SCALE_X);
     }
 
     /**
      * Starts a tween on the supplied layer's y-scale.
      */
     public Animation.One tweenScaleY (Layer layer) {
-        return tween(onScaleY(layer));
+        return tween(layer, LayerValue.SCALE_Y);
     }
 
     /**
      * Starts a tween on the supplied layer's transparency.
      */
-    public Animation.One tweenAlpha (final Layer layer) {
-        Asserts.checkNotNull(layer);
-        return tween(new Animation.Value() {
-            public float initial () { return layer.alpha(); }
-            public void set (float value) { layer.setAlpha(value); }
-        });
+    public Animation.One tweenAlpha (Layer layer) {
+        return tween(layer, LayerValue.ALPHA);
     }
 
     /**
@@ -132,6 +120,30 @@ public abstract class AnimBuilder
         return add(new Animation.One(value));
     }
 
+    /**
+     * Starts a tween on the specified property (e.g. {@link LayerValue#ALPHA}) of the supplied
+     * layer. The layer tweens above are all created via this method.
+     */
+    protected Animation.One tween (Layer layer, int prop) {
+        return tween(new LayerValue(layer, prop));
+    }
+
+    /**
+     * Starts a {@link Tweens} animation which manages many simple tweens on the slots of the
+     * supplied target. Tweens are added to the returned animation as needed.
+     */
+    public Tweens tweens (Tweens.Target target) {
+        return add(new Tweens(target));
+    }
+
+    /**
+     * Starts a timeline that plays the supplied keyframe track on {@code layer}.
+     */
+    public Timeline timeline (Layer layer, Timeline.Track track) {
+        Asserts.checkNotNull(layer);
+        return add(new Timeline(layer, track));
+    }
+
     /**
      * Starts a flipbook animation that displays in {@code layer}. Note that the image layer in
      * question will have its translation adjusted based on the offset of the current frame. Thus
@@ -373,50 +385,84 @@ public abstract class AnimBuilder
         }});
     }
 
-    protected static Animation.Value onX (final Layer layer) {
-        Asserts.checkNotNull(layer);
-        return new Animation.Value() {
-            public float initial () { return layer.tx(); }
-            public void set (float value) { layer.setTx(value); }
-        };
-    }
-
-    protected static Animation.Value onY (final Layer layer) {
-        Asserts.checkNotNull(layer);
-        return new Animation.Value() {
-            public float initial () { return layer.ty(); }
-            public void set (float value) { layer.setTy(value); }
-        };
+    /** Tweens a single property of a layer. Mutable so that it may be reused. */
+    protected static class LayerValue implements Animation.Value {
+        public static final int X = 0, Y = 1, ALPHA = 2, ROTATION = 3, SCALE = 4, SCALE_X = 5,
+            SCALE_Y = 6;
+        /** The number of properties. */
+        public static final int PROPS = 7;
+
+        public Layer layer;
+        public int prop;
+
+        public LayerValue () {}
+
+        public LayerValue (Layer layer, int prop) {
+            Asserts.checkNotNull(layer);
+            this.layer = layer;
+            this.prop = prop;
+        }
+
+        /** Returns the properties updated by this value, as a bit mask. Tweening the scale
+         * updates both the x- and y-scale. */
+        public int props () {
+            return (prop == SCALE) ? (1 << SCALE_X) | (1 << SCALE_Y) : (1 << prop);
+        }
+
+        public float initial () {
+            switch (prop) {
+            case X: return layer.tx();
+            case Y: return layer.ty();
+            case ALPHA: return layer.alpha();
+            case ROTATION: return layer.rotation();
+            case SCALE: case SCALE_X: return layer.scaleX();
+            default: return layer.scaleY();
+            }
+        }
+
+        public void set (float value) {
+            switch (prop) {
+            case X: layer.setTx(value); break;
+            case Y: layer.setTy(value); break;
+            case ALPHA: layer.setAlpha(value); break;
+            case ROTATION: layer.setRotation(value); break;
+            case SCALE: layer.setScale(value); break;
+            case SCALE_X: layer.setScaleX(value); break;
+            default: layer.setScaleY(value); break;
+            }
+        }
+    }
+
+    /** Tweens a pair of properties of a layer. */
+    protected static abstract class LayerXYValue implements Animation.XYValue {
+        public final Layer layer;
+        /** The {@link LayerValue} properties updated by this value, or -1 for properties that have
+         * no equivalent (such as the origin). */
+        public final int xprop, yprop;
+
+        public LayerXYValue (Layer layer, int xprop, int yprop) {
+            Asserts.checkNotNull(layer);
+            this.layer = layer;
+            this.xprop = xprop;
+            this.yprop = yprop;
+        }
+
+        /** Returns the properties updated by this value, as a bit mask. */
+        public int props () {
+            return (xprop < 0) ? 0 : (1 << xprop) | (1 << yprop);
+        }
     }
 
     protected static Animation.XYValue onXY (final Layer layer) {
-        Asserts.checkNotNull(layer);
-        return new Animation.XYValue() {
+        return new LayerXYValue(layer, LayerValue.X, LayerValue.Y) {
             public float initialX () { return layer.tx(); }
             public float initialY () { return layer.ty(); }
             public void set (float x, float y) { layer.setTranslation(x, y); }
         };
     }
 
-    protected static Animation.Value onScaleX (final Layer layer) {
-        Asserts.checkNotNull(layer);
-        return new Animation.Value() {
-            public float initial () { return layer.scaleX(); }
-            public void set (float value) { layer.setScaleX(value); }
-        };
-    }
-
-    protected static Animation.Value onScaleY (final Layer layer) {
-        Asserts.checkNotNull(layer);
-        return new Animation.Value() {
-            public float initial () { return layer.scaleY(); }
-            public void set (float value) { layer.setScaleY(value); }
-        };
-    }
-
     protected static Animation.XYValue onScaleXY (final Layer layer) {
-        Asserts.checkNotNull(layer);
-        return new Animation.XYValue() {
+        return new LayerXYValue(layer, LayerValue.SCALE_X, LayerValue.SCALE_Y) {
             public float initialX () { return layer.scaleX(); }
             public float initialY () { return layer.scaleY(); }
             public void set (float x, float y) { layer.setScale(x, y); }
@@ -424,8 +470,7 @@ public abstract class AnimBuilder
     }
 
     protected static Animation.XYValue onOrigin (final Layer layer) {
-        Asserts.checkNotNull(layer);
-        return new Animation.XYValue() {
+        return new LayerXYValue(layer, -1, -1) {
             public float initialX () { return layer.originX(); }
             public float initialY () { return layer.originY(); }
             public void set (float x, float y) { layer.setOrigin(x, y); }
@@ -84,11 +84,18 @@ public class AnimGroup extends AnimBuilder
                 for (int ii = 0; ii < groupAnims.length; ii++) {
                     (_curAnims[ii] = groupAnims[ii]).init(time);
                 }
+                _animator = null;
             }
 
-            @Override protected float apply (Animator animator, float time) {
-                _animator = animator;
-                return super.apply(animator, time);
+            @Override protected float update (Animator animator, float time) {
+                if (_animator == null) {
+                    // our animations were started by our init, which is not told our animator
+                    if (animator._tweening != null) {
+                        for (Animation anim : groupAnims) animator.started(anim);
+                    }
+                    _animator = animator;
+                }
+                return apply(time);
             }
 
             @Override protected float apply (float time) {
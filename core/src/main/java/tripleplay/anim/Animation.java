@@ -71,6 +71,16 @@ public abstract class Animation
             return remain;
         }
 
+        @Override
+        protected Layer layer () {
+            return _target;
+        }
+
+        @Override
+        protected float endTime () {
+            return _start + _book.frameEnds[_book.frameEnds.length-1];
+        }
+
         protected void setFrame (int idx) {
             _book.frames.apply(_book.frameIndexes[idx], _target);
             _curIdx = idx;
@@ -127,6 +137,18 @@ public abstract class Animation
             return tthis;
         }
 
+        @Override
+        protected float endTime () {
+            return _start + _duration;
+        }
+
+        @Override
+        protected void reset () {
+            super.reset();
+            _interp = Interpolator.LINEAR;
+            _duration = 1000;
+        }
+
         protected Interpolator _interp = Interpolator.LINEAR;
         protected float _duration = 1000;
     }
@@ -158,11 +180,38 @@ public abstract class Animation
 
         @Override
         protected float apply (float time) {
+            // if we've been superseded by a newer tween of our property, we're done
+            if (_superseded) return 0;
             float dt = time-_start;
             _target.set((dt < _duration) ? _interp.apply(_from, _to-_from, dt, _duration) : _to);
             return _duration - dt;
         }
 
+        @Override
+        protected Layer layer () {
+            return (_target instanceof AnimBuilder.LayerValue) ?
+                ((AnimBuilder.LayerValue)_target).layer : null;
+        }
+
+        @Override
+        protected int layerProps () {
+            return (_target instanceof AnimBuilder.LayerValue) ?
+                ((AnimBuilder.LayerValue)_target).props() : 0;
+        }
+
+        @Override
+        protected void supersede (int prop) {
+            _superseded = true;
+        }
+
+        @Override
+        protected void reset () {
+            super.reset();
+            _from = Float.MIN_VALUE;
+            _to = 0;
+            _superseded = false;
+        }
+
         @Override public String toString () {
             return getClass().getName() + " start:" + _start + " to " + _to;
         }
@@ -170,6 +219,7 @@ public abstract class Animation
         protected final Value _target;
         protected float _from = Float.MIN_VALUE;
         protected float _to;
+        protected boolean _superseded;
     }
 
     /** Animates a pair of scalar values (usually a position). */
@@ -213,19 +263,48 @@ public abstract class Animation
 
         @Override
         protected float apply (float time) {
-            float dt = time-_start;
+            // if we've been superseded on both axes, we're done; if on one, we leave it be
+            if (_superseded == (X_AXIS|Y_AXIS)) return 0;
+            float dt = time-_start, x, y;
             if (dt < _duration) {
-                _value.set(_interp.apply(_fromx, _tox-_fromx, dt, _duration),
-                           _interp.apply(_fromy, _toy-_fromy, dt, _duration));
+                x = _interp.apply(_fromx, _tox-_fromx, dt, _duration);
+                y = _interp.apply(_fromy, _toy-_fromy, dt, _duration);
             } else {
-                _value.set(_tox, _toy);
+                x = _tox;
+                y = _toy;
             }
+            if ((_superseded & X_AXIS) != 0) x = _value.initialX();
+            if ((_superseded & Y_AXIS) != 0) y = _value.initialY();
+            _value.set(x, y);
             return _duration - dt;
         }
 
+        @Override
+        protected Layer layer () {
+            return (_value instanceof AnimBuilder.LayerXYValue) ?
+                ((AnimBuilder.LayerXYValue)_value).layer : null;
+        }
+
+        @Override
+        protected int layerProps () {
+            return (_value instanceof AnimBuilder.LayerXYValue) ?
+                ((AnimBuilder.LayerXYValue)_value).props() : 0;
+        }
+
+        @Override
+        protected void supersede (int prop) {
+            AnimBuilder.LayerXYValue value = (AnimBuilder.LayerXYValue)_value;
+            if (prop == value.xprop) _superseded |= X_AXIS;
+            if (prop == value.yprop) _superseded |= Y_AXIS;
+        }
+
         protected final XYValue _value;
         protected float _fromx = Float.MIN_VALUE, _fromy = Float.MIN_VALUE;
         protected float _tox, _toy;
+        /** The axes on which we've been superseded by newer tweens. */
+        protected int _superseded;
+
+        protected static final int X_AXIS = 1, Y_AXIS = 2;
     }
 
     /** Delays a specified number of milliseconds. */
@@ -284,6 +363,20 @@ public abstract class Animation
             return (_layer.parent() == null) ? null : _next;
         }
 
+        @Override
+        protected Layer layer () {
+            // once our layer is removed we must run (and end), so we're only culled while it's
+            // in a hidden or detached ancestor
+            return (_layer.parent() == null) ? null : _layer;
+        }
+
+        @Override
+        protected void culled (float time) {
+            // hold our loop until our layer is shown again, rather than catching up on the
+            // iterations that were missed while it was hidden
+            _start = time;
+        }
+
         protected Layer _layer;
     }
 
@@ -360,6 +453,11 @@ public abstract class Animation
             return _duration - dt;
         }
 
+        @Override
+        protected Layer layer () {
+            return _layer;
+        }
+
         protected final Layer _layer;
 
         // parameters initialized by setters or in init()
@@ -415,13 +513,26 @@ public abstract class Animation
 
     protected float apply (Animator animator, float time) {
         // if we're cancelled, abandon ship now
-        if (_canceled) return 0;
+        if (_canceled) {
+            if (animator._tweening != null) animator.finished(_current);
+            return 0;
+        }
+
+        // if our current animation's layer is hidden or detached, wait until it's visible again
+        // (or would have completed); this does not change its timing, so it catches up on resume
+        if (animator._culling && animator.isCulled(_current, time)) {
+            _current.culled(time);
+            return 1;
+        }
 
         // if the current animation has completed, move the next one in our chain
-        float remain = _current.apply(time);
+        float remain = _current.update(animator, time);
         if (remain > 0) return remain;
 
         while (remain <= 0) {
+            // if we're coalescing, note that our current animation is done with its layer
+            if (animator._tweening != null) animator.finished(_current);
+
             // if we've been canceled, return 0 to indicate that we're done
             if (_canceled) return 0;
 
@@ -431,17 +542,81 @@ public abstract class Animation
 
             // otherwise init and apply our next animation (accounting for overflow)
             _current.init(time+remain);
-            remain = _current.apply(time);
+            if (animator._tweening != null) animator.started(_current);
+            if (animator._culling && animator.isCulled(_current, time)) {
+                _current.culled(time);
+                return 1;
+            }
+            remain = _current.update(animator, time);
         }
         return remain;
     }
 
+    /**
+     * Applies this animation as the current animation of a chain run by {@code animator}.
+     * Animations that run chains of their own (such as {@link AnimGroup}) override this to obtain
+     * the animator.
+     */
+    protected float update (Animator animator, float time) {
+        return apply(time);
+    }
+
     protected void cancel () {
         _canceled = true;
     }
 
+    /**
+     * Restores this animation to its freshly constructed state so that it may be reused. Used by
+     * {@link Animator#setPooled}. Subclasses with configuration must override this and reset it.
+     */
+    protected void reset () {
+        _start = 0;
+        _root = this;
+        _current = null;
+        _next = null;
+        _canceled = false;
+    }
+
     protected abstract float apply (float time);
 
+    /**
+     * Returns the layer updated by this animation, or null. Used by {@link Animator#setCulling}.
+     */
+    protected Layer layer () {
+        return null;
+    }
+
+    /**
+     * Returns the properties of {@link #layer} updated by this animation, as a bit mask of {@link
+     * AnimBuilder.LayerValue} properties, or 0. Used by {@link Animator#setCoalesced}.
+     */
+    protected int layerProps () {
+        return 0;
+    }
+
+    /**
+     * Notes that a newer tween of property {@code prop} (one of {@link #layerProps}) of our layer
+     * has started, and that this animation should stop updating it. Used by {@link
+     * Animator#setCoalesced}.
+     */
+    protected void supersede (int prop) {
+    }
+
+    /**
+     * Notes that this animation was not updated at {@code time} because its layer is hidden or
+     * detached. Used by {@link Animator#setCulling}.
+     */
+    protected void culled (float time) {
+    }
+
+    /**
+     * Returns the time at which this animation will complete (once it has been initialized), or
+     * {@link Float#MAX_VALUE} if that is not known in advance.
+     */
+    protected float endTime () {
+        return Float.MAX_VALUE;
+    }
+
     protected Animation next () {
         return _next;
     }
@@ -6,9 +6,14 @@
 package tripleplay.anim;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
+import playn.core.Asserts;
+import playn.core.Layer;
 import playn.core.util.Clock;
+import static playn.core.PlayN.graphics;
 
 import tripleplay.util.Paintable;
 
@@ -28,6 +33,62 @@ public class Animator extends AnimBuilder
         return new Animator();
     }
 
+    /**
+     * Configures whether the layer tweens created directly by this animator ({@link #tweenX},
+     * {@link #tweenAlpha}, etc.) are obtained from (and returned to) a pool. This avoids
+     * allocation for UI code that starts many short tweens, but callers must not retain
+     * references to (or {@link Animation#handle}s on) such tweens after they complete or are
+     * cancelled, as they will be reused. Tweens created via {@link Animation#then} or {@link
+     * AnimGroup} are never pooled.
+     *
+     * @return this animator, for call chaining.
+     */
+    public Animator setPooled (boolean pooled) {
+        _pool = pooled ? new ArrayList<LayerTween>() : null;
+        return this;
+    }
+
+    /**
+     * Configures whether the layer tweens run by this animator ({@link #tweenX}, {@link
+     * #tweenAlpha}, etc., whether created directly, via {@link Animation#then} or in an {@link
+     * AnimGroup}) are coalesced. When coalescing, starting a tween on a property of a layer that
+     * is already being tweened by this animator (e.g. the alpha of a layer that is still fading
+     * out) supersedes the existing tween: it stops updating the property and completes
+     * immediately (proceeding to any animations chained after it). Unless given an explicit
+     * {@link Animation.One#from} value, the new tween starts from the property's current,
+     * partially tweened value. The superseding happens when the new tween starts, so a tween
+     * queued behind a barrier, delay or other animation does not affect the existing tween until
+     * it starts.
+     *
+     * <p> Tweens of two properties ({@link #tweenXY}, {@link #tweenScaleXY}) are superseded
+     * separately on each axis: a {@link #tweenX} stops a {@link #tweenXY} from updating the x
+     * translation, but leaves it tweening the y translation. {@link #tweenScale} updates both
+     * axes of the scale. Tweens of the origin and of custom values are not coalesced. </p>
+     *
+     * @return this animator, for call chaining.
+     */
+    public Animator setCoalesced (boolean coalesced) {
+        _tweening = coalesced ? new HashMap<Layer,Animation[]>() : null;
+        return this;
+    }
+
+    /**
+     * Configures whether animations of hidden layers are suspended. When culling, an animation
+     * that updates a layer (a layer tween, shake or flipbook) is not updated while that layer, or
+     * any of its ancestors, is invisible or not attached to the root layer. The animation's
+     * timing is unaffected: when the layer is shown again, the animation resumes where it would
+     * have been had it been updated all along. An animation that would have completed while
+     * suspended is updated once at that time, so that its target reaches its final state and
+     * any animations chained after it proceed. A {@link AnimBuilder#repeat} loop is instead
+     * held at the start of its next iteration while its layer is hidden, and resumes from there.
+     *
+     * @return this animator, for call chaining.
+     */
+    public Animator setCulling (boolean culling) {
+        _culling = culling;
+        return this;
+    }
+
     /**
      * Causes this animator to delay the start of any subsequently registered animations until all
      * currently registered animations are complete.
@@ -59,27 +120,33 @@ public class Animator extends AnimBuilder
         float time = clock.time();
 
         // if we have any animations queued up to be added, add those now
-        if (!_nanims.isEmpty()) {
-            for (int ii = 0, ll = _nanims.size(); ii < ll; ii++) {
-                _nanims.get(ii).init(time);
+        List<Animation> anims = _anims, nanims = _nanims;
+        if (!nanims.isEmpty()) {
+            for (int ii = 0, ll = nanims.size(); ii < ll; ii++) {
+                Animation anim = nanims.get(ii);
+                anim.init(time);
+                anims.add(anim);
+                if (_tweening != null) started(anim);
             }
-            _anims.addAll(_nanims);
-            _nanims.clear();
+            nanims.clear();
         }
 
-        // now process all of our registered animations
-        for (int ii = 0, ll = _anims.size(); ii < ll; ii++) {
-            if (_anims.get(ii).apply(this, time) <= 0) {
-                _anims.remove(ii--);
-                ll -= 1;
-            }
+        // now process all of our registered animations, compacting out the completed ones
+        int kept = 0;
+        for (int ii = 0, ll = anims.size(); ii < ll; ii++) {
+            Animation anim = anims.get(ii);
+            if (anim.apply(this, time) > 0) anims.set(kept++, anim);
+            else if (_pool != null && anim instanceof LayerTween) release((LayerTween)anim);
         }
+        for (int ii = anims.size()-1; ii >= kept; ii--) anims.remove(ii);
 
         // if we have no active animations, or a timed barrier has expired, unblock a barrier
         boolean noActiveAnims = _anims.isEmpty() && _nanims.isEmpty();
         if (!_barriers.isEmpty() && (noActiveAnims || _barriers.get(0).expired(time))) {
             Barrier barrier = _barriers.remove(0);
-            _nanims.addAll(barrier.accum);
+            for (int ii = 0, ll = barrier.accum.size(); ii < ll; ii++) {
+                _nanims.add(barrier.accum.get(ii));
+            }
             // if we just unblocked the last barrier, start accumulating back on _nanims
             if (_barriers.isEmpty()) {
                 _accum = _nanims;
@@ -98,6 +165,7 @@ public class Animator extends AnimBuilder
         _nanims.clear();
         _barriers.clear();
         _accum = _nanims;
+        if (_tweening != null) _tweening.clear();
     }
 
     /**
@@ -109,6 +177,82 @@ public class Animator extends AnimBuilder
         return anim;
     }
 
+    @Override protected Animation.One tween (Layer layer, int prop) {
+        Asserts.checkNotNull(layer);
+        int size = (_pool == null) ? 0 : _pool.size();
+        LayerTween anim = (size == 0) ? new LayerTween() : _pool.remove(size-1);
+        anim.value.layer = layer;
+        anim.value.prop = prop;
+        return add(anim);
+    }
+
+    /**
+     * Returns true if {@code anim} should not be updated at {@code time} because its layer is
+     * hidden or detached. See {@link #setCulling}.
+     */
+    protected boolean isCulled (Animation anim, float time) {
+        Layer layer = anim.layer();
+        if (layer == null || time >= anim.endTime()) return false;
+        Layer root = graphics().rootLayer();
+        for (; layer != null && layer != root; layer = layer.parent()) {
+            if (!layer.visible()) return true;
+        }
+        return layer == null; // detached
+    }
+
+    /**
+     * Notes that {@code anim} has started, superseding any existing tweens of the layer properties
+     * that it updates. Called when coalescing.
+     */
+    protected void started (Animation anim) {
+        int props = anim.layerProps();
+        if (props == 0) return;
+        Layer layer = anim.layer();
+        Animation[] tweens = _tweening.get(layer);
+        if (tweens == null) _tweening.put(layer, tweens = new Animation[LayerValue.PROPS]);
+        for (int pp = 0; pp < tweens.length; pp++) {
+            if ((props & (1 << pp)) == 0) continue;
+            Animation prev = tweens[pp];
+            if (prev != null && prev != anim) prev.supersede(pp);
+            tweens[pp] = anim;
+        }
+    }
+
+    /** Notes that {@code anim} has completed (or been cancelled). Called when coalescing. */
+    protected void finished (Animation anim) {
+        if (anim == null || anim.layerProps() == 0) return;
+        Layer layer = anim.layer();
+        Animation[] tweens = _tweening.get(layer);
+        if (tweens == null) return;
+        boolean idle = true;
+        for (int pp = 0; pp < tweens.length; pp++) {
+            if (tweens[pp] == anim) tweens[pp] = null;
+            idle &= (tweens[pp] == null);
+        }
+        if (idle) _tweening.remove(layer);
+    }
+
+    /** Returns {@code tween}, which has completed, to our pool. */
+    protected void release (LayerTween tween) {
+        tween.reset();
+        tween.value.layer = null;
+        _pool.add(tween);
+    }
+
+    /** A tween on a property of a layer, created directly by this animator. */
+    protected static class LayerTween extends Animation.One {
+        public final LayerValue value;
+
+        public LayerTween () {
+            this(new LayerValue());
+        }
+
+        protected LayerTween (LayerValue value) {
+            super(value);
+            this.value = value;
+        }
+    }
+
     /** Implementation details, avert your eyes. */
     protected static class Barrier {
         public List<Animation> accum = new ArrayList<Animation>();
@@ -130,4 +274,9 @@ public class Animator extends AnimBuilder
     protected List<Animation> _nanims = new ArrayList<Animation>();
     protected List<Animation> _accum = _nanims;
     protected List<Barrier> _barriers = new ArrayList<Barrier>();
+    protected boolean _culling;
+    /** Our pool of layer tweens, or null if we're not pooling. */
+    protected List<LayerTween> _pool;
+    /** The started layer tweens for each layer and property, or null if we're not coalescing. */
+    protected Map<Layer,Animation[]> _tweening;
 }
@@ -0,0 +1,340 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.anim;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import pythagoras.f.IPoint;
+
+import playn.core.Color;
+import playn.core.Image;
+import playn.core.ImmediateLayer;
+import playn.core.InternalTransform;
+import playn.core.Layer;
+import playn.core.Surface;
+import playn.core.util.Clock;
+import static playn.core.PlayN.graphics;
+
+import tripleplay.util.AtlasShader;
+import tripleplay.util.Destroyable;
+import tripleplay.util.Paintable;
+
+/**
+ * Plays many {@link Flipbook}s whose frames come from a single atlas image, rendering them all in
+ * a single primitive. Rather than an image layer per sprite, each flipbook instance is a row in a
+ * set of arrays (its flipbook, start time, position and tint), and is drawn as a quad by {@link
+ * #layer}. The instances are positioned in the coordinate system of that layer, but cannot be
+ * depth sorted relative to other layers (they are drawn in the order in which they were added,
+ * modulo removals).
+ *
+ * <p> The user of this class must call {@link #paint} on every frame (with the same clock used
+ * for its {@link Animator}) to advance the instances. Flipbook timings are interpreted as for
+ * {@link Animation.Flip}. </p>
+ */
+public class FlipbookBatch
+    implements Paintable, Destroyable
+{
+    /** The layer that renders the instances in this batch. */
+    public final ImmediateLayer layer;
+
+    /**
+     * Creates a batch that renders flipbooks from {@code atlas}. All frames of the flipbooks added
+     * to this batch must be regions of this image.
+     */
+    public FlipbookBatch (final Image atlas) {
+        _atlas = atlas;
+        layer = graphics().createImmediateLayer(new ImmediateLayer.Renderer() {
+            @Override public void render (Surface surface) {
+                if (_count > 0) renderInstances();
+            }
+        });
+    }
+
+    /**
+     * Adds an instance of {@code book} at the specified position, which plays once and is then
+     * removed.
+     *
+     * @return the id of the instance, for use with {@link #setPosition}, etc.
+     */
+    public int add (Flipbook book, float x, float y) {
+        return add(book, x, y, false);
+    }
+
+    /**
+     * Adds an instance of {@code book} at the specified position, which loops until it is
+     * removed if {@code loop} is true, or plays once and is then removed otherwise.
+     *
+     * @return the id of the instance, for use with {@link #setPosition}, etc.
+     */
+    public int add (Flipbook book, float x, float y, boolean loop) {
+        Baked baked = bake(book);
+        int idx = _count;
+        if (idx == _x.length) grow(idx*2);
+        int slot = (_freeSlots == 0) ? _nextSlot++ : _free[--_freeSlots];
+        if (slot > SLOT_MASK) {
+            _nextSlot--;
+            throw new IllegalStateException("Too many instances [max=" + (SLOT_MASK+1) + "]");
+        }
+        if (slot >= _indexOf.length) {
+            int[] indexOf = new int[_indexOf.length*2], gens = new int[_indexOf.length*2];
+            System.arraycopy(_indexOf, 0, indexOf, 0, _indexOf.length);
+            System.arraycopy(_gens, 0, gens, 0, _gens.length);
+            _indexOf = indexOf;
+            _gens = gens;
+        }
+        int id = (_gens[slot] << SLOT_BITS) | slot;
+        _indexOf[slot] = idx;
+        _id[idx] = id;
+        _book[idx] = baked;
+        _start[idx] = _time;
+        _x[idx] = x;
+        _y[idx] = y;
+        _tint[idx] = 0xFFFFFFFF;
+        _cursor[idx] = 0;
+        _loop[idx] = loop;
+        _count = idx+1;
+        return id;
+    }
+
+    /** Updates the position of the specified instance. */
+    public void setPosition (int id, float x, float y) {
+        int idx = index(id);
+        _x[idx] = x;
+        _y[idx] = y;
+    }
+
+    /** Updates the tint (ARGB) of the specified instance. The default is opaque white. */
+    public void setTint (int id, int tint) {
+        _tint[index(id)] = tint;
+    }
+
+    /** Returns true if the specified instance is still playing. This is false for the ids of
+     * removed instances, even if their slot has been reused by a later instance. */
+    public boolean isPlaying (int id) {
+        int slot = id & SLOT_MASK;
+        return id >= 0 && slot < _nextSlot && _indexOf[slot] >= 0 &&
+            _gens[slot] == (id >>> SLOT_BITS);
+    }
+
+    /** Removes the specified instance, if it is still playing. */
+    public void remove (int id) {
+        if (isPlaying(id)) removeAt(_indexOf[id & SLOT_MASK]);
+    }
+
+    /** Removes all instances. */
+    public void clear () {
+        while (_count > 0) removeAt(_count-1);
+    }
+
+    /** Returns the number of instances in this batch. */
+    public int size () {
+        return _count;
+    }
+
+    /** Destroys {@link #layer} and releases the resources used by our shader. */
+    @Override public void destroy () {
+        layer.destroy();
+        if (_shader != null) _shader.clearProgram();
+    }
+
+    /** Advances all instances to the current time, removing those that have completed. */
+    @Override public void paint (Clock clock) {
+        float time = clock.time();
+        if (!_started) {
+            // instances added before our first paint were timed relative to zero
+            for (int ii = 0; ii < _count; ii++) _start[ii] += time;
+            _started = true;
+        }
+        _time = time;
+        for (int ii = 0; ii < _count; ii++) {
+            float[] frameEnds = _book[ii].frameEnds;
+            float total = frameEnds[frameEnds.length-1], dt = time - _start[ii];
+            if (dt > total) {
+                if (!_loop[ii]) {
+                    removeAt(ii--);
+                    continue;
+                }
+                if (total > 0) {
+                    _start[ii] += total * (int)(dt / total);
+                    dt = time - _start[ii];
+                }
+                _cursor[ii] = 0;
+            }
+            int cursor = _cursor[ii];
+            while (cursor < frameEnds.length-1 && frameEnds[cursor] < dt) cursor++;
+            _cursor[ii] = cursor;
+        }
+    }
+
+    /** The geometry of each frame of a flipbook, relative to the atlas. */
+    protected static class Baked {
+        /** The flipbook's frame end times. */
+        public final float[] frameEnds;
+        /** For each step of the flipbook: the left, top, right and bottom of its quad and of its
+         * region of the atlas (in texture coordinates). */
+        public final float[] quads;
+
+        public Baked (Flipbook book, Image atlas) {
+            frameEnds = book.frameEnds;
+            quads = new float[book.frameIndexes.length * QUAD_SIZE];
+            float aw = atlas.width(), ah = atlas.height();
+            for (int ii = 0, qq = 0; ii < book.frameIndexes.length; ii++) {
+                int frame = book.frameIndexes[ii];
+                Image image = book.frames.frame(frame);
+                IPoint off = book.frames.offset(frame);
+                float sx = 0, sy = 0;
+                if (image instanceof Image.Region) {
+                    Image.Region region = (Image.Region)image;
+                    if (region.parent() != atlas) throw new IllegalArgumentException(
+                        "Flipbook frame is not a region of the batch atlas [frame=" + frame + "]");
+                    sx = region.x();
+                    sy = region.y();
+                } else if (image != atlas) throw new IllegalArgumentException(
+                    "Flipbook frame is not a region of the batch atlas [frame=" + frame + "]");
+                float w = image.width(), h = image.height();
+                quads[qq++] = off.x();
+                quads[qq++] = off.y();
+                quads[qq++] = off.x() + w;
+                quads[qq++] = off.y() + h;
+                quads[qq++] = sx / aw;
+                quads[qq++] = sy / ah;
+                quads[qq++] = (sx + w) / aw;
+                quads[qq++] = (sy + h) / ah;
+            }
+        }
+    }
+
+    protected Baked bake (Flipbook book) {
+        Baked baked = _baked.get(book);
+        if (baked == null) _baked.put(book, baked = new Baked(book, _atlas));
+        return baked;
+    }
+
+    protected int index (int id) {
+        if (!isPlaying(id)) throw new IllegalArgumentException("No such instance [id=" + id + "]");
+        return _indexOf[id & SLOT_MASK];
+    }
+
+    /** Removes the instance at {@code idx} by moving the last instance into its place. */
+    protected void removeAt (int idx) {
+        int last = --_count, slot = _id[idx] & SLOT_MASK;
+        // bump the slot's generation so that the removed instance's id is not reused
+        _indexOf[slot] = -1;
+        _gens[slot] = (_gens[slot] + 1) & GEN_MASK;
+        if (_freeSlots == _free.length) {
+            int[] free = new int[_free.length*2];
+            System.arraycopy(_free, 0, free, 0, _freeSlots);
+            _free = free;
+        }
+        _free[_freeSlots++] = slot;
+        if (idx != last) {
+            int lastId = _id[last];
+            _indexOf[lastId & SLOT_MASK] = idx;
+            _id[idx] = lastId;
+            _book[idx] = _book[last];
+            _start[idx] = _start[last];
+            _x[idx] = _x[last];
+            _y[idx] = _y[last];
+            _tint[idx] = _tint[last];
+            _cursor[idx] = _cursor[last];
+            _loop[idx] = _loop[last];
+        }
+        _book[last] = null;
+    }
+
+    protected void renderInstances () {
+        // compute our layer's full transform and alpha, as the shader bypasses the normal layer
+        // transform
+        InternalTransform xform = _xform;
+        xform.setTransform(1, 0, 0, 1, 0, 0);
+        float alpha = 1;
+        for (Layer xlayer = layer; xlayer != null; xlayer = xlayer.parent()) {
+            // each layer's origin is applied before its transform
+            xform.setTranslation(xform.tx() - xlayer.originX(), xform.ty() - xlayer.originY());
+            xform.preConcatenate((InternalTransform)xlayer.transform());
+            alpha *= xlayer.alpha();
+        }
+        xform.preConcatenate(graphics().ctx().rootTransform());
+        float[] m = _matrix;
+        xform.get(m);
+
+        if (_shader == null) _shader = new AtlasShader(graphics().ctx());
+        AtlasShader shader = _shader.prepare(_atlas.ensureTexture(), _count);
+        for (int ii = 0; ii < _count; ii++) {
+            float x = _x[ii], y = _y[ii];
+            float tx = m[0]*x + m[2]*y + m[4], ty = m[1]*x + m[3]*y + m[5];
+            int tint = _tint[ii];
+            float ar = Color.encode(alpha * Color.alpha(tint) / 255f, Color.red(tint) / 255f);
+            float gb = Color.encode(Color.green(tint) / 255f, Color.blue(tint) / 255f);
+            float[] quads = _book[ii].quads;
+            int qq = _cursor[ii] * QUAD_SIZE;
+            shader.core.addQuad(m[0], m[1], m[2], m[3], tx, ty, ar, gb,
+                                quads[qq], quads[qq+1], quads[qq+2], quads[qq+3],
+                                quads[qq+4], quads[qq+5], quads[qq+6], quads[qq+7]);
+        }
+    }
+
+    protected void grow (int capacity) {
+        int[] id = new int[capacity], tint = new int[capacity], cursor = new int[capacity];
+        float[] start = new float[capacity], x = new float[capacity], y = new float[capacity];
+        Baked[] book = new Baked[capacity];
+        boolean[] loop = new boolean[capacity];
+        System.arraycopy(_id, 0, id, 0, _count);
+        System.arraycopy(_tint, 0, tint, 0, _count);
+        System.arraycopy(_cursor, 0, cursor, 0, _count);
+        System.arraycopy(_start, 0, start, 0, _count);
+        System.arraycopy(_x, 0, x, 0, _count);
+        System.arraycopy(_y, 0, y, 0, _count);
+        System.arraycopy(_book, 0, book, 0, _count);
+        System.arraycopy(_loop, 0, loop, 0, _count);
+        _id = id;
+        _tint = tint;
+        _cursor = cursor;
+        _start = start;
+        _x = x;
+        _y = y;
+        _book = book;
+        _loop = loop;
+    }
+
+    protected final Image _atlas;
+    protected final Map<Flipbook,Baked> _baked = new HashMap<Flipbook,Baked>();
+    protected float _time;
+    protected boolean _started;
+
+    /** The instances, one per index in [0, _count). */
+    protected int _count;
+    protected int[] _id = new int[INITIAL_CAPACITY];
+    protected Baked[] _book = new Baked[INITIAL_CAPACITY];
+    protected float[] _start = new float[INITIAL_CAPACITY];
+    protected float[] _x = new float[INITIAL_CAPACITY], _y = new float[INITIAL_CAPACITY];
+    protected int[] _tint = new int[INITIAL_CAPACITY];
+    /** The index (into the flipbook's frame indexes) of each instance's current frame. */
+    protected int[] _cursor = new int[INITIAL_CAPACITY];
+    protected boolean[] _loop = new boolean[INITIAL_CAPACITY];
+
+    /** Maps id slots to indices (or -1 for free slots), the generation of each slot, and the
+     * slots available for reuse. An instance's id combines its slot and the slot's generation at
+     * the time it was added, so that the ids of removed instances are not valid for the
+     * instances that later reuse their slot. */
+    protected int[] _indexOf = new int[INITIAL_CAPACITY];
+    protected int[] _gens = new int[INITIAL_CAPACITY];
+    protected int[] _free = new int[INITIAL_CAPACITY];
+    protected int _nextSlot, _freeSlots;
+
+    protected final InternalTransform _xform = graphics().ctx().createTransform();
+    protected final float[] _matrix = new float[6];
+    protected AtlasShader _shader;
+
+    protected static final int INITIAL_CAPACITY = 16;
+    protected static final int QUAD_SIZE = 8;
+
+    /** The low bits of an id hold its slot, the remaining (non-sign) bits its generation. A slot's
+     * generation wraps after 2048 reuses, at which point an old id could become valid again. */
+    protected static final int SLOT_BITS = 20, SLOT_MASK = (1 << SLOT_BITS) - 1;
+    protected static final int GEN_MASK = (1 << (31 - SLOT_BITS)) - 1;
+}
@@ -0,0 +1,249 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.anim;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import playn.core.Layer;
+
+import tripleplay.util.Interpolator;
+
+/**
+ * Plays a multi-channel keyframe {@link Track} on a layer. Unlike a chain of tweens, a timeline
+ * of any length is a single animation: each channel is sampled by looking up the segment that
+ * contains the current time (which is cached, so sequential playback rarely searches), and it
+ * may be seeked and looped freely.
+ *
+ * <pre>{@code
+ * Timeline.Track track = new Timeline.Builder().
+ *     key(Timeline.X, 0, 0).key(Timeline.X, 500, 100, Interpolator.EASE_OUT).
+ *     key(Timeline.ALPHA, 0, 0).key(Timeline.ALPHA, 250, 1).build();
+ * anim.timeline(layer, track).loop();
+ * }</pre>
+ */
+public class Timeline extends Animation
+{
+    /** The channels of a track. */
+    public static final int X = 0, Y = 1, ROTATION = 2, SCALE = 3, ALPHA = 4;
+
+    /** The number of channels in a track. */
+    public static final int CHANNELS = 5;
+
+    /** An immutable set of keyframes, which may be shared by any number of timelines. */
+    public static class Track {
+        /** The duration of this track: the time of its last keyframe in any channel. */
+        public final float duration;
+
+        /** Returns true if the specified channel has any keyframes. */
+        public boolean hasKeys (int channel) {
+            return _times[channel].length > 0;
+        }
+
+        /** Returns the number of keyframes in the specified channel. */
+        public int keys (int channel) {
+            return _times[channel].length;
+        }
+
+        /**
+         * Returns the value of {@code channel} at {@code time}, which is clamped to the range of
+         * the channel's keyframes. The channel must have at least one keyframe.
+         */
+        public float sample (int channel, float time) {
+            return sample(channel, time, null);
+        }
+
+        /**
+         * Returns the value of {@code channel} at {@code time}, as with {@link #sample(int,float)}.
+         * If {@code cursors} is not null, {@code cursors[channel]} is used as a hint for the
+         * segment containing {@code time} and is updated with the segment actually used.
+         */
+        public float sample (int channel, float time, int[] cursors) {
+            float[] times = _times[channel], values = _values[channel];
+            int last = times.length-1;
+            if (time <= times[0]) return values[0];
+            if (time >= times[last]) return values[last];
+
+            int seg;
+            if (cursors == null) seg = search(times, time);
+            else {
+                seg = cursors[channel];
+                // try the cached segment, then the one after it, and only then search
+                if (seg >= last || time < times[seg] || time >= times[seg+1]) {
+                    if (seg+2 <= last && time >= times[seg+1] && time < times[seg+2]) seg++;
+                    else seg = search(times, time);
+                    cursors[channel] = seg;
+                }
+            }
+            float t0 = times[seg], v0 = values[seg];
+            return _interps[channel][seg+1].apply(
+                v0, values[seg+1] - v0, time - t0, times[seg+1] - t0);
+        }
+
+        protected Track (float[][] times, float[][] values, Interpolator[][] interps) {
+            _times = times;
+            _values = values;
+            _interps = interps;
+            float duration = 0;
+            for (float[] ctimes : times) {
+                if (ctimes.length > 0) duration = Math.max(duration, ctimes[ctimes.length-1]);
+            }
+            this.duration = duration;
+        }
+
+        /** Returns the index of the last key in {@code times} at or before {@code time}. */
+        protected static int search (float[] times, float time) {
+            int lo = 0, hi = times.length-1;
+            while (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                if (times[mid] <= time) lo = mid;
+                else hi = mid;
+            }
+            return lo;
+        }
+
+        /** The times, values and (incoming) interpolators of the keys in each channel. */
+        protected final float[][] _times, _values;
+        protected final Interpolator[][] _interps;
+    }
+
+    /** Builds a {@link Track}. */
+    public static class Builder {
+        public Builder () {
+            for (int cc = 0; cc < CHANNELS; cc++) {
+                _times.add(new ArrayList<Float>());
+                _values.add(new ArrayList<Float>());
+                _interps.add(new ArrayList<Interpolator>());
+            }
+        }
+
+        /**
+         * Adds a keyframe to {@code channel} at {@code time} (in milliseconds), interpolated
+         * linearly from the channel's previous keyframe.
+         */
+        public Builder key (int channel, float time, float value) {
+            return key(channel, time, value, Interpolator.LINEAR);
+        }
+
+        /**
+         * Adds a keyframe to {@code channel} at {@code time} (in milliseconds), interpolated from
+         * the channel's previous keyframe using {@code interp}. Keyframes must be added to each
+         * channel in order of increasing time.
+         */
+        public Builder key (int channel, float time, float value, Interpolator interp) {
+            List<Float> times = _times.get(channel);
+            if (!times.isEmpty() && time < times.get(times.size()-1)) throw new
+                IllegalArgumentException("Keyframes must be added in order [channel=" + channel +
+                                         ", time=" + time + "]");
+            times.add(time);
+            _values.get(channel).add(value);
+            _interps.get(channel).add(interp);
+            return this;
+        }
+
+        /** Bakes the keyframes added so far into a track. */
+        public Track build () {
+            float[][] times = new float[CHANNELS][], values = new float[CHANNELS][];
+            Interpolator[][] interps = new Interpolator[CHANNELS][];
+            for (int cc = 0; cc < CHANNELS; cc++) {
+                List<Float> ctimes = _times.get(cc), cvalues = _values.get(cc);
+                int count = ctimes.size();
+                times[cc] = new float[count];
+                values[cc] = new float[count];
+                for (int ii = 0; ii < count; ii++) {
+                    times[cc][ii] = ctimes.get(ii);
+                    values[cc][ii] = cvalues.get(ii);
+                }
+                interps[cc] = _interps.get(cc).toArray(new Interpolator[count]);
+            }
+            return new Track(times, values, interps);
+        }
+
+        protected final List<List<Float>> _times = new ArrayList<List<Float>>();
+        protected final List<List<Float>> _values = new ArrayList<List<Float>>();
+        protected final List<List<Interpolator>> _interps = new ArrayList<List<Interpolator>>();
+    }
+
+    /** Creates a timeline that plays {@code track} on {@code layer}. See {@link
+     * AnimBuilder#timeline}. */
+    public Timeline (Layer layer, Track track) {
+        _layer = layer;
+        _track = track;
+    }
+
+    /** Configures this timeline to loop until cancelled. */
+    public Timeline loop () {
+        _looping = true;
+        return this;
+    }
+
+    /**
+     * Moves this timeline to {@code position} (in milliseconds from the start of its track). If
+     * this timeline has not yet started, it will start from that position. Otherwise it
+     * continues from that position on the next frame.
+     */
+    public Timeline seek (float position) {
+        _position = position;
+        _seek = true;
+        return this;
+    }
+
+    /** Returns the position (in milliseconds from the start of the track) of the most recent
+     * update. */
+    public float position () {
+        return _position;
+    }
+
+    @Override
+    protected void init (float time) {
+        super.init(time);
+        _start = time - _position;
+        _seek = false;
+    }
+
+    @Override
+    protected float apply (float time) {
+        if (_seek) {
+            _start = time - _position;
+            _seek = false;
+        }
+        float duration = _track.duration, pos = time - _start;
+        if (_looping && duration > 0 && pos >= duration) {
+            // advance our start by whole loops so that our position remains small
+            _start += duration * (int)(pos / duration);
+            pos = time - _start;
+        }
+        _position = pos;
+
+        Track track = _track;
+        Layer layer = _layer;
+        int[] cursors = _cursors;
+        if (track.hasKeys(X) || track.hasKeys(Y)) {
+            layer.setTranslation(track.hasKeys(X) ? track.sample(X, pos, cursors) : layer.tx(),
+                                 track.hasKeys(Y) ? track.sample(Y, pos, cursors) : layer.ty());
+        }
+        if (track.hasKeys(ROTATION)) layer.setRotation(track.sample(ROTATION, pos, cursors));
+        if (track.hasKeys(SCALE)) layer.setScale(track.sample(SCALE, pos, cursors));
+        if (track.hasKeys(ALPHA)) layer.setAlpha(track.sample(ALPHA, pos, cursors));
+        return _looping ? 1 : duration - pos;
+    }
+
+    @Override
+    protected Layer layer () {
+        return _layer;
+    }
+
+    @Override
+    protected float endTime () {
+        return _looping ? Float.MAX_VALUE : _start + _track.duration;
+    }
+
+    protected final Layer _layer;
+    protected final Track _track;
+    protected final int[] _cursors = new int[CHANNELS];
+    protected float _position;
+    protected boolean _looping, _seek;
+}
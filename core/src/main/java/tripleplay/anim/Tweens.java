@@ -0,0 +1,281 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.anim;
+
+import playn.core.Asserts;
+import playn.core.Layer;
+
+import tripleplay.util.Interpolator;
+
+/**
+ * Manages a large number of simple scalar tweens as a single animation. Rather than creating an
+ * {@link Animation.One} (and an {@link Animation.Value}) per tween, each tween is a row in a set
+ * of primitive arrays and identifies its target by an integer slot, which is interpreted by a
+ * {@link Target}. All tweens are updated in a single loop, and completed tweens are removed in
+ * constant time, so a single instance can drive tens of thousands of simultaneous tweens.
+ *
+ * <pre>{@code
+ * Tweens tweens = anim.tweens(Tweens.layers(tiles));
+ * tweens.add(Tweens.slot(7, Tweens.ALPHA), 0, 500);
+ * tweens.add(Tweens.slot(8, Tweens.Y), 100, 250, 1000, Interpolator.EASE_OUT);
+ * }</pre>
+ *
+ * <p> A tweens animation runs until it is cancelled (via {@link #handle}), whether or not it has
+ * any active tweens. Tweens that are added before the animation is started are started (along
+ * with their delays) when it is. Multiple tweens may target the same slot, but the order in which
+ * they are applied is unspecified. </p>
+ */
+public class Tweens extends Animation
+{
+    /** Reads and updates the values targeted by tweens. */
+    public interface Target {
+        /** Returns the current value of {@code slot}. Used to start tweens that have no explicit
+         * starting value. */
+        float get (int slot);
+
+        /** Updates the values of {@code slots[0]} through {@code slots[count-1]} to {@code
+         * values[0]} through {@code values[count-1]}. Called once per frame with the values of all
+         * tweens that were updated on that frame. */
+        void set (int[] slots, float[] values, int count);
+    }
+
+    /** Properties of layers targeted by {@link #layers}. */
+    public static final int X = 0, Y = 1, ALPHA = 2, ROTATION = 3, SCALE_X = 4, SCALE_Y = 5;
+
+    /** The number of layer properties, see {@link #slot}. */
+    public static final int LAYER_PROPS = 6;
+
+    /**
+     * Returns the slot for the specified property (e.g. {@link #ALPHA}) of the layer at {@code
+     * index} in the array supplied to {@link #layers}.
+     */
+    public static int slot (int index, int prop) {
+        return index * LAYER_PROPS + prop;
+    }
+
+    /**
+     * Returns a target that tweens the properties of the supplied layers. See {@link #slot}.
+     */
+    public static Target layers (final Layer[] layers) {
+        return new Target() {
+            public float get (int slot) {
+                Layer layer = layers[slot / LAYER_PROPS];
+                switch (slot % LAYER_PROPS) {
+                case X: return layer.tx();
+                case Y: return layer.ty();
+                case ALPHA: return layer.alpha();
+                case ROTATION: return layer.rotation();
+                case SCALE_X: return layer.scaleX();
+                default: return layer.scaleY();
+                }
+            }
+            public void set (int[] slots, float[] values, int count) {
+                for (int ii = 0; ii < count; ii++) {
+                    int slot = slots[ii];
+                    Layer layer = layers[slot / LAYER_PROPS];
+                    float value = values[ii];
+                    switch (slot % LAYER_PROPS) {
+                    case X: layer.setTx(value); break;
+                    case Y: layer.setTy(value); break;
+                    case ALPHA: layer.setAlpha(value); break;
+                    case ROTATION: layer.setRotation(value); break;
+                    case SCALE_X: layer.setScaleX(value); break;
+                    default: layer.setScaleY(value); break;
+                    }
+                }
+            }
+        };
+    }
+
+    /**
+     * Returns a target that tweens the elements of the supplied array (the slot being the index
+     * into the array). Useful when the caller keeps its own values in arrays.
+     */
+    public static Target array (final float[] values) {
+        return new Target() {
+            public float get (int slot) {
+                return values[slot];
+            }
+            public void set (int[] slots, float[] vals, int count) {
+                for (int ii = 0; ii < count; ii++) values[slots[ii]] = vals[ii];
+            }
+        };
+    }
+
+    /** Creates a tweens animation that updates {@code target}. See {@link AnimBuilder#tweens}. */
+    public Tweens (Target target) {
+        Asserts.checkNotNull(target);
+        _target = target;
+    }
+
+    /**
+     * Tweens {@code slot} linearly from its current value to {@code to} over {@code duration}
+     * milliseconds.
+     */
+    public Tweens add (int slot, float to, float duration) {
+        return add(slot, Float.MIN_VALUE, to, duration, Interpolator.LINEAR, 0);
+    }
+
+    /**
+     * Tweens {@code slot} from {@code from} to {@code to} over {@code duration} milliseconds using
+     * the supplied interpolator.
+     */
+    public Tweens add (int slot, float from, float to, float duration, Interpolator interp) {
+        return add(slot, from, to, duration, interp, 0);
+    }
+
+    /**
+     * Tweens {@code slot} from {@code from} to {@code to} over {@code duration} milliseconds using
+     * the supplied interpolator, starting {@code delay} milliseconds from now.
+     *
+     * @param from the starting value, or {@link Float#MIN_VALUE} to start from the value of the
+     * slot at the time the tween starts.
+     */
+    public Tweens add (int slot, float from, float to, float duration, Interpolator interp,
+                       float delay) {
+        int idx = _count;
+        if (idx == _slot.length) grow(idx*2);
+        _slot[idx] = slot;
+        _start[idx] = _time + delay;
+        _duration[idx] = duration;
+        _from[idx] = from;
+        _to[idx] = to;
+        _interp[idx] = interpId(interp);
+        _count = idx+1;
+        return this;
+    }
+
+    /**
+     * Removes all tweens that target {@code slot}. The slot retains its current value.
+     *
+     * @return the number of tweens removed.
+     */
+    public int remove (int slot) {
+        int removed = 0;
+        for (int ii = _count-1; ii >= 0; ii--) {
+            if (_slot[ii] == slot) {
+                removeAt(ii);
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    /** Removes all tweens. Their targets retain their current values. */
+    public void clear () {
+        _count = 0;
+    }
+
+    /** Returns the number of active (or not yet started) tweens. */
+    public int size () {
+        return _count;
+    }
+
+    @Override
+    protected void init (float time) {
+        super.init(time);
+        // tweens added before we started were timed relative to zero
+        for (int ii = 0; ii < _count; ii++) _start[ii] += time;
+        _time = time;
+    }
+
+    @Override
+    protected float apply (float time) {
+        _time = time;
+        int[] slot = _slot, interp = _interp, outSlot = _outSlot;
+        float[] start = _start, duration = _duration, from = _from, to = _to, out = _out;
+        Interpolator[] interps = _interps;
+        int updated = 0;
+        for (int ii = 0; ii < _count; ii++) {
+            float dt = time - start[ii];
+            if (dt < 0) continue; // not yet started
+            float f = from[ii], dur = duration[ii], value;
+            if (f == Float.MIN_VALUE) from[ii] = f = _target.get(slot[ii]);
+            if (dt < dur) {
+                int ip = interp[ii];
+                // inline the (common) linear case to avoid the virtual call
+                value = (ip == 0) ? f + (to[ii] - f) * dt / dur :
+                    interps[ip].apply(f, to[ii] - f, dt, dur);
+            } else value = to[ii];
+            outSlot[updated] = slot[ii];
+            out[updated++] = value;
+            if (dt >= dur) removeAt(ii--);
+        }
+        if (updated > 0) _target.set(outSlot, out, updated);
+        return 1; // we run until cancelled
+    }
+
+    /** Removes the tween at {@code idx} by moving the last tween into its place. */
+    protected void removeAt (int idx) {
+        int last = --_count;
+        if (idx == last) return;
+        _slot[idx] = _slot[last];
+        _start[idx] = _start[last];
+        _duration[idx] = _duration[last];
+        _from[idx] = _from[last];
+        _to[idx] = _to[last];
+        _interp[idx] = _interp[last];
+    }
+
+    /** Returns the id of {@code interp}, assigning it one if needed. */
+    protected int interpId (Interpolator interp) {
+        for (int ii = 0; ii < _interpCount; ii++) if (_interps[ii] == interp) return ii;
+        if (_interpCount == _interps.length) {
+            Interpolator[] interps = new Interpolator[_interpCount*2];
+            System.arraycopy(_interps, 0, interps, 0, _interpCount);
+            _interps = interps;
+        }
+        _interps[_interpCount] = interp;
+        return _interpCount++;
+    }
+
+    protected void grow (int capacity) {
+        _slot = copy(_slot, capacity);
+        _start = copy(_start, capacity);
+        _duration = copy(_duration, capacity);
+        _from = copy(_from, capacity);
+        _to = copy(_to, capacity);
+        _interp = copy(_interp, capacity);
+        _outSlot = new int[capacity];
+        _out = new float[capacity];
+    }
+
+    protected static int[] copy (int[] values, int capacity) {
+        int[] nvalues = new int[capacity];
+        System.arraycopy(values, 0, nvalues, 0, values.length);
+        return nvalues;
+    }
+
+    protected static float[] copy (float[] values, int capacity) {
+        float[] nvalues = new float[capacity];
+        System.arraycopy(values, 0, nvalues, 0, values.length);
+        return nvalues;
+    }
+
+    protected final Target _target;
+
+    /** The time of our most recent update (zero until we're started). */
+    protected float _time;
+
+    /** The tweens, one per index in [0, _count). */
+    protected int _count;
+    protected int[] _slot = new int[INITIAL_CAPACITY];
+    protected float[] _start = new float[INITIAL_CAPACITY];
+    protected float[] _duration = new float[INITIAL_CAPACITY];
+    protected float[] _from = new float[INITIAL_CAPACITY];
+    protected float[] _to = new float[INITIAL_CAPACITY];
+    protected int[] _interp = new int[INITIAL_CAPACITY];
+
+    /** The slots and values updated on the current frame, passed to our target. */
+    protected int[] _outSlot = new int[INITIAL_CAPACITY];
+    protected float[] _out = new float[INITIAL_CAPACITY];
+
+    /** The interpolators used by our tweens, indexed by id. Id zero is always linear. */
+    protected Interpolator[] _interps = { Interpolator.LINEAR, null, null, null };
+    protected int _interpCount = 1;
+
+    protected static final int INITIAL_CAPACITY = 16;
+}
@@ -0,0 +1,259 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.flump;
+
+import java.util.Arrays;
+import java.util.List;
+
+import playn.core.Color;
+import playn.core.Image;
+import playn.core.ImmediateLayer;
+import playn.core.InternalTransform;
+import playn.core.Layer;
+import playn.core.Surface;
+import playn.core.util.Clock;
+import static playn.core.PlayN.*;
+
+import tripleplay.util.AtlasShader;
+
+/**
+ * Plays a movie like {@link Movie}, but renders it (including any nested movies) from a single
+ * immediate layer rather than a tree of layers, drawing all of its textures as one batch of
+ * quads. This is much cheaper for movies with many layers, provided that their textures come
+ * from a single atlas (see {@link Library#pack}); each change of atlas between textures starts
+ * a new batch. The layers of a batched movie cannot be accessed or replaced.
+ */
+public class BatchedMovie
+    implements Instance
+{
+    public BatchedMovie (Movie.Symbol symbol) {
+        _root = new Playback(symbol);
+        _layer = graphics().createImmediateLayer(new ImmediateLayer.Renderer() {
+            @Override public void render (Surface surface) {
+                renderMovie();
+            }
+        });
+    }
+
+    @Override public ImmediateLayer layer () {
+        return _layer;
+    }
+
+    @Override public void paint (Clock clock) {
+        paint(clock.dt());
+    }
+
+    @Override public void paint (float dt) {
+        _root.paint(dt * _speed);
+    }
+
+    @Override public void destroy () {
+        _layer.destroy();
+        if (_shader != null) _shader.clearProgram();
+    }
+
+    /** The playback position, in milliseconds. */
+    public float position () {
+        return _root.position;
+    }
+
+    /** Changes the playback position. */
+    public void setPosition (float position) {
+        if (position < 0) position = 0;
+        _root.position = position;
+        paint(0);
+    }
+
+    public Movie.Symbol symbol () {
+        return _root.symbol;
+    }
+
+    /** The playback speed multiplier, defaults to 1. Larger values will play faster. */
+    public float speed () {
+        return _speed;
+    }
+
+    /** Changes the playback speed multiplier. */
+    public void setSpeed (float speed) {
+        _speed = speed;
+    }
+
+    /** The playback state of a movie, and of the movies nested in it. */
+    protected static class Playback {
+        public final Movie.Symbol symbol;
+
+        /** The current keyframe of each layer. */
+        public final int[] keyframes;
+
+        /** The nested movie of each keyframe of each layer, or null for textures. As in {@link
+         * Movie}, a layer that shows a single symbol uses the same nested movie throughout. */
+        public final Playback[][] children;
+
+        /** The maximum number of quads needed to draw this movie. */
+        public final int quads;
+
+        public float position, frame;
+
+        public Playback (Movie.Symbol symbol) {
+            this.symbol = symbol;
+            int layers = symbol.layers.size(), quads = 0;
+            keyframes = new int[layers];
+            children = new Playback[layers][];
+            for (int ll = 0; ll < layers; ll++) {
+                LayerData data = symbol.layers.get(ll);
+                Playback[] kids = children[ll] = new Playback[data.keyframes.size()];
+                Playback shared = null;
+                int layerQuads = 0;
+                for (int kk = 0; kk < kids.length; kk++) {
+                    Symbol kfSymbol = data.keyframes.get(kk).symbol();
+                    if (kfSymbol instanceof Movie.Symbol) {
+                        Movie.Symbol movie = (Movie.Symbol)kfSymbol;
+                        if (data._multipleSymbols) kids[kk] = new Playback(movie);
+                        else kids[kk] = (shared != null) ? shared : (shared = new Playback(movie));
+                        layerQuads = Math.max(layerQuads, kids[kk].quads);
+                    } else if (kfSymbol instanceof Texture.Symbol) {
+                        layerQuads = Math.max(layerQuads, 1);
+                    } else if (kfSymbol != null) throw new IllegalArgumentException(
+                        "Cannot batch symbol [name=" + kfSymbol.name() + "]");
+                }
+                quads += layerQuads;
+            }
+            this.quads = quads;
+        }
+
+        /** Advances this movie (and its visible nested movies) by {@code dt}. */
+        public void paint (float dt) {
+            Movie.Symbol symbol = this.symbol;
+            position += dt;
+            if (position > symbol.duration) {
+                position = position % symbol.duration;
+            }
+
+            float frame = position*symbol._framesPerMs;
+            // Wrap back to the beginning
+            if (frame < this.frame) Arrays.fill(keyframes, 0);
+            this.frame = frame;
+
+            Movie.Baked baked = symbol._baked;
+            for (int ll = 0, layers = keyframes.length; ll < layers; ll++) {
+                List<KeyframeData> kfs = symbol.layers.get(ll).keyframes;
+                int kfIdx;
+                if (baked != null) kfIdx = baked.keyframe(ll, frame);
+                else {
+                    kfIdx = keyframes[ll];
+                    int finalFrame = kfs.size()-1;
+                    while (kfIdx < finalFrame && kfs.get(kfIdx+1).index <= frame) ++kfIdx;
+                }
+                keyframes[ll] = kfIdx;
+
+                // Only visible nested movies advance, as in Movie
+                Playback child = children[ll][kfIdx];
+                if (child != null && kfs.get(kfIdx).visible) child.paint(dt);
+            }
+        }
+    }
+
+    protected void renderMovie () {
+        // compute our layer's full transform and alpha, as the shader bypasses the normal layer
+        // transform
+        if (_xform == null) _xform = graphics().ctx().createTransform();
+        InternalTransform xform = _xform;
+        xform.setTransform(1, 0, 0, 1, 0, 0);
+        float alpha = 1;
+        for (Layer xlayer = _layer; xlayer != null; xlayer = xlayer.parent()) {
+            // each layer's origin is applied before its transform
+            xform.setTranslation(xform.tx() - xlayer.originX(), xform.ty() - xlayer.originY());
+            xform.preConcatenate((InternalTransform)xlayer.transform());
+            alpha *= xlayer.alpha();
+        }
+        xform.preConcatenate(graphics().ctx().rootTransform());
+        xform.get(_stack);
+
+        if (_shader == null) _shader = new AtlasShader(graphics().ctx());
+        _atlas = null;
+        render(_root, 0, alpha);
+    }
+
+    /**
+     * Renders the current frame of {@code movie}, whose transform is at {@code depth} in our
+     * transform stack.
+     */
+    protected void render (Playback movie, int depth, float alpha) {
+        Movie.Symbol symbol = movie.symbol;
+        Movie.Baked baked = symbol._baked;
+        int poff = depth*6, off = poff+6;
+        if (_stack.length < off+6) {
+            float[] stack = new float[_stack.length*2];
+            System.arraycopy(_stack, 0, stack, 0, _stack.length);
+            _stack = stack;
+        }
+        float[] m = _stack, l = _local;
+
+        for (int ll = 0, layers = movie.keyframes.length; ll < layers; ll++) {
+            LayerData data = symbol.layers.get(ll);
+            int kfIdx = movie.keyframes[ll];
+            KeyframeData kf = data.keyframes.get(kfIdx);
+            Symbol kfSymbol = kf.symbol();
+            if (kfSymbol == null || !kf.visible) continue;
+
+            float layerAlpha;
+            if (baked != null) layerAlpha = baked.sample(ll, movie.frame, l, 0);
+            else {
+                layerAlpha = Movie.interpolate(data.keyframes, kfIdx, movie.frame, l, 0);
+                Movie.applyPivot(l, 0, kf.pivot);
+            }
+
+            // concatenate the layer's transform onto its movie's
+            m[off]   = m[poff]*l[0] + m[poff+2]*l[1];
+            m[off+1] = m[poff+1]*l[0] + m[poff+3]*l[1];
+            m[off+2] = m[poff]*l[2] + m[poff+2]*l[3];
+            m[off+3] = m[poff+1]*l[2] + m[poff+3]*l[3];
+            m[off+4] = m[poff]*l[4] + m[poff+2]*l[5] + m[poff+4];
+            m[off+5] = m[poff+1]*l[4] + m[poff+3]*l[5] + m[poff+5];
+
+            if (kfSymbol instanceof Texture.Symbol) {
+                addQuad((Texture.Symbol)kfSymbol, data._multipleSymbols, off, alpha*layerAlpha);
+            } else {
+                render(movie.children[ll][kfIdx], depth+1, alpha*layerAlpha);
+                m = _stack; // our stack may have grown
+            }
+        }
+    }
+
+    /** Adds a quad for {@code texture}, transformed by the matrix at {@code off}. */
+    protected void addQuad (Texture.Symbol texture, boolean useOrigin, int off, float alpha) {
+        Image.Region region = texture.region;
+        Image atlas = region.parent();
+        if (atlas != _atlas) {
+            _shader.prepare(atlas.ensureTexture(), _root.quads);
+            _atlas = atlas;
+        }
+
+        // as in Movie, a layer's pivot replaces the origin of its texture, unless the layer
+        // shows several symbols
+        float ox = useOrigin ? texture.origin.x() : 0, oy = useOrigin ? texture.origin.y() : 0;
+        float w = region.width(), h = region.height();
+        float aw = atlas.width(), ah = atlas.height();
+        float[] m = _stack;
+        _shader.core.addQuad(m[off], m[off+1], m[off+2], m[off+3], m[off+4], m[off+5],
+                             Color.encode(alpha, 1), WHITE_GB, -ox, -oy, w-ox, h-oy,
+                             region.x()/aw, region.y()/ah, (region.x()+w)/aw, (region.y()+h)/ah);
+    }
+
+    protected final Playback _root;
+    protected final ImmediateLayer _layer;
+    protected float _speed = 1;
+
+    /** The atlas of the batch currently being rendered. */
+    protected Image _atlas;
+    protected InternalTransform _xform;
+    protected AtlasShader _shader;
+    /** The transforms of the movies being rendered, six floats per level of nesting. */
+    protected float[] _stack = new float[6*4];
+    protected final float[] _local = new float[6];
+
+    protected static final float WHITE_GB = Color.encode(1, 1);
+}
@@ -10,6 +10,9 @@ import pythagoras.f.Point;
 
 import playn.core.Json;
 
+import tripleplay.util.Deflater;
+import tripleplay.util.Inflater;
+
 public class KeyframeData
 {
     public final int index;
@@ -44,6 +47,24 @@ public class KeyframeData
         // Library resolves _symbol once everything has been loaded
     }
 
+    protected KeyframeData (Inflater in, String[] strings, KeyframeData prevKf) {
+        index = (prevKf != null) ? prevKf.index + prevKf.duration : 0;
+        duration = in.popVarInt();
+        int flags = in.popVarInt();
+        label = ((flags & LABEL) != 0) ? strings[in.popVarInt()] : null;
+
+        loc = ((flags & LOC) != 0) ? popPoint(in) : ZERO;
+        scale = ((flags & SCALE) != 0) ? popPoint(in) : ONE;
+        skew = ((flags & SKEW) != 0) ? popPoint(in) : ZERO;
+        pivot = ((flags & PIVOT) != 0) ? popPoint(in) : ZERO;
+        alpha = ((flags & ALPHA) != 0) ? in.popFloat() : 1;
+        visible = (flags & HIDDEN) == 0;
+        tweened = (flags & UNTWEENED) == 0;
+        ease = ((flags & EASE) != 0) ? in.popFloat() : 0;
+
+        _symbolName = ((flags & REF) != 0) ? strings[in.popVarInt()] : null;
+    }
+
     /**
      * The symbol on this keyframe, if any.
      */
@@ -56,6 +77,59 @@ public class KeyframeData
         return (array != null) ? new Point(array.get(0), array.get(1)) : new Point(defX, defY);
     }
 
+    /** Writes the keyframe defined by {@code json} in the compact encoding, with its strings
+     * replaced by their indices in {@code strings}. */
+    protected static void toCompact (Json.Object json, Deflater out, Library.StringTable strings) {
+        out.addVarInt(json.getInt("duration"));
+        String label = json.getString("label"), ref = json.getString("ref");
+        IPoint loc = getPoint(json, "loc", 0, 0), scale = getPoint(json, "scale", 1, 1);
+        IPoint skew = getPoint(json, "skew", 0, 0), pivot = getPoint(json, "pivot", 0, 0);
+        float alpha = json.getNumber("alpha", 1), ease = json.getNumber("ease", 0);
+
+        int flags = 0;
+        if (label != null) flags |= LABEL;
+        if (!isPoint(loc, 0, 0)) flags |= LOC;
+        if (!isPoint(scale, 1, 1)) flags |= SCALE;
+        if (!isPoint(skew, 0, 0)) flags |= SKEW;
+        if (!isPoint(pivot, 0, 0)) flags |= PIVOT;
+        if (alpha != 1) flags |= ALPHA;
+        if (!json.getBoolean("visible", true)) flags |= HIDDEN;
+        if (!json.getBoolean("tweened", true)) flags |= UNTWEENED;
+        if (ease != 0) flags |= EASE;
+        if (ref != null) flags |= REF;
+        out.addVarInt(flags);
+
+        if (label != null) out.addVarInt(strings.index(label));
+        if ((flags & LOC) != 0) addPoint(out, loc);
+        if ((flags & SCALE) != 0) addPoint(out, scale);
+        if ((flags & SKEW) != 0) addPoint(out, skew);
+        if ((flags & PIVOT) != 0) addPoint(out, pivot);
+        if (alpha != 1) out.addFloat(alpha);
+        if (ease != 0) out.addFloat(ease);
+        if (ref != null) out.addVarInt(strings.index(ref));
+    }
+
+    protected static IPoint popPoint (Inflater in) {
+        float x = in.popFloat(), y = in.popFloat();
+        return new Point(x, y);
+    }
+
+    protected static void addPoint (Deflater out, IPoint point) {
+        out.addFloat(point.x()).addFloat(point.y());
+    }
+
+    protected static boolean isPoint (IPoint point, float x, float y) {
+        return point.x() == x && point.y() == y;
+    }
+
     protected Symbol _symbol;
     protected String _symbolName;
+
+    /** Shared default points for compactly encoded keyframes. */
+    protected static final IPoint ZERO = new Point(0, 0), ONE = new Point(1, 1);
+
+    /** Flags noting the non-default fields of a compactly encoded keyframe. */
+    protected static final int LABEL = 1 << 0, LOC = 1 << 1, SCALE = 1 << 2, SKEW = 1 << 3;
+    protected static final int PIVOT = 1 << 4, ALPHA = 1 << 5, HIDDEN = 1 << 6;
+    protected static final int UNTWEENED = 1 << 7, EASE = 1 << 8, REF = 1 << 9;
 }
@@ -11,6 +11,9 @@ import java.util.List;
 
 import playn.core.Json;
 
+import tripleplay.util.Deflater;
+import tripleplay.util.Inflater;
+
 public class LayerData
 {
     /** The authored name of this layer. */
@@ -32,12 +35,34 @@ public class LayerData
         }
     }
 
+    protected LayerData (Inflater in, String[] strings) {
+        name = strings[in.popVarInt()];
+
+        int count = in.popVarInt();
+        ArrayList<KeyframeData> keyframes = new ArrayList<KeyframeData>(count);
+        this.keyframes = Collections.unmodifiableList(keyframes);
+
+        KeyframeData prevKf = null;
+        for (int ii = 0; ii < count; ii++) {
+            prevKf = new KeyframeData(in, strings, prevKf);
+            keyframes.add(prevKf);
+        }
+    }
+
     /** The number of frames in this layer. */
     public int frames () {
         KeyframeData lastKf = keyframes.get(keyframes.size() - 1);
         return lastKf.index + lastKf.duration;
     }
 
+    /** Writes the layer defined by {@code json} in the compact encoding. */
+    protected static void toCompact (Json.Object json, Deflater out, Library.StringTable strings) {
+        out.addVarInt(strings.index(json.getString("name")));
+        Json.TypedArray<Json.Object> keyframes = json.getArray("keyframes", Json.Object.class);
+        out.addVarInt(keyframes.length());
+        for (Json.Object kfJson : keyframes) KeyframeData.toCompact(kfJson, out, strings);
+    }
+
     protected boolean _multipleSymbols;
     protected Symbol _lastSymbol;
 }
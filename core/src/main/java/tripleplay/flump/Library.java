@@ -12,6 +12,9 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import pythagoras.f.IPoint;
+import pythagoras.f.Point;
+
 import playn.core.Asserts;
 import playn.core.Image;
 import playn.core.Json;
@@ -20,6 +23,8 @@ import static playn.core.PlayN.*;
 
 import react.Value;
 
+import tripleplay.util.Deflater;
+import tripleplay.util.Inflater;
 import tripleplay.util.TexturePacker;
 
 public class Library
@@ -31,16 +36,12 @@ public class Library
     public final Map<String,Symbol> symbols;
 
     protected Library (Json.Object json, String baseDir, final Callback<Library> callback) {
-        frameRate = json.getNumber("frameRate");
-
-        final Map<String,Symbol> symbols = new HashMap<String,Symbol>();
-        this.symbols = Collections.unmodifiableMap(symbols);
+        this(json.getNumber("frameRate"));
 
-        final List<Movie.Symbol> movies = new ArrayList<Movie.Symbol>();
         for (Json.Object movieJson : json.getArray("movies", Json.Object.class)) {
             Movie.Symbol movie = new Movie.Symbol(this, movieJson);
-            movies.add(movie);
-            symbols.put(movie.name(), movie);
+            _movies.add(movie);
+            _symbols.put(movie.name(), movie);
         }
 
         Json.TypedArray<Json.Object> textureGroups =
@@ -48,18 +49,83 @@ public class Library
         // TODO(bruno): Support multiple scaleFactors?
         Json.TypedArray<Json.Object> atlases =
             textureGroups.get(0).getArray("atlases", Json.Object.class);
-        final Value<Integer> remainingAtlases = Value.create(atlases.length());
+        final Value<Integer> remainingAtlases = awaitAtlases(atlases.length(), callback);
+
+        for (final Json.Object atlasJson : atlases) {
+            Image atlas = assets().getImage(baseDir + "/" + atlasJson.getString("file"));
+            atlas.addCallback(new Callback.Chain<Image>(callback) {
+                public void onSuccess (Image atlas) {
+                    for (Json.Object textureJson : atlasJson.getArray("textures", Json.Object.class)) {
+                        Texture.Symbol texture = new Texture.Symbol(textureJson, atlas);
+                        _symbols.put(texture.name(), texture);
+                    }
+                    remainingAtlases.update(remainingAtlases.get() - 1);
+                }
+            });
+        }
+    }
+
+    protected Library (Inflater in, String baseDir, final Callback<Library> callback) {
+        this(popHeader(in));
+
+        final String[] strings = new String[in.popVarInt()];
+        for (int ii = 0; ii < strings.length; ii++) strings[ii] = in.popString();
 
+        for (int ii = 0, ll = in.popVarInt(); ii < ll; ii++) {
+            Movie.Symbol movie = new Movie.Symbol(this, in, strings);
+            _movies.add(movie);
+            _symbols.put(movie.name(), movie);
+        }
+
+        int atlases = in.popVarInt();
+        final Value<Integer> remainingAtlases = awaitAtlases(atlases, callback);
+        for (int ii = 0; ii < atlases; ii++) {
+            String file = strings[in.popVarInt()];
+            // decode the textures now, and create their symbols once the atlas has loaded
+            final int count = in.popVarInt();
+            final int[] names = new int[count];
+            final float[] rects = new float[count*TEXTURE_SIZE];
+            for (int tt = 0, rr = 0; tt < count; tt++) {
+                names[tt] = in.popVarInt();
+                for (int end = rr + TEXTURE_SIZE; rr < end; rr++) rects[rr] = in.popFloat();
+            }
+
+            Image atlas = assets().getImage(baseDir + "/" + file);
+            atlas.addCallback(new Callback.Chain<Image>(callback) {
+                public void onSuccess (Image atlas) {
+                    for (int tt = 0, rr = 0; tt < count; tt++, rr += TEXTURE_SIZE) {
+                        Texture.Symbol texture = new Texture.Symbol(
+                            strings[names[tt]], new Point(rects[rr], rects[rr+1]),
+                            atlas.subImage(rects[rr+2], rects[rr+3], rects[rr+4], rects[rr+5]));
+                        _symbols.put(texture.name(), texture);
+                    }
+                    remainingAtlases.update(remainingAtlases.get() - 1);
+                }
+            });
+        }
+    }
+
+    protected Library (float frameRate) {
+        this.frameRate = frameRate;
+        this.symbols = Collections.unmodifiableMap(_symbols);
+    }
+
+    /**
+     * Returns a value tracking the number of atlases remaining to be loaded, which resolves the
+     * symbol references of this library and notifies {@code callback} once it reaches zero.
+     */
+    protected Value<Integer> awaitAtlases (int atlases, final Callback<Library> callback) {
+        Value<Integer> remainingAtlases = Value.create(atlases);
         remainingAtlases.connectNotify(new Value.Listener<Integer>() {
             @Override public void onChange (Integer remaining, Integer _) {
                 if (remaining > 0) return;
 
                 // When all the symbols have been loaded, go through and resolve references
-                for (Movie.Symbol movie : movies) {
+                for (Movie.Symbol movie : _movies) {
                     for (LayerData layer : movie.layers) {
                         for (KeyframeData kf : layer.keyframes) {
                             if (kf._symbolName != null) {
-                                Symbol symbol = symbols.get(kf._symbolName);
+                                Symbol symbol = _symbols.get(kf._symbolName);
                                 Asserts.checkNotNull(symbol);
 
                                 if (layer._lastSymbol == null) layer._lastSymbol = symbol;
@@ -74,19 +140,7 @@ public class Library
                 callback.onSuccess(Library.this);
             }
         });
-
-        for (final Json.Object atlasJson : atlases) {
-            Image atlas = assets().getImage(baseDir + "/" + atlasJson.getString("file"));
-            atlas.addCallback(new Callback.Chain<Image>(callback) {
-                public void onSuccess (Image atlas) {
-                    for (Json.Object textureJson : atlasJson.getArray("textures", Json.Object.class)) {
-                        Texture.Symbol texture = new Texture.Symbol(textureJson, atlas);
-                        symbols.put(texture.name(), texture);
-                    }
-                    remainingAtlases.update(remainingAtlases.get() - 1);
-                }
-            });
-        }
+        return remainingAtlases;
     }
 
     /**
@@ -106,6 +160,60 @@ public class Library
         });
     }
 
+    /**
+     * Loads a Library from PlayN assets, in the compact encoding created by {@link #toCompact}
+     * (which is generally much faster to load than JSON).
+     * @param baseDir The base directory, containing library.compact and texture atlases.
+     */
+    public static void fromCompactAssets (final String baseDir, final Callback<Library> callback) {
+        Asserts.checkNotNull(callback);
+        assets().getText(baseDir + "/" + COMPACT_FILE, new Callback.Chain<String>(callback) {
+            public void onSuccess (String text) {
+                try {
+                    new Library(new Inflater(text), baseDir, callback);
+                } catch (Exception err) {
+                    callback.onFailure(err);
+                }
+            }
+        });
+    }
+
+    /**
+     * Converts a library from its JSON definition (the contents of library.json) to the compact
+     * encoding read by {@link #fromCompactAssets}. Only the first texture group is included, as
+     * only it is used by the JSON loader.
+     */
+    public static String toCompact (Json.Object json) {
+        StringTable strings = new StringTable();
+        Deflater body = new Deflater();
+
+        Json.TypedArray<Json.Object> movies = json.getArray("movies", Json.Object.class);
+        body.addVarInt(movies.length());
+        for (Json.Object movieJson : movies) Movie.Symbol.toCompact(movieJson, body, strings);
+
+        Json.TypedArray<Json.Object> atlases = json.getArray(
+            "textureGroups", Json.Object.class).get(0).getArray("atlases", Json.Object.class);
+        body.addVarInt(atlases.length());
+        for (Json.Object atlasJson : atlases) {
+            body.addVarInt(strings.index(atlasJson.getString("file")));
+            Json.TypedArray<Json.Object> textures =
+                atlasJson.getArray("textures", Json.Object.class);
+            body.addVarInt(textures.length());
+            for (Json.Object textureJson : textures) {
+                body.addVarInt(strings.index(textureJson.getString("symbol")));
+                IPoint origin = KeyframeData.getPoint(textureJson, "origin", 0, 0);
+                body.addFloat(origin.x()).addFloat(origin.y());
+                Json.TypedArray<Float> rect = textureJson.getArray("rect", Float.class);
+                for (int ii = 0; ii < 4; ii++) body.addFloat(rect.get(ii));
+            }
+        }
+
+        Deflater out = new Deflater();
+        out.addVarInt(COMPACT_VERSION).addFloat(json.getNumber("frameRate"));
+        strings.toCompact(out);
+        return out.addFLString(body.encoded()).encoded();
+    }
+
     /** Pack multiple libraries into a single group of atlases. The libraries will be modified so
      * that their symbols point at the new atlases. */
     public static void pack (Collection<Library> libs) {
@@ -150,4 +258,57 @@ public class Library
     public Texture createTexture (String symbolName) {
         return (Texture)createInstance(symbolName);
     }
+
+    /**
+     * Creates a {@link BatchedMovie} of a movie symbol, or throws if the symbol name is not in
+     * this library.
+     */
+    public BatchedMovie createBatchedMovie (String symbolName) {
+        Symbol symbol = symbols.get(symbolName);
+        if (!(symbol instanceof Movie.Symbol)) {
+            throw new IllegalArgumentException("Missing required movie [name=" + symbolName + "]");
+        }
+        return new BatchedMovie((Movie.Symbol)symbol);
+    }
+
+    /** Assigns indices to the strings of a library in the compact encoding. */
+    protected static class StringTable {
+        /** Returns the index of {@code string}, adding it to this table if necessary. */
+        public int index (String string) {
+            Integer index = _indices.get(string);
+            if (index == null) {
+                _indices.put(string, index = _strings.size());
+                _strings.add(string);
+            }
+            return index;
+        }
+
+        /** Writes this table in the compact encoding. */
+        public void toCompact (Deflater out) {
+            out.addVarInt(_strings.size());
+            for (String string : _strings) out.addString(string);
+        }
+
+        protected final Map<String,Integer> _indices = new HashMap<String,Integer>();
+        protected final List<String> _strings = new ArrayList<String>();
+    }
+
+    /** Reads the header of a compactly encoded library, returning its frame rate. */
+    protected static float popHeader (Inflater in) {
+        int version = in.popVarInt();
+        if (version != COMPACT_VERSION) throw new IllegalArgumentException(
+            "Unsupported library version [version=" + version + "]");
+        return in.popFloat();
+    }
+
+    protected final Map<String,Symbol> _symbols = new HashMap<String,Symbol>();
+    protected final List<Movie.Symbol> _movies = new ArrayList<Movie.Symbol>();
+
+    /** The name of a library file in the compact encoding. */
+    public static final String COMPACT_FILE = "library.compact";
+
+    protected static final int COMPACT_VERSION = 1;
+
+    /** The number of floats per texture in the compact encoding: its origin and its rect. */
+    protected static final int TEXTURE_SIZE = 6;
 }
@@ -13,6 +13,7 @@ import java.util.List;
 import java.util.Map;
 
 import pythagoras.f.FloatMath;
+import pythagoras.f.IPoint;
 
 import playn.core.Asserts;
 import playn.core.GroupLayer;
@@ -21,6 +22,9 @@ import playn.core.Layer;
 import playn.core.util.Clock;
 import static playn.core.PlayN.*;
 
+import tripleplay.util.Deflater;
+import tripleplay.util.Inflater;
+
 public class Movie
     implements Instance
 {
@@ -54,6 +58,45 @@ public class Movie
             this.duration = frames/_framesPerMs;
         }
 
+        protected Symbol (Library lib, Inflater in, String[] strings) {
+            _name = strings[in.popVarInt()];
+
+            int count = in.popVarInt();
+            ArrayList<LayerData> layers = new ArrayList<LayerData>(count);
+            this.layers = Collections.unmodifiableList(layers);
+
+            int frames = 0;
+            for (int ii = 0; ii < count; ii++) {
+                LayerData layer = new LayerData(in, strings);
+                frames = Math.max(layer.frames(), frames);
+                layers.add(layer);
+            }
+            this.frames = frames;
+
+            _framesPerMs = lib.frameRate/1000;
+            this.duration = frames/_framesPerMs;
+        }
+
+        /**
+         * Precomputes the transform and alpha of every layer at every frame of this movie, so that
+         * its instances need only look them up rather than interpolate between keyframes. This
+         * must be called once the library has finished loading. The symbols of nested movies are
+         * not baked by this call, but may be baked separately.
+         *
+         * @param blend if true, instances playing between two frames of a tween blend linearly
+         * between their baked values, otherwise they use the values of the earlier frame.
+         * @return this symbol, for call chaining.
+         */
+        public Symbol bake (boolean blend) {
+            _baked = new Baked(this, blend);
+            return this;
+        }
+
+        /** Returns true if this symbol has been {@link #bake}d. */
+        public boolean baked () {
+            return _baked != null;
+        }
+
         @Override public String name () {
             return _name;
         }
@@ -62,8 +105,94 @@ public class Movie
             return new Movie(this);
         }
 
+        /** Writes the movie defined by {@code json} in the compact encoding. */
+        protected static void toCompact (Json.Object json, Deflater out,
+                                         Library.StringTable strings) {
+            out.addVarInt(strings.index(json.getString("id")));
+            Json.TypedArray<Json.Object> layers = json.getArray("layers", Json.Object.class);
+            out.addVarInt(layers.length());
+            for (Json.Object layerJson : layers) LayerData.toCompact(layerJson, out, strings);
+        }
+
         protected String _name;
         protected float _framesPerMs;
+        protected Baked _baked;
+    }
+
+    /** The per-frame values of each layer of a baked {@link Symbol}. */
+    protected static class Baked {
+        /** The number of frames in the movie. */
+        public final int frames;
+
+        /** Whether to blend between adjacent frames. */
+        public final boolean blend;
+
+        /** For each layer and frame (at {@code layer*frames + frame}), the index of its keyframe,
+         * its alpha and whether it is tweened to the next frame (and may be blended with it). */
+        public final int[] keyframes;
+        public final float[] alphas;
+        public final boolean[] tweened;
+
+        /** For each layer and frame, six floats: its affine transform, including its pivot. */
+        public final float[] matrices;
+
+        public Baked (Symbol symbol, boolean blend) {
+            this.blend = blend;
+            int frames = this.frames = symbol.frames, count = symbol.layers.size()*frames;
+            keyframes = new int[count];
+            alphas = new float[count];
+            tweened = new boolean[count];
+            matrices = new float[count*6];
+
+            for (int ll = 0, idx = 0; ll < symbol.layers.size(); ll++) {
+                List<KeyframeData> kfs = symbol.layers.get(ll).keyframes;
+                int kfIdx = 0, finalKf = kfs.size()-1;
+                for (int ff = 0; ff < frames; ff++, idx++) {
+                    while (kfIdx < finalKf && kfs.get(kfIdx+1).index <= ff) ++kfIdx;
+                    KeyframeData kf = kfs.get(kfIdx);
+                    keyframes[idx] = kfIdx;
+                    alphas[idx] = interpolate(kfs, kfIdx, ff, matrices, idx*6);
+
+                    // fold the pivot into the translation, so that layers need no origin
+                    applyPivot(matrices, idx*6, kf.pivot);
+
+                    // we can blend into the next frame if it's on the same keyframe, or if we
+                    // tween into the next keyframe (and it has the same pivot)
+                    boolean sameKf = (kfIdx == finalKf || kfs.get(kfIdx+1).index > ff+1);
+                    tweened[idx] = ff+1 < frames && (sameKf || tweensInto(kf, kfs.get(kfIdx+1)));
+                }
+            }
+        }
+
+        /** Returns the index of the keyframe of layer {@code layer} at {@code frame}. */
+        public int keyframe (int layer, float frame) {
+            return keyframes[layer*frames + Math.min((int)frame, frames-1)];
+        }
+
+        /**
+         * Writes the transform of layer {@code layer} at {@code frame} to {@code m} starting at
+         * {@code off}, blending between frames if configured to do so.
+         *
+         * @return the alpha of the layer at {@code frame}.
+         */
+        public float sample (int layer, float frame, float[] m, int off) {
+            int ff = Math.min((int)frame, frames-1), idx = layer*frames + ff, mm = idx*6;
+            float alpha = alphas[idx], t = frame - ff;
+            if (blend && t > 0 && tweened[idx]) {
+                float[] bm = matrices;
+                for (int ii = 0; ii < 6; ii++) {
+                    m[off+ii] = bm[mm+ii] + (bm[mm+6+ii] - bm[mm+ii]) * t;
+                }
+                return alpha + (alphas[idx+1] - alpha) * t;
+            }
+            System.arraycopy(matrices, mm, m, off, 6);
+            return alpha;
+        }
+
+        protected static boolean tweensInto (KeyframeData kf, KeyframeData nextKf) {
+            return kf.tweened && nextKf.symbol() != null &&
+                kf.pivot.x() == nextKf.pivot.x() && kf.pivot.y() == nextKf.pivot.y();
+        }
     }
 
     protected Movie (Symbol symbol) {
@@ -173,6 +302,7 @@ public class Movie
     }
 
     protected void setFrame (float frame, float dt) {
+        Baked baked = _symbol._baked;
         if (frame < _frame) {
             // Wrap back to the beginning
             for (int ii = 0, ll = _animators.length; ii < ll; ++ii) {
@@ -183,7 +313,8 @@ public class Movie
         }
         for (int ii = 0, ll = _animators.length; ii < ll; ++ii) {
             LayerAnimator animator = _animators[ii];
-            animator.setFrame(frame, dt);
+            if (baked != null) animator.setFrame(baked, ii, frame, dt);
+            else animator.setFrame(frame, dt);
         }
         _frame = frame;
     }
@@ -237,53 +368,43 @@ public class Movie
                 return; // Don't bother animating invisible layers
             }
 
-            float locX = kf.loc.x();
-            float locY = kf.loc.y();
-            float scaleX = kf.scale.x();
-            float scaleY = kf.scale.y();
-            float skewX = kf.skew.x();
-            float skewY = kf.skew.y();
-            float alpha = kf.alpha;
-
-            if (kf.tweened && keyframeIdx < finalFrame) {
-                // Interpolate with the next keyframe, if there's something on the next keyframe
-                KeyframeData nextKf = keyframes.get(keyframeIdx+1);
-                if (nextKf.symbol() != null) {
-                    float interp = (frame-kf.index) / kf.duration;
-                    float ease = kf.ease;
-                    if (ease != 0) {
-                        float t;
-                        if (ease < 0) {
-                            // Ease in
-                            float inv = 1 - interp;
-                            t = 1 - inv*inv;
-                            ease = -ease;
-                        } else {
-                            // Ease out
-                            t = interp*interp;
-                        }
-                        interp = ease*t + (1-ease)*interp;
-                    }
-                    locX += (nextKf.loc.x()-locX) * interp;
-                    locY += (nextKf.loc.y()-locY) * interp;
-                    scaleX += (nextKf.scale.x()-scaleX) * interp;
-                    scaleY += (nextKf.scale.y()-scaleY) * interp;
-                    skewX += (nextKf.skew.x()-skewX) * interp;
-                    skewY += (nextKf.skew.y()-skewY) * interp;
-                    alpha += (nextKf.alpha-alpha) * interp;
-                }
+            float[] m = _matrix;
+            float alpha = interpolate(keyframes, keyframeIdx, frame, m, 0);
+            content.transform().setTransform(m[0], m[1], m[2], m[3], m[4], m[5]);
+            content.setOrigin(kf.pivot.x(), kf.pivot.y());
+
+            content.setAlpha(alpha);
+
+            if (_current != null) {
+                _current.paint(dt);
             }
+        }
 
-            float sinX = FloatMath.sin(skewX), cosX = FloatMath.cos(skewX);
-            float sinY = FloatMath.sin(skewY), cosY = FloatMath.cos(skewY);
+        /** Updates this layer from the values baked for {@code frame}. */
+        public void setFrame (Baked baked, int layerIdx, float frame, float dt) {
+            int kfIdx = baked.keyframe(layerIdx, frame);
+            if (kfIdx != keyframeIdx) {
+                keyframeIdx = kfIdx;
+                changedKeyframe = true;
+            }
 
-            // Create a transformation matrix that translates to locX/Y, skews, then scales
-            float m00 = cosY * scaleX;
-            float m01 = sinY * scaleX;
-            float m10 = -sinX * scaleY;
-            float m11 = cosX * scaleY;
-            content.transform().setTransform(m00, m01, m10, m11, locX, locY);
-            content.setOrigin(kf.pivot.x(), kf.pivot.y());
+            if (changedKeyframe && _instances != null) {
+                setCurrent(_instances[keyframeIdx]);
+                changedKeyframe = false;
+            }
+
+            KeyframeData kf = data.keyframes.get(keyframeIdx);
+            boolean visible = kf.symbol() != null && kf.visible;
+            content.setVisible(visible);
+            if (!visible) {
+                return; // Don't bother animating invisible layers
+            }
+
+            float[] m = _matrix;
+            float alpha = baked.sample(layerIdx, frame, m, 0);
+            content.transform().setTransform(m[0], m[1], m[2], m[3], m[4], m[5]);
+            // the baked transform includes the pivot
+            if (content.originX() != 0 || content.originY() != 0) content.setOrigin(0, 0);
 
             content.setAlpha(alpha);
 
@@ -303,6 +424,74 @@ public class Movie
 
         protected Instance _current; // The instance currently visible
         protected Instance[] _instances; // Null if only 0-1 instance on this layer
+        protected final float[] _matrix = new float[6];
+    }
+
+    /** Folds {@code pivot} into the translation of the transform in {@code m} at {@code off}. */
+    protected static void applyPivot (float[] m, int off, IPoint pivot) {
+        float px = pivot.x(), py = pivot.y();
+        m[off+4] -= m[off]*px + m[off+2]*py;
+        m[off+5] -= m[off+1]*px + m[off+3]*py;
+    }
+
+    /**
+     * Computes the transform of a layer at {@code frame}, which lies on its keyframe at index
+     * {@code kfIdx}, tweening toward the next keyframe if appropriate. The transform (excluding
+     * the keyframe's pivot) is written to {@code m} starting at {@code off}.
+     *
+     * @return the alpha of the layer at {@code frame}.
+     */
+    protected static float interpolate (List<KeyframeData> keyframes, int kfIdx, float frame,
+                                        float[] m, int off) {
+        KeyframeData kf = keyframes.get(kfIdx);
+        float locX = kf.loc.x();
+        float locY = kf.loc.y();
+        float scaleX = kf.scale.x();
+        float scaleY = kf.scale.y();
+        float skewX = kf.skew.x();
+        float skewY = kf.skew.y();
+        float alpha = kf.alpha;
+
+        if (kf.tweened && kfIdx < keyframes.size()-1) {
+            // Interpolate with the next keyframe, if there's something on the next keyframe
+            KeyframeData nextKf = keyframes.get(kfIdx+1);
+            if (nextKf.symbol() != null) {
+                float interp = (frame-kf.index) / kf.duration;
+                float ease = kf.ease;
+                if (ease != 0) {
+                    float t;
+                    if (ease < 0) {
+                        // Ease in
+                        float inv = 1 - interp;
+                        t = 1 - inv*inv;
+                        ease = -ease;
+                    } else {
+                        // Ease out
+                        t = interp*interp;
+                    }
+                    interp = ease*t + (1-ease)*interp;
+                }
+                locX += (nextKf.loc.x()-locX) * interp;
+                locY += (nextKf.loc.y()-locY) * interp;
+                scaleX += (nextKf.scale.x()-scaleX) * interp;
+                scaleY += (nextKf.scale.y()-scaleY) * interp;
+                skewX += (nextKf.skew.x()-skewX) * interp;
+                skewY += (nextKf.skew.y()-skewY) * interp;
+                alpha += (nextKf.alpha-alpha) * interp;
+            }
+        }
+
+        float sinX = FloatMath.sin(skewX), cosX = FloatMath.cos(skewX);
+        float sinY = FloatMath.sin(skewY), cosY = FloatMath.cos(skewY);
+
+        // Create a transformation matrix that translates to locX/Y, skews, then scales
+        m[off] = cosY * scaleX;
+        m[off+1] = sinY * scaleX;
+        m[off+2] = -sinX * scaleY;
+        m[off+3] = cosX * scaleY;
+        m[off+4] = locX;
+        m[off+5] = locY;
+        return alpha;
     }
 
     protected Symbol _symbol;
@@ -30,6 +30,12 @@ public class Texture
             region = atlas.subImage(rect.get(0), rect.get(1), rect.get(2), rect.get(3));
         }
 
+        protected Symbol (String name, IPoint origin, Image.Region region) {
+            _name = name;
+            this.origin = origin;
+            this.region = region;
+        }
+
         @Override public String name () {
             return _name;
         }
@@ -0,0 +1,123 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.particle;
+
+import react.Value;
+
+/**
+ * Limits the total number of live particles (and/or the time spent updating them) across all
+ * emitters managed by a {@link Particles} instance. See {@link Particles#setBudget}.
+ *
+ * <p>Each frame the budget computes its utilization: the larger of the fraction of {@link
+ * #maxLive} particles that were live and the fraction of {@link #maxMillis} spent updating
+ * emitters on the previous frame. While utilization exceeds {@link #lowWater}, the generators of
+ * emitters in the lowest active {@link Emitter#priority} tier are scaled down, reaching zero when
+ * utilization reaches one. While utilization exceeds one, that tier is suspended entirely and the
+ * next tier becomes the one that is scaled down, one tier per frame. Tiers are resumed, one per
+ * frame, when utilization falls below {@link #lowWater}. The highest priority tier is never
+ * suspended, though it will be scaled down.</p>
+ */
+public class Budget
+{
+    /** The maximum number of live particles across all emitters, or zero for no limit. */
+    public final int maxLive;
+
+    /** The maximum number of milliseconds to spend updating emitters each frame, or zero for no
+     * limit. */
+    public final float maxMillis;
+
+    /** The utilization below which generators are no longer scaled and suspended tiers resume. */
+    public float lowWater = 0.75f;
+
+    /** The utilization of this budget as of the most recent frame. A value greater than one means
+     * the budget was exceeded. */
+    public final Value<Float> utilization = Value.create(0f);
+
+    /** The number of particles that were live across all emitters on the most recent frame. */
+    public final Value<Integer> live = Value.create(0);
+
+    /** The priority below which emitters' generators are currently suspended. */
+    public final Value<Integer> cutoff = Value.create(Integer.MIN_VALUE);
+
+    /**
+     * Creates a budget with the specified limits. Either limit may be zero to disable it.
+     */
+    public Budget (int maxLive, float maxMillis) {
+        this.maxLive = maxLive;
+        this.maxMillis = maxMillis;
+    }
+
+    /**
+     * Returns the fraction of its normal rate at which an emitter with the specified priority
+     * should currently generate particles.
+     */
+    public float scale (int priority) {
+        if (priority < _cutoff) return 0;
+        if (priority > _tier || _util <= lowWater) return 1;
+        return Math.max(0, (1 - _util) / (1 - lowWater));
+    }
+
+    /** Called by {@link Particles} before updating emitters. */
+    void willUpdate () {
+        float util = 0;
+        if (maxLive > 0) util = _frameLive / (float)maxLive;
+        if (maxMillis > 0) util = Math.max(util, _frameMillis / maxMillis);
+
+        // move our cutoff up or down one tier based on the previous frame's results
+        int[] prios = _prios;
+        int tier = 0, count = _prioCount;
+        while (tier < count && prios[tier] < _cutoff) tier++;
+        if (util > 1 && tier < count-1) tier++;
+        else if (util < lowWater && tier > 0) tier--;
+        _cutoff = (tier == 0) ? Integer.MIN_VALUE : prios[tier];
+        _tier = (tier < count) ? prios[tier] : Integer.MAX_VALUE;
+        _util = util;
+
+        utilization.update(util);
+        live.update(_frameLive);
+        cutoff.update(_cutoff);
+        _frameLive = 0;
+        _prioCount = 0;
+    }
+
+    /** Called by {@link Particles} after updating all emitters. */
+    void didUpdate (float millis) {
+        _frameMillis = millis;
+    }
+
+    /** Called by each emitter after it has been updated. */
+    void noteUpdated (int priority, int live) {
+        _frameLive += live;
+
+        // insert this priority into our sorted list of distinct priorities if needed
+        int[] prios = _prios;
+        int idx = 0, count = _prioCount;
+        while (idx < count && prios[idx] < priority) idx++;
+        if (idx < count && prios[idx] == priority) return;
+        if (count == prios.length) {
+            int[] nprios = new int[count*2];
+            System.arraycopy(prios, 0, nprios, 0, count);
+            _prios = prios = nprios;
+        }
+        System.arraycopy(prios, idx, prios, idx+1, count-idx);
+        prios[idx] = priority;
+        _prioCount = count+1;
+    }
+
+    /** The utilization computed at the start of this frame. */
+    protected float _util;
+    /** Emitters with priority below the cutoff are suspended. */
+    protected int _cutoff = Integer.MIN_VALUE;
+    /** The lowest priority at or above the cutoff, which is the tier being scaled down. */
+    protected int _tier = Integer.MAX_VALUE;
+
+    /** The distinct priorities of the emitters updated this frame, in ascending order. */
+    protected int[] _prios = new int[4];
+    protected int _prioCount;
+
+    protected int _frameLive;
+    protected float _frameMillis;
+}
@@ -26,4 +26,29 @@ public abstract class Effector
      * update.
      */
     public abstract void apply (int index, float[] data, int start, float now, float dt);
+
+    /**
+     * Applies this effector to the particles in {@code [from, to)} in the supplied buffer. This
+     * is used for buffers that keep their live particles contiguous ({@link
+     * ParticleBuffer.Layout#COMPACT} and {@link ParticleBuffer.Layout#FIELDS}). The default
+     * implementation calls {@link #apply(int,float[],int,float,float)} for each particle, staging
+     * each particle's fields in {@link ParticleBuffer#data} if the buffer uses the fields layout.
+     * Effectors that are applied to large numbers of particles should override this method and
+     * process {@link ParticleBuffer#fields} directly.
+     */
+    public void apply (ParticleBuffer buffer, int from, int to, float now, float dt) {
+        float[] data = buffer.data;
+        if (buffer.fields == null) {
+            int ppos = from * ParticleBuffer.NUM_FIELDS;
+            for (int pp = from; pp < to; pp++, ppos += ParticleBuffer.NUM_FIELDS) {
+                apply(pp, data, ppos, now, dt);
+            }
+        } else {
+            for (int pp = from; pp < to; pp++) {
+                buffer.get(pp, data, 0);
+                apply(pp, data, 0, now, dt);
+                buffer.set(pp, data, 0);
+            }
+        }
+    }
 }
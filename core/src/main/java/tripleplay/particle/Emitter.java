@@ -8,15 +8,19 @@ package tripleplay.particle;
 import java.util.ArrayList;
 import java.util.List;
 
-import react.Connection;
 import react.Signal;
-import react.UnitSlot;
 
+import pythagoras.f.IRectangle;
+import pythagoras.f.Rectangle;
+
+import playn.core.GroupLayer;
 import playn.core.Image;
 import playn.core.ImmediateLayer;
 import playn.core.Surface;
 import static playn.core.PlayN.graphics;
 
+import tripleplay.particle.effect.Fused;
+import tripleplay.platform.TPPlatform;
 import tripleplay.util.Destroyable;
 
 /**
@@ -28,7 +32,9 @@ public class Emitter
     /** The layer to which this emitter is attached. */
     public final ImmediateLayer layer;
 
-    /** The generator that adds new particles to this emitter. */
+    /** The generator that adds new particles to this emitter. If this emitter has gone to sleep
+     * (see {@link #onEmpty}), assigning a generator wakes it on the next frame, or use {@link
+     * #setGenerator} to wake it immediately. */
     public Generator generator;
 
     /** The initializers used by this emitter. */
@@ -37,11 +43,22 @@ public class Emitter
     /** The effectors used by this emitter. */
     public final List<Effector> effectors = new ArrayList<Effector>();
 
+    /** This emitter's priority, which determines the order in which emitters are throttled when
+     * a {@link Budget} is exceeded. Lower priority emitters are throttled first. */
+    public int priority;
+
+    /** Whether runs of stock effectors in {@link #effectors} are fused into single pass kernels
+     * (see {@link Fused}). This produces the same results as applying them individually, but
+     * can be disabled for debugging or profiling individual effectors. */
+    public boolean fuseEffectors = true;
+
     /** A signal emitted when the generator for this emitter is exhausted. */
-    public final Signal<Emitter> onExhausted = Signal.create();
+    public final Signal<Emitter> onExhausted = new ResetSignal();
 
-    /** A signal emitted when this emitter has no live particles and no generator. */
-    public final Signal<Emitter> onEmpty = Signal.create();
+    /** A signal emitted when this emitter has no live particles and no generator. If no listener
+     * adds particles or a generator in response, the emitter then goes to sleep and is not updated
+     * (nor is this signal emitted again) until particles are added or it is given a generator. */
+    public final Signal<Emitter> onEmpty = new ResetSignal();
 
     /**
      * Adds the specified number of particles. One usually does not call this manually, but rather
@@ -49,51 +66,237 @@ public class Emitter
      */
     public void addParticles (int count) {
         if (_buffer.isFull()) return;
+        _parts.wake(this);
+        Budget budget = _parts._budget;
+        if (budget != null) {
+            float scale = budget.scale(priority);
+            if (scale < 1) {
+                // accumulate fractional particles so that small counts are scaled fairly
+                _throttled += count * scale;
+                count = (int)_throttled;
+                _throttled -= count;
+                if (count == 0) return;
+            }
+        }
         for (int ii = 0, ll = initters.size(); ii < ll; ii++) initters.get(ii).willInit(count);
-        _buffer.add(count, _parts.now(), initters);
+        Telemetry.Stats stats = _stats;
+        if (stats == null) _buffer.add(count, _parts.now(), initters);
+        else {
+            int live = _buffer.liveCount();
+            _buffer.add(count, _parts.now(), initters);
+            stats.noteSpawned(_buffer.liveCount() - live);
+        }
     }
 
     /**
-     * Unregisters this emitter from the particles manager.
+     * Configures the generator that adds new particles to this emitter, waking this emitter if it
+     * has gone to sleep.
+     *
+     * @return this emitter, for call chaining.
+     */
+    public Emitter setGenerator (Generator generator) {
+        this.generator = generator;
+        if (generator != null) _parts.wake(this);
+        return this;
+    }
+
+    /**
+     * Unregisters this emitter from the particles manager. If this emitter was obtained from a
+     * pool (see {@link Particles#setPooled}), it is reset and returned to the pool, which
+     * disconnects all listeners from {@link #onExhausted} and {@link #onEmpty}.
      */
     @Override public void destroy () {
-        layer.destroy();
-        _conn.disconnect();
+        if (!_registered) return; // already destroyed
+        if (_batch != null) _batch.remove(this);
+        _registered = _awake = false;
+        if (_stats != null) {
+            _stats._owner.unregister(_stats);
+            _stats = null;
+        }
+        if (_pooled) _parts.release(this);
+        else layer.destroy();
+    }
+
+    /**
+     * Returns conservative bounds of this emitter's live particles, in the coordinate system of
+     * particle positions, or null if the bounds are not known. Bounds are only maintained while
+     * culling is enabled via {@link Particles#setCulling}, and are updated each time this
+     * emitter's particles are updated.
+     */
+    public IRectangle bounds () {
+        return _hasBounds ? _bounds : null;
+    }
+
+    /**
+     * Returns true if this emitter was culled (not updated every frame and not rendered) on the
+     * most recent frame. See {@link Particles#setCulling}.
+     */
+    public boolean isCulled () {
+        return _culled;
+    }
+
+    /**
+     * Returns this emitter's telemetry, or null if telemetry was not enabled (via {@link
+     * Particles#setTelemetry}) when this emitter was created.
+     */
+    public Telemetry.Stats stats () {
+        return _stats;
     }
 
     /**
      * Configures this emitter to self-destruct when it runs out of particles.
      */
     public void destroyOnEmpty () {
-        onEmpty.connect(new UnitSlot() { @Override public void onEmit () { destroy(); }});
+        _destroyOnEmpty = true;
     }
 
-    Emitter (Particles parts, final int maxParticles, final Image image) {
+    Emitter (Particles parts, ParticleBuffer buffer, final Image image) {
         this.layer = graphics().createImmediateLayer(new ImmediateLayer.Renderer() {
             @Override public void render (Surface surface) {
+                if (_batch != null || _culled) return; // our batch renders us, or we're culled
+                Telemetry.Stats stats = _stats;
+                long start = (stats == null) ? 0 : TPPlatform.instance().nanoTime();
                 int tex = image.ensureTexture();
-                _buffer.render(_parts._shader.prepare(tex, maxParticles),
+                _buffer.render(_parts._shader.prepare(tex, _buffer.maxParticles()),
                                image.width(), image.height());
+                if (stats != null) stats.noteRendered(TPPlatform.instance().nanoTime() - start);
             }
         });
         _parts = parts;
-        _buffer = new ParticleBuffer(maxParticles);
+        _buffer = buffer;
+        _image = image;
+    }
+
+    /**
+     * Restores this emitter to its freshly created state, prior to returning it to a pool.
+     */
+    protected void reset () {
+        generator = null;
+        initters.clear();
+        effectors.clear();
+        fuseEffectors = true;
+        priority = 0;
+        _destroyOnEmpty = false;
+        _throttled = 0;
+        _culled = _hasBounds = false;
+        _culledDt = 0;
+        _culledFrames = 0;
+        _buffer.clear();
+        ((ResetSignal)onExhausted).reset();
+        ((ResetSignal)onEmpty).reset();
+        GroupLayer parent = layer.parent();
+        if (parent != null) parent.remove(layer);
+        layer.transform().setTransform(1, 0, 0, 1, 0, 0);
+        layer.setOrigin(0, 0);
+        layer.setDepth(0);
+        layer.setAlpha(1);
+        layer.setVisible(true);
     }
 
     void update (float now, float dt) {
         // TODO: update and cache our layer's local transform?
-        if (generator != null && generator.generate(this, now, dt)) {
+        Budget budget = _parts._budget;
+        Telemetry.Stats stats = _stats;
+        boolean culling = _parts._culling;
+        if (culling) {
+            _culled = _parts.isCulled(this);
+            if (_culled) {
+                // only update culled emitters every few frames, with the accumulated time; if
+                // they're never updated, the time is dropped rather than applied all at once when
+                // they're next visible
+                int interval = _parts._culledInterval;
+                if (interval <= 0 || ++_culledFrames < interval) {
+                    if (interval > 0) _culledDt += dt;
+                    // our particles aren't rendered, so they don't count against our budget
+                    if (budget != null) budget.noteUpdated(priority, 0);
+                    if (stats != null) stats.noteLive(_buffer.liveCount());
+                    return;
+                }
+            }
+            // cap the catch up so that generators don't burst and particles don't jump
+            dt = Math.min(dt + _culledDt, Math.max(dt, MAX_CULLED_DT));
+            _culledDt = 0;
+            _culledFrames = 0;
+        } else _culled = false;
+
+        long start = (stats == null) ? 0 : TPPlatform.instance().nanoTime();
+        if (generator != null && (budget == null || budget.scale(priority) > 0) &&
+            generator.generate(this, now, dt)) {
             generator = null;
             onExhausted.emit(this);
         }
-        if (_buffer.apply(effectors, now, dt) == 0 && generator == null) {
+        int live;
+        if (stats == null) live = _buffer.apply(liveEffectors(), now, dt);
+        else {
+            long generated = TPPlatform.instance().nanoTime();
+            int before = _buffer.liveCount();
+            live = _buffer.apply(liveEffectors(), now, dt);
+            stats.noteGenerated(generated - start);
+            stats.noteApplied(before - live, TPPlatform.instance().nanoTime() - generated);
+            stats.noteLive(live);
+        }
+        if (budget != null) budget.noteUpdated(priority, _culled ? 0 : live);
+        if (culling) _hasBounds = _buffer.computeBounds(_image.width(), _image.height(), _bounds);
+        if (live == 0 && generator == null) {
             onEmpty.emit(this);
+            if (_destroyOnEmpty) destroy();
+            // go to sleep unless a listener gave us something to do
+            else if (generator == null && _buffer.liveCount() == 0) _awake = false;
+        }
+    }
+
+    /** Returns the effectors to apply this frame, recompiling our fused effectors if {@link
+     * #effectors} has changed since they were last compiled. */
+    protected List<? extends Effector> liveEffectors () {
+        if (!fuseEffectors) return effectors;
+        if (!effectors.equals(_fusedFrom)) {
+            _fusedFrom.clear();
+            _fusedFrom.addAll(effectors);
+            _fused = Fused.compile(effectors);
+        }
+        return _fused;
+    }
+
+    /** A signal whose listeners are disconnected when a pooled emitter is reset, so that it does
+     * not notify its previous owner. */
+    protected static class ResetSignal extends Signal<Emitter> {
+        public void reset () {
+            clearConnections();
         }
     }
 
     protected final Particles _parts;
     protected final ParticleBuffer _buffer;
+    protected final Image _image;
+
+    /** Whether we're returned to our {@link Particles}'s pool when destroyed. */
+    protected boolean _pooled;
+    protected boolean _destroyOnEmpty;
+
+    /** Fractional particles not yet added due to throttling by our budget. */
+    protected float _throttled;
+
+    /** The bounds of our particles, valid if {@link #_hasBounds} is true. */
+    protected final Rectangle _bounds = new Rectangle();
+    protected boolean _hasBounds, _culled;
+    /** The time elapsed and frames skipped since we were last updated while culled. */
+    protected float _culledDt;
+    protected int _culledFrames;
+
+    /** The effectors from which {@link #_fused} was compiled. */
+    protected final List<Effector> _fusedFrom = new ArrayList<Effector>();
+    protected List<Effector> _fused = _fusedFrom;
+
+    /** Our telemetry, or null if telemetry is disabled. */
+    protected Telemetry.Stats _stats;
+
+    /** The batch that renders this emitter, if any (filled in by {@link Particles}). */
+    protected Particles.Batch _batch;
+
+    /** Whether we're registered with our {@link Particles}, whether we're awake (and should be
+     * updated every frame) and whether we're in its active and sleeping lists (managed by same). */
+    protected boolean _registered, _awake, _listed, _sleepListed;
 
-    /** Our connection to our {@link Particles} (filled in by same). */
-    protected Connection _conn;
+    /** The most time (in seconds) applied in one update when catching up after being culled. */
+    protected static final float MAX_CULLED_DT = 0.25f;
 }
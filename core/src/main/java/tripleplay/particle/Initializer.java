@@ -28,4 +28,30 @@ public abstract class Initializer
      * @param start the offset into {@code data} at which the particle's fields start.
      */
     public abstract void init (int index, float[] data, int start);
+
+    /**
+     * Applies this initializer to the newly added particles in {@code [from, to)} of the supplied
+     * buffer. This is used for buffers that keep their live particles contiguous ({@link
+     * ParticleBuffer.Layout#COMPACT} and {@link ParticleBuffer.Layout#FIELDS}). The default
+     * implementation calls {@link #init(int,float[],int)} for each particle, staging each
+     * particle's fields in {@link ParticleBuffer#data} if the buffer uses the fields layout.
+     * Initializers used by emitters that add many particles at once should override this method
+     * and fill each field for all of the particles in one go, using {@link
+     * ParticleBuffer#array}, {@link ParticleBuffer#offset} and {@link ParticleBuffer#stride}.
+     */
+    public void init (ParticleBuffer buffer, int from, int to) {
+        float[] data = buffer.data;
+        if (buffer.fields == null) {
+            int ppos = from * ParticleBuffer.NUM_FIELDS;
+            for (int pp = from; pp < to; pp++, ppos += ParticleBuffer.NUM_FIELDS) {
+                init(pp, data, ppos);
+            }
+        } else {
+            for (int pp = from; pp < to; pp++) {
+                buffer.get(pp, data, 0);
+                init(pp, data, 0);
+                buffer.set(pp, data, 0);
+            }
+        }
+    }
 }
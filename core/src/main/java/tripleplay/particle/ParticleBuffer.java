@@ -7,14 +7,36 @@ package tripleplay.particle;
 
 import java.util.List;
 
+import pythagoras.f.Rectangle;
+
 import playn.core.Color;
 
+import tripleplay.util.Parallel;
+
 /**
  * Contains the basic metadata for an array of particles: position, velocity, scale, rotation,
  * birth time, lifespan.
  */
 public class ParticleBuffer
 {
+    /** The ways in which a buffer can lay out its particles. */
+    public enum Layout {
+        /** Particles stay in the slot they were born into and a bitmask tracks which slots are
+         * live. Particle indices are stable for the lifetime of the particle, but every update
+         * and render visits the whole bitmask. */
+        SPARSE,
+        /** Live particles are kept in a contiguous prefix of the buffer, and dead particles are
+         * replaced by the last live particle. Updates and rendering cost time proportional to
+         * the number of live particles, but a particle's index may change when another particle
+         * dies. */
+        COMPACT,
+        /** Like {@link #COMPACT}, but each field is stored in its own array (see {@link
+         * ParticleBuffer#fields}) rather than interleaved in {@link ParticleBuffer#data}. This
+         * allows effectors that override {@link Effector#apply(ParticleBuffer,int,int,float,float)}
+         * to process all particles in tight loops over just the fields they need. */
+        FIELDS
+    }
+
     /** The offset of the birth time in the particle buffer. */
     public static final int BIRTH = 0;
     /** The offset of the lifespan in the particle buffer. */
@@ -45,15 +67,31 @@ public class ParticleBuffer
      * This is (G*256+B) where G and B are integer values in the range [0...256). */
     public static final int GREEN_BLUE = ALPHA_RED+1;
 
+    /** The offset of the scale most recently applied to the particle's transform by {@link
+     * tripleplay.particle.effect.Scale#overLife} in the particle buffer. This is 1 for newly added
+     * particles. */
+    public static final int SCALE = GREEN_BLUE+1;
+
     /** The total number of fields per particle. */
-    public static final int NUM_FIELDS = GREEN_BLUE+1;
+    public static final int NUM_FIELDS = SCALE+1;
 
-    /** The particle data. */
+    /** The particle data. For {@link Layout#FIELDS} buffers, this holds the fields of a single
+     * particle and is used to stage particles for initializers and effectors that operate on
+     * interleaved data. */
     public final float[] data;
 
-    /** A liveness flag for each particle. */
+    /** The particle data for {@link Layout#FIELDS} buffers, one array per field, indexed by
+     * particle: {@code fields[TX][index]}. This is null for other layouts. */
+    public final float[][] fields;
+
+    /** A liveness flag for each particle. This is null for {@link Layout#COMPACT} and {@link
+     * Layout#FIELDS} buffers, which track liveness by keeping live particles in {@code [0,
+     * liveCount())}. */
     public final int[] alive;
 
+    /** The layout used by this buffer. */
+    public final Layout layout;
+
     /** Returns a string representation of the specified particle's data. */
     public static String dump (float[] data, int index, int start) {
         float a = Color.decodeUpper(data[start + ALPHA_RED]);
@@ -82,27 +120,93 @@ public class ParticleBuffer
         data[start + TY]  = pm01 *  tx + pm11 *  ty + pty;
     }
 
-    /** Creates a particle buffer that can hold up to {@code maxParticles} particles. */
+    /** Creates a sparse particle buffer that can hold up to {@code maxParticles} particles. */
     public ParticleBuffer (int maxParticles) {
+        this(maxParticles, Layout.SPARSE);
+    }
+
+    /** Creates a particle buffer with the specified layout that can hold up to {@code
+     * maxParticles} particles. */
+    public ParticleBuffer (int maxParticles, Layout layout) {
         _maxParticles = maxParticles;
-        data = new float[maxParticles * NUM_FIELDS];
-        alive = new int[maxParticles/32+1];
+        this.layout = layout;
+        if (layout == Layout.FIELDS) {
+            data = new float[NUM_FIELDS];
+            fields = new float[NUM_FIELDS][maxParticles];
+        } else {
+            data = new float[maxParticles * NUM_FIELDS];
+            fields = null;
+        }
+        alive = (layout == Layout.SPARSE) ? new int[maxParticles/32+1] : null;
+    }
+
+    /**
+     * Configures this buffer to apply its effectors in parallel, using {@code parallel}, whenever
+     * it has at least {@code minParticles} live particles. The particles are split into disjoint
+     * ranges, one per thread, so effectors applied in parallel must only read and write the
+     * fields of the particles they are passed (as do the stock effectors). Expired particles are
+     * swept out and live counts merged on the calling thread, so the results do not depend on how
+     * the work was split. Pass null to always apply effectors on the calling thread.
+     */
+    public void setParallel (Parallel parallel, int minParticles) {
+        _parallel = (parallel == null || parallel.threads() < 2) ? null : parallel;
+        _minParallel = minParticles;
+        _slices = null;
     }
 
     /** Returns true if the specified particle is alive. */
     public boolean isAlive (int partidx) {
+        if (alive == null) return partidx < _live;
         return (alive[partidx/32] & (1 << partidx % 32)) != 0;
     }
 
-    /** Sets the particle in question to alive or not. */
+    /**
+     * Sets the particle in question to alive or not. A compact or fields buffer can only kill
+     * particles with this method (which moves its last live particle into {@code partidx}), new
+     * particles must be created via {@link #add}.
+     */
     public void setAlive (int partidx, boolean isAlive) {
-        if (isAlive) {
-            alive[partidx/32] |= (1 << partidx % 32);
+        if (alive == null) {
+            if (isAlive) {
+                if (partidx >= _live) throw new UnsupportedOperationException(
+                    "Compact buffers can only create particles via add()");
+            } else if (partidx < _live) {
+                _live--;
+                if (partidx < _live) move(_live, partidx);
+            }
         } else {
-            alive[partidx/32] &= ~(1 << partidx % 32);
+            int word = partidx/32, mask = 1 << partidx % 32;
+            boolean wasAlive = (alive[word] & mask) != 0;
+            if (isAlive && !wasAlive) {
+                alive[word] |= mask;
+                _live++;
+            } else if (!isAlive && wasAlive) {
+                alive[word] &= ~mask;
+                _live--;
+                _firstFree = Math.min(_firstFree, word);
+            }
         }
     }
 
+    /** Returns the number of live particles in this buffer. */
+    public int liveCount () {
+        return _live;
+    }
+
+    /** Kills all particles in this buffer. */
+    public void clear () {
+        _live = 0;
+        if (alive != null) {
+            for (int aa = 0; aa < alive.length; aa++) alive[aa] = 0;
+            _firstFree = 0;
+        }
+    }
+
+    /** Returns the maximum number of particles this buffer can hold. */
+    public int maxParticles () {
+        return _maxParticles;
+    }
+
     public boolean isFull () {
         return _live >= _maxParticles;
     }
@@ -110,9 +214,26 @@ public class ParticleBuffer
     /** Adds {@code count} particles to this buffer, and initializes them with {@code initters}. */
     public void add (int count, float now, List<? extends Initializer> initters) {
         if (isFull()) return;
-        // TODO: keep track of a last added position and start from there
-        int pp = 0, ppos = 0, icount = initters.size(), initted = 0;
-        for (int aa = 0; aa < alive.length && initted < count; aa++) {
+        int icount = initters.size();
+        if (alive == null) {
+            // set the birth time of the new particles, then initialize them en masse
+            int from = _live, end = Math.min(_live + count, _maxParticles);
+            float[] births = array(BIRTH);
+            int stride = stride();
+            for (int pp = from, ppos = offset(BIRTH, from); pp < end; pp++, ppos += stride) {
+                births[ppos] = now;
+            }
+            fill(SCALE, from, end, 1);
+            for (int ii = 0; ii < icount; ii++) {
+                initters.get(ii).init(this, from, end);
+            }
+            _live = end;
+            return;
+        }
+
+        // start searching from the first word that might have a free slot
+        int aa = _firstFree, pp = aa*32, ppos = pp*NUM_FIELDS, initted = 0;
+        for (; aa < alive.length && initted < count; aa++) {
             int live = alive[aa], mask = 1;
             if (live == 0xFFFFFFFF) {
                 pp += 32;
@@ -124,13 +245,18 @@ public class ParticleBuffer
                 if ((live & mask) != 0) continue;
                 live |= mask;
                 data[ppos+BIRTH] = now;
+                data[ppos+SCALE] = 1;
                 for (int ii = 0; ii < icount; ii++) {
                     initters.get(ii).init(pp, data, ppos);
                 }
                 initted++;
             }
             alive[aa] = live;
+            // if we stopped partway through this word, it may still have free slots
+            if (initted == count && live != 0xFFFFFFFF) break;
         }
+        _firstFree = aa;
+        _live += initted;
     }
 
     /**
@@ -139,38 +265,35 @@ public class ParticleBuffer
      * @return the number of live particles to which the effectors were applied.
      */
     public int apply (List<? extends Effector> effectors, float now, float dt) {
-        int pp = 0, ppos = 0, ecount = effectors.size(), living = 0;
-        for (int aa = 0; aa < alive.length; aa++) {
-            int live = alive[aa], mask = 1, died = 0;
-            for (int end = pp+32; pp < end; pp++, ppos += NUM_FIELDS, mask <<= 1) {
-                // if this particle is not alive, skip it
-                if ((live & mask) == 0) continue;
-
-                // if this particle has died, mark it as such
-                if (now - data[ppos+BIRTH] > data[ppos+LIFESPAN]) {
-                    live &= ~mask;
-                    died++;
-                    continue;
-                }
-
-                // the particle lives, apply the effectors
-                for (int ee = 0; ee < ecount; ee++) {
-                    effectors.get(ee).apply(pp, data, ppos, now, dt);
-                }
-                living++;
-            }
+        boolean parallel = _parallel != null && _live >= _minParallel;
+        if (alive == null) return applyCompact(effectors, now, dt, parallel);
 
-            // if we killed off any particles, update the liveness array
-            if (died > 0) {
-                alive[aa] = live;
-            }
+        // split the liveness words evenly among our slices (of which there is one if we're not
+        // running in parallel), then merge their results in order
+        Slice[] slices = parallel ? slices() : serialSlices();
+        int words = alive.length, count = slices.length, living = 0;
+        for (int ss = 0; ss < count; ss++) {
+            slices[ss].prepare(effectors, now, dt, words*ss/count, words*(ss+1)/count);
+        }
+        if (count == 1) slices[0].run();
+        else _parallel.run(slices, count);
+        for (int ss = 0; ss < count; ss++) {
+            Slice slice = slices[ss];
+            living += slice.living;
+            _firstFree = Math.min(_firstFree, slice.firstDied);
+            slice.effectors = null;
         }
-        return living;
+        return _live = living;
     }
 
     /** Renders the particles to the supplied shader. */
     public void render (ParticleShader shader, float width, float height) {
         float ql = -width/2, qt = -height/2, qr = width/2, qb = height/2;
+        if (alive == null) {
+            shader.core.addQuads(ql, qt, qr, qb, this, 0, _live);
+            return;
+        }
+
         int pp = 0, ppos = 0, rendered = 0;
         for (int aa = 0; aa < alive.length; aa++) {
             int live = alive[aa], mask = 1;
@@ -183,6 +306,248 @@ public class ParticleBuffer
         _live = rendered;
     }
 
+    /**
+     * Computes conservative bounds for the live particles in this buffer, assuming each is drawn
+     * as a quad of the specified size, centered on the particle's position and transformed by
+     * its scale and rotation.
+     *
+     * @return false if there are no live particles (in which case {@code into} is not changed),
+     * true if {@code into} was updated with the particles' bounds.
+     */
+    public boolean computeBounds (float width, float height, Rectangle into) {
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, padX = 0, padY = 0;
+        float hw = width/2, hh = height/2;
+        if (fields != null) {
+            if (_live == 0) return false;
+            float[] txs = fields[TX], tys = fields[TY];
+            float[] m00s = fields[M00], m01s = fields[M01], m10s = fields[M10], m11s = fields[M11];
+            for (int pp = 0; pp < _live; pp++) {
+                float tx = txs[pp], ty = tys[pp];
+                if (tx < minX) minX = tx;
+                if (tx > maxX) maxX = tx;
+                if (ty < minY) minY = ty;
+                if (ty > maxY) maxY = ty;
+                float extX = Math.abs(m00s[pp]) * hw + Math.abs(m10s[pp]) * hh;
+                float extY = Math.abs(m01s[pp]) * hw + Math.abs(m11s[pp]) * hh;
+                if (extX > padX) padX = extX;
+                if (extY > padY) padY = extY;
+            }
+        } else {
+            boolean any = false;
+            for (int pp = 0, ppos = 0, end = (alive == null) ? _live : _maxParticles; pp < end;
+                 pp++, ppos += NUM_FIELDS) {
+                if (alive != null && (alive[pp/32] & (1 << pp % 32)) == 0) continue;
+                float tx = data[ppos+TX], ty = data[ppos+TY];
+                if (tx < minX) minX = tx;
+                if (tx > maxX) maxX = tx;
+                if (ty < minY) minY = ty;
+                if (ty > maxY) maxY = ty;
+                float extX = Math.abs(data[ppos+M00]) * hw + Math.abs(data[ppos+M10]) * hh;
+                float extY = Math.abs(data[ppos+M01]) * hw + Math.abs(data[ppos+M11]) * hh;
+                if (extX > padX) padX = extX;
+                if (extY > padY) padY = extY;
+                any = true;
+            }
+            if (!any) return false;
+        }
+        // pad by the furthest any quad's corners extend from its center
+        into.setBounds(minX - padX, minY - padY, maxX - minX + 2*padX, maxY - minY + 2*padY);
+        return true;
+    }
+
+    /**
+     * Returns the array that holds the specified field for all particles: one of {@link #fields}
+     * for {@link Layout#FIELDS} buffers, otherwise {@link #data}. The field of particle {@code
+     * index} is at {@link #offset}, and that of each subsequent particle {@link #stride} elements
+     * later. This allows bulk initializers and effectors to be written once for both layouts.
+     */
+    public float[] array (int field) {
+        return (fields == null) ? data : fields[field];
+    }
+
+    /** Returns the offset in {@link #array} of the specified field of the specified particle. */
+    public int offset (int field, int index) {
+        return (fields == null) ? index*NUM_FIELDS + field : index;
+    }
+
+    /** Returns the distance in {@link #array} between the fields of consecutive particles. */
+    public int stride () {
+        return (fields == null) ? NUM_FIELDS : 1;
+    }
+
+    /** Sets the specified field of the particles in {@code [from, to)} to {@code value}. */
+    public void fill (int field, int from, int to, float value) {
+        float[] array = array(field);
+        for (int pos = offset(field, from), end = offset(field, to), stride = stride();
+             pos < end; pos += stride) array[pos] = value;
+    }
+
+    /** Multiplies the specified field of the particles in {@code [from, to)} by {@code value}. */
+    public void scale (int field, int from, int to, float value) {
+        float[] array = array(field);
+        for (int pos = offset(field, from), end = offset(field, to), stride = stride();
+             pos < end; pos += stride) array[pos] *= value;
+    }
+
+    /**
+     * Copies the fields of the specified particle into {@code into}, starting at {@code start}.
+     */
+    public void get (int partidx, float[] into, int start) {
+        if (fields == null) System.arraycopy(data, partidx*NUM_FIELDS, into, start, NUM_FIELDS);
+        else for (int ff = 0; ff < NUM_FIELDS; ff++) into[start+ff] = fields[ff][partidx];
+    }
+
+    /**
+     * Copies the fields in {@code from}, starting at {@code start}, into the specified particle.
+     */
+    public void set (int partidx, float[] from, int start) {
+        if (fields == null) System.arraycopy(from, start, data, partidx*NUM_FIELDS, NUM_FIELDS);
+        else for (int ff = 0; ff < NUM_FIELDS; ff++) fields[ff][partidx] = from[start+ff];
+    }
+
+    protected int applyCompact (List<? extends Effector> effectors, float now, float dt,
+                                boolean parallel) {
+        // first sweep out any particles that have died
+        int live = _live;
+        if (fields != null) {
+            float[] births = fields[BIRTH], lifespans = fields[LIFESPAN];
+            for (int pp = 0; pp < live; ) {
+                if (now - births[pp] > lifespans[pp]) move(--live, pp);
+                else pp++;
+            }
+        } else {
+            for (int pp = 0, ppos = 0; pp < live; ) {
+                if (now - data[ppos+BIRTH] > data[ppos+LIFESPAN]) move(--live, pp);
+                else { pp++; ppos += NUM_FIELDS; }
+            }
+        }
+        _live = live;
+
+        // then apply each effector to the survivors en masse
+        if (parallel) {
+            Slice[] slices = slices();
+            int count = slices.length;
+            for (int ss = 0; ss < count; ss++) {
+                slices[ss].prepare(effectors, now, dt, live*ss/count, live*(ss+1)/count);
+            }
+            _parallel.run(slices, count);
+            for (int ss = 0; ss < count; ss++) slices[ss].effectors = null;
+        } else {
+            for (int ee = 0, ecount = effectors.size(); ee < ecount; ee++) {
+                effectors.get(ee).apply(this, 0, live, now, dt);
+            }
+        }
+        return live;
+    }
+
+    /** Returns the slices used to apply effectors in parallel, creating them if needed. */
+    protected Slice[] slices () {
+        if (_slices == null) {
+            _slices = new Slice[_parallel.threads()];
+            for (int ss = 0; ss < _slices.length; ss++) _slices[ss] = new Slice();
+        }
+        return _slices;
+    }
+
+    /** Returns a single slice used to apply effectors to sparse buffers on the calling thread. */
+    protected Slice[] serialSlices () {
+        if (_serial == null) _serial = new Slice[] { new Slice() };
+        return _serial;
+    }
+
+    /** Creates a view of {@code source} that shares its particle data, but has its own staging
+     * area for {@link Layout#FIELDS} buffers. Used to apply effectors on multiple threads. */
+    protected ParticleBuffer (ParticleBuffer source) {
+        _maxParticles = source._maxParticles;
+        layout = source.layout;
+        fields = source.fields;
+        alive = source.alive;
+        data = (fields == null) ? source.data : new float[NUM_FIELDS];
+    }
+
+    /** A range of particles to which effectors are applied on one thread. */
+    protected class Slice implements Runnable {
+        /** The buffer passed to effectors; a view with its own staging area if needed. */
+        public final ParticleBuffer buffer = (fields == null) ? ParticleBuffer.this :
+            new ParticleBuffer(ParticleBuffer.this);
+
+        public List<? extends Effector> effectors;
+        public float now, dt;
+        /** The range of particles (or liveness words for sparse buffers) in this slice. */
+        public int from, to;
+        /** The number of live particles in a sparse slice, and the first of its liveness words in
+         * which a particle died (or {@code Integer.MAX_VALUE}). */
+        public int living, firstDied;
+
+        public void prepare (List<? extends Effector> effectors, float now, float dt,
+                             int from, int to) {
+            this.effectors = effectors;
+            this.now = now;
+            this.dt = dt;
+            this.from = from;
+            this.to = to;
+        }
+
+        public void run () {
+            if (alive != null) {
+                living = 0;
+                firstDied = Integer.MAX_VALUE;
+                int pp = from*32, ppos = pp*NUM_FIELDS, ecount = effectors.size();
+                for (int aa = from; aa < to; aa++) {
+                    int live = alive[aa], mask = 1, died = 0;
+                    for (int end = pp+32; pp < end; pp++, ppos += NUM_FIELDS, mask <<= 1) {
+                        // if this particle is not alive, skip it
+                        if ((live & mask) == 0) continue;
+
+                        // if this particle has died, mark it as such
+                        if (now - data[ppos+BIRTH] > data[ppos+LIFESPAN]) {
+                            live &= ~mask;
+                            died++;
+                            continue;
+                        }
+
+                        // the particle lives, apply the effectors
+                        for (int ee = 0; ee < ecount; ee++) {
+                            effectors.get(ee).apply(pp, data, ppos, now, dt);
+                        }
+                        living++;
+                    }
+
+                    // if we killed off any particles, update the liveness array
+                    if (died > 0) {
+                        alive[aa] = live;
+                        if (firstDied == Integer.MAX_VALUE) firstDied = aa;
+                    }
+                }
+            } else {
+                for (int ee = 0, ecount = effectors.size(); ee < ecount; ee++) {
+                    effectors.get(ee).apply(buffer, from, to, now, dt);
+                }
+            }
+        }
+    }
+
+    /** Moves the particle at index {@code from} into index {@code to}. The particle previously at
+     * {@code to} is overwritten. */
+    protected void move (int from, int to) {
+        if (from == to) return;
+        if (fields == null) {
+            System.arraycopy(data, from*NUM_FIELDS, data, to*NUM_FIELDS, NUM_FIELDS);
+        } else {
+            for (int ff = 0; ff < NUM_FIELDS; ff++) fields[ff][to] = fields[ff][from];
+        }
+    }
+
     protected final int _maxParticles;
     protected int _live;
+
+    /** The index of the first word of {@link #alive} that may contain a free slot (sparse only). */
+    protected int _firstFree;
+
+    /** The executor used to apply effectors in parallel, or null. */
+    protected Parallel _parallel;
+    /** The number of live particles at or above which effectors are applied in parallel. */
+    protected int _minParallel;
+    protected Slice[] _slices, _serial;
 }
@@ -6,44 +6,34 @@
 package tripleplay.particle;
 
 import playn.core.gl.GLContext;
-import playn.core.gl.IndexedTrisShader;
+
+import tripleplay.util.AtlasShader;
 
 /**
  * A custom shader designed for shading particles.
  */
-public class ParticleShader extends IndexedTrisShader
+public class ParticleShader extends AtlasShader
 {
+    /** Our core (the same as {@link AtlasShader#core}), which adds quads for particles. */
     public ParticleCore core;
 
     public ParticleShader (GLContext ctx) {
         super(ctx);
     }
 
-    public ParticleShader prepare (int tex, int maxQuads) {
-        prepareTexture(tex, 1);
-        ((ParticleCore)texCore).ensureCapacity(maxQuads);
+    @Override public ParticleShader prepare (int tex, int maxQuads) {
+        super.prepare(tex, maxQuads);
         return this;
     }
 
     @Override
-    protected Core createTextureCore () {
-        return core = new ParticleCore(vertexShader(), textureFragmentShader());
-    }
-
-    @Override
-    protected Core createColorCore () {
-        throw new UnsupportedOperationException("Color core should not be used.");
+    protected AtlasCore createCore (String vertexShader, String fragShader) {
+        return core = new ParticleCore(vertexShader, fragShader);
     }
 
-    protected class ParticleCore extends ITCore {
+    protected class ParticleCore extends AtlasCore {
         public ParticleCore (String vertexShader, String fragShader) {
-            super(vertexShader, fragShader);
-        }
-
-        public void ensureCapacity (int maxQuads) {
-            // this doesn't actually change anything, it just makes sure we have space for a
-            // primitive of the specified size and does some idempotent math
-            beginPrimitive(maxQuads*4, maxQuads*6);
+            super(vertexShader, fragShader, STAGED_QUADS);
         }
 
         public void addQuad (float left, float top, float right, float bot, float[] data, int ppos) {
@@ -56,12 +46,70 @@ public class ParticleShader extends IndexedTrisShader
             vertices.add(data, pstart, 8).add(left,  bot).add(0, 1);
             vertices.add(data, pstart, 8).add(right, bot).add(1, 1);
 
-            elements.add(vertIdx+0);
-            elements.add(vertIdx+1);
-            elements.add(vertIdx+2);
-            elements.add(vertIdx+1);
-            elements.add(vertIdx+3);
-            elements.add(vertIdx+2);
+            addElements(vertIdx);
+        }
+
+        /**
+         * Adds quads for the particles in {@code [from, to)} of a buffer that keeps its live
+         * particles contiguous. The vertices for a run of particles are staged in a single array
+         * and uploaded with one copy, and their elements are copied from a precomputed table.
+         */
+        public void addQuads (float left, float top, float right, float bot,
+                              ParticleBuffer buffer, int from, int to) {
+            float[] data = buffer.data, verts = _verts;
+            float[][] fields = buffer.fields;
+            while (from < to) {
+                int quads = Math.min(to - from, STAGED_QUADS);
+                int vertIdx = beginPrimitive(quads*4, quads*6);
+                for (int qq = 0, vv = 0; qq < quads; qq++, from++) {
+                    // stage m00,m01,m10,m11,tx,ty,ar,gb once, then copy it to the other vertices
+                    if (fields == null) {
+                        System.arraycopy(data, from*ParticleBuffer.NUM_FIELDS+ParticleBuffer.M00,
+                                         verts, vv, 8);
+                    } else {
+                        for (int ff = 0; ff < 8; ff++) {
+                            verts[vv+ff] = fields[ParticleBuffer.M00+ff][from];
+                        }
+                    }
+                    vv = addCorner(verts, vv, left, top, 0, 0);
+                    System.arraycopy(verts, vv-VERTEX_SIZE, verts, vv, 8);
+                    vv = addCorner(verts, vv, right, top, 1, 0);
+                    System.arraycopy(verts, vv-VERTEX_SIZE, verts, vv, 8);
+                    vv = addCorner(verts, vv, left, bot, 0, 1);
+                    System.arraycopy(verts, vv-VERTEX_SIZE, verts, vv, 8);
+                    vv = addCorner(verts, vv, right, bot, 1, 1);
+                }
+                vertices.add(verts, 0, quads*4*VERTEX_SIZE);
+                if (vertIdx % 4 == 0) {
+                    elements.add(quadElements(), vertIdx/4*6, quads*6);
+                } else {
+                    for (int qq = 0; qq < quads; qq++) addElements(vertIdx + qq*4);
+                }
+            }
         }
+
     }
+
+    /** Returns the elements for {@link #MAX_QUADS} consecutive quads, creating them if needed. */
+    protected static short[] quadElements () {
+        if (_quadElements == null) {
+            short[] elems = new short[MAX_QUADS*6];
+            for (int qq = 0, ee = 0; qq < MAX_QUADS; qq++) {
+                int vertIdx = qq*4;
+                elems[ee++] = (short)(vertIdx+0);
+                elems[ee++] = (short)(vertIdx+1);
+                elems[ee++] = (short)(vertIdx+2);
+                elems[ee++] = (short)(vertIdx+1);
+                elems[ee++] = (short)(vertIdx+3);
+                elems[ee++] = (short)(vertIdx+2);
+            }
+            _quadElements = elems;
+        }
+        return _quadElements;
+    }
+
+    protected static short[] _quadElements;
+
+    /** The number of quads staged in a single vertex upload. */
+    protected static final int STAGED_QUADS = 256;
 }
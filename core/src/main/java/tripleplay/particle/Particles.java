@@ -5,16 +5,26 @@
 
 package tripleplay.particle;
 
-import react.Signal;
-import react.Slot;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import pythagoras.f.IRectangle;
 
 import playn.core.GroupLayer;
 import playn.core.Image;
+import playn.core.ImmediateLayer;
+import playn.core.InternalTransform;
+import playn.core.Layer;
+import playn.core.Surface;
 import playn.core.util.Clock;
 import static playn.core.PlayN.graphics;
 
 import tripleplay.particle.Emitter;
+import tripleplay.platform.TPPlatform;
 import tripleplay.util.Paintable;
+import tripleplay.util.Parallel;
 
 /**
  * Manages all particle emitters.
@@ -22,6 +32,138 @@ import tripleplay.util.Paintable;
 public class Particles
     implements Paintable
 {
+    /**
+     * Configures the layout of the particle buffers used by emitters created after this call. The
+     * default is {@link ParticleBuffer.Layout#SPARSE}. Effects that spend much of their time with
+     * few live particles relative to their maximum (bursts, explosions) benefit from {@link
+     * ParticleBuffer.Layout#COMPACT}, as long as none of their effectors or initializers rely on
+     * a particle's index remaining stable over its lifetime. Large emitters whose effectors
+     * override {@link Effector#apply(ParticleBuffer,int,int,float,float)} (as do all of the stock
+     * effectors) are best served by {@link ParticleBuffer.Layout#FIELDS}.
+     *
+     * @return this particles instance, for call chaining.
+     */
+    public Particles setLayout (ParticleBuffer.Layout layout) {
+        _layout = layout;
+        return this;
+    }
+
+    /**
+     * Configures whether emitters created after this call are rendered in batches. When batching,
+     * all emitters that share an image and a parent layer are rendered by a single layer, added
+     * to the parent when the first such emitter is created, in a single draw call. The emitters'
+     * own layers are still added to the parent (so that they may be used for positioning and to
+     * hide the emitter), but do no rendering. Because a batch is rendered at the depth of its
+     * layer, batched emitters cannot be depth sorted relative to one another or to other layers.
+     *
+     * @return this particles instance, for call chaining.
+     */
+    public Particles setBatched (boolean batched) {
+        _batched = batched;
+        return this;
+    }
+
+    /**
+     * Configures whether emitters created after this call are pooled. Pooled emitters are obtained
+     * from a pool of previously destroyed emitters with the same capacity, image and layout (if
+     * one is available), and are reset and returned to that pool when they are destroyed (either
+     * explicitly or via {@link Emitter#destroyOnEmpty}). This avoids allocating particle buffers
+     * and layers for short-lived effects. See {@link #prewarm} to populate the pool in advance.
+     *
+     * @return this particles instance, for call chaining.
+     */
+    public Particles setPooled (boolean pooled) {
+        _pooled = pooled;
+        return this;
+    }
+
+    /**
+     * Adds {@code count} emitters with the specified capacity and image (and the current layout)
+     * to the emitter pool. This is generally called while loading, so that pooled emitters can be
+     * created later without allocation.
+     *
+     * @return this particles instance, for call chaining.
+     */
+    public Particles prewarm (int maxParticles, Image image, int count) {
+        for (int ii = 0; ii < count; ii++) {
+            Emitter emitter = new Emitter(this, createBuffer(maxParticles), image);
+            emitter._pooled = true;
+            pool(image).add(emitter);
+        }
+        return this;
+    }
+
+    /**
+     * Configures a budget that limits the particles generated by all emitters managed by this
+     * instance, throttling emitters in order of their {@link Emitter#priority}. Pass null to
+     * remove an existing budget.
+     *
+     * @return this particles instance, for call chaining.
+     */
+    public Particles setBudget (Budget budget) {
+        _budget = budget;
+        return this;
+    }
+
+    /**
+     * Configures whether emitters are culled. A culled emitter is not rendered, and is only updated
+     * every {@code culledInterval} frames (with the time accumulated since its last update, up to a
+     * quarter of a second), or never if {@code culledInterval} is zero, in which case the time for
+     * which it was culled is skipped. An emitter is culled if its layer, or any of its ancestors, is
+     * invisible or not attached to the root layer, or if its particles and its layer's origin lie
+     * entirely outside the viewport configured via {@link #setViewport}. The particles of culled
+     * emitters do not count against the {@link Budget}.
+     *
+     * @return this particles instance, for call chaining.
+     */
+    public Particles setCulling (boolean culling, int culledInterval) {
+        _culling = culling;
+        _culledInterval = culledInterval;
+        return this;
+    }
+
+    /**
+     * Configures the viewport used to cull emitters (see {@link #setCulling}), or null to cull
+     * only invisible and detached emitters. The viewport is in the coordinate system of particle
+     * positions, which for emitters initialized via {@link
+     * tripleplay.particle.init.Transform#layer} is that of the root layer after the root
+     * transform (and hence the display scale factor) is applied.
+     *
+     * @return this particles instance, for call chaining.
+     */
+    public Particles setViewport (IRectangle viewport) {
+        _viewport = viewport;
+        return this;
+    }
+
+    /**
+     * Configures the particle buffers created after this call to apply their effectors in
+     * parallel when they have at least {@code minParticles} live particles. This is generally
+     * used with {@link tripleplay.platform.TPPlatform#parallel}, which runs everything on the
+     * calling thread on platforms without threads. All of the effectors used by emitters created
+     * with parallel buffers must be safe to apply in parallel, see {@link
+     * ParticleBuffer#setParallel}. Pass null to disable parallel application.
+     *
+     * @return this particles instance, for call chaining.
+     */
+    public Particles setParallel (Parallel parallel, int minParticles) {
+        _parallel = parallel;
+        _minParallel = minParticles;
+        return this;
+    }
+
+    /**
+     * Configures the telemetry that records the particle counts and update and render times of
+     * emitters created after this call, or null to disable telemetry. Emitters created while
+     * telemetry is disabled do no bookkeeping at all. See {@link Telemetry}.
+     *
+     * @return this particles instance, for call chaining.
+     */
+    public Particles setTelemetry (Telemetry telemetry) {
+        _telemetry = telemetry;
+        return this;
+    }
+
     /**
      * Creates an emitter that supports up to {@code maxParticles} particles at any one time. The
      * emitter is added to the root layer.
@@ -39,21 +181,42 @@ public class Particles
      * @param onLayer the layer to which to add the layer which will render the particles.
      */
     public Emitter createEmitter (int maxParticles, Image image, GroupLayer onLayer) {
-        final Emitter emitter = new Emitter(this, maxParticles, image);
-        emitter._conn = _onPaint.connect(new Slot<Now>() { @Override public void onEmit (Now now) {
-            emitter.update(now.time, now.dt);
-        }});
+        Emitter emitter = _pooled ? checkout(maxParticles, image) :
+            new Emitter(this, createBuffer(maxParticles), image);
+        emitter._registered = true;
+        if (_telemetry != null) emitter._stats = _telemetry.register();
+        wake(emitter);
         onLayer.add(emitter.layer);
+        if (_batched) batch(onLayer, image).add(emitter);
         return emitter;
     }
 
     /**
-     * Updates all registered emitters. Call this from {@code Game.paint} or similar.
+     * Updates all active emitters. Call this from {@code Game.paint} or similar. Emitters that have
+     * no generator and no live particles are put to sleep and not updated until they are given
+     * particles or a generator (see {@link Emitter#generator}).
      *
      * @param clock an up-to-date frame clock.
      */
     public void paint (Clock clock) {
-        _onPaint.emit(_now.update(clock.dt()));
+        Now now = _now.update(clock.dt());
+        if (_telemetry != null) _telemetry.publish();
+        Budget budget = _budget;
+        if (budget == null) {
+            updateActive(now.time, now.dt);
+        } else {
+            budget.willUpdate();
+            long start = TPPlatform.instance().nanoTime();
+            updateActive(now.time, now.dt);
+            budget.didUpdate((TPPlatform.instance().nanoTime() - start) / 1e6f);
+        }
+    }
+
+    /**
+     * Returns the number of emitters that are currently awake (updated every frame).
+     */
+    public int activeEmitters () {
+        return _active.size();
     }
 
     /**
@@ -63,6 +226,134 @@ public class Particles
         _shader.clearProgram();
     }
 
+    /**
+     * Creates the particle buffer for a newly created emitter.
+     */
+    protected ParticleBuffer createBuffer (int maxParticles) {
+        ParticleBuffer buffer = new ParticleBuffer(maxParticles, _layout);
+        if (_parallel != null) buffer.setParallel(_parallel, _minParallel);
+        return buffer;
+    }
+
+    /**
+     * Returns the batch for emitters with the specified parent and image, creating it if needed.
+     */
+    protected Batch batch (GroupLayer parent, Image image) {
+        for (int ii = 0, ll = _batches.size(); ii < ll; ii++) {
+            Batch batch = _batches.get(ii);
+            if (batch.parent == parent && batch.image == image) return batch;
+        }
+        Batch batch = new Batch(parent, image);
+        _batches.add(batch);
+        return batch;
+    }
+
+    /**
+     * Returns a pooled emitter with the specified capacity and image, creating one if the pool
+     * has none available.
+     */
+    protected Emitter checkout (int maxParticles, Image image) {
+        List<Emitter> pool = pool(image);
+        for (int ii = pool.size()-1; ii >= 0; ii--) {
+            ParticleBuffer buffer = pool.get(ii)._buffer;
+            if (buffer.maxParticles() == maxParticles && buffer.layout == _layout) {
+                return pool.remove(ii);
+            }
+        }
+        Emitter emitter = new Emitter(this, createBuffer(maxParticles), image);
+        emitter._pooled = true;
+        return emitter;
+    }
+
+    /**
+     * Returns the pool for emitters using the specified image, creating it if needed.
+     */
+    protected List<Emitter> pool (Image image) {
+        List<Emitter> pool = _pools.get(image);
+        if (pool == null) _pools.put(image, pool = new ArrayList<Emitter>());
+        return pool;
+    }
+
+    /**
+     * Updates the active emitters and then removes any that went to sleep (or were destroyed)
+     * while being updated. Sleeping emitters that were assigned a generator since the last update
+     * are first woken. Emitters that are activated during the update are first updated on the
+     * next frame.
+     */
+    protected void updateActive (float time, float dt) {
+        List<Emitter> sleeping = _sleeping;
+        if (!sleeping.isEmpty()) {
+            int kept = 0;
+            for (int ii = 0, ll = sleeping.size(); ii < ll; ii++) {
+                Emitter emitter = sleeping.get(ii);
+                if (emitter._registered && !emitter._awake && emitter.generator == null) {
+                    sleeping.set(kept++, emitter);
+                    continue;
+                }
+                emitter._sleepListed = false;
+                // our generator field may be assigned directly, which cannot wake us itself
+                if (emitter._registered && !emitter._awake) wake(emitter);
+            }
+            for (int ii = sleeping.size()-1; ii >= kept; ii--) sleeping.remove(ii);
+        }
+
+        List<Emitter> active = _active;
+        for (int ii = 0, ll = active.size(); ii < ll; ii++) {
+            Emitter emitter = active.get(ii);
+            if (emitter._awake) emitter.update(time, dt);
+        }
+        int kept = 0;
+        for (int ii = 0, ll = active.size(); ii < ll; ii++) {
+            Emitter emitter = active.get(ii);
+            if (emitter._awake) active.set(kept++, emitter);
+            else {
+                emitter._listed = false;
+                if (emitter._registered && !emitter._sleepListed) {
+                    sleeping.add(emitter);
+                    emitter._sleepListed = true;
+                }
+            }
+        }
+        for (int ii = active.size()-1; ii >= kept; ii--) active.remove(ii);
+    }
+
+    /**
+     * Returns true if the supplied emitter should be culled this frame.
+     */
+    protected boolean isCulled (Emitter emitter) {
+        Layer root = graphics().rootLayer(), layer = emitter.layer;
+        for (; layer != null && layer != root; layer = layer.parent()) {
+            if (!layer.visible()) return true;
+        }
+        if (layer == null) return true; // detached
+        IRectangle bounds = emitter.bounds();
+        if (_viewport == null || bounds == null || _viewport.intersects(bounds)) return false;
+        // the bounds of a culled emitter's particles are not updated, so we also check where its
+        // new particles will appear, lest it be culled forever once its particles drift away
+        InternalTransform xform = _xform;
+        if (xform == null) xform = _xform = graphics().ctx().createTransform();
+        xform.setTransform(1, 0, 0, 1, 0, 0);
+        for (layer = emitter.layer; layer != null; layer = layer.parent()) {
+            xform.preConcatenate((InternalTransform)layer.transform());
+        }
+        xform.preConcatenate(graphics().ctx().rootTransform());
+        return !_viewport.contains(xform.tx(), xform.ty());
+    }
+
+    void wake (Emitter emitter) {
+        if (!emitter._registered) return;
+        emitter._awake = true;
+        if (!emitter._listed) {
+            _active.add(emitter);
+            emitter._listed = true;
+        }
+    }
+
+    void release (Emitter emitter) {
+        emitter.reset();
+        pool(emitter._image).add(emitter);
+    }
+
     float now () {
         return _now.time;
     }
@@ -77,7 +368,69 @@ public class Particles
         }
     }
 
+    /** Renders all emitters that share a parent layer and image in a single primitive. */
+    protected class Batch {
+        public final GroupLayer parent;
+        public final Image image;
+        public final List<Emitter> emitters = new ArrayList<Emitter>();
+        public final ImmediateLayer layer;
+
+        public Batch (GroupLayer parent, final Image image) {
+            this.parent = parent;
+            this.image = image;
+            this.layer = graphics().createImmediateLayer(new ImmediateLayer.Renderer() {
+                @Override public void render (Surface surface) {
+                    int quads = 0;
+                    for (int ii = 0, ll = emitters.size(); ii < ll; ii++) {
+                        quads += emitters.get(ii)._buffer.maxParticles();
+                    }
+                    ParticleShader shader = _shader.prepare(image.ensureTexture(), quads);
+                    for (int ii = 0, ll = emitters.size(); ii < ll; ii++) {
+                        Emitter emitter = emitters.get(ii);
+                        if (!emitter.layer.visible() || emitter._culled) continue;
+                        Telemetry.Stats stats = emitter._stats;
+                        long start = (stats == null) ? 0 : TPPlatform.instance().nanoTime();
+                        emitter._buffer.render(shader, image.width(), image.height());
+                        if (stats != null) {
+                            stats.noteRendered(TPPlatform.instance().nanoTime() - start);
+                        }
+                    }
+                }
+            });
+            parent.add(layer);
+        }
+
+        public void add (Emitter emitter) {
+            emitters.add(emitter);
+            emitter._batch = this;
+        }
+
+        public void remove (Emitter emitter) {
+            emitters.remove(emitter);
+            emitter._batch = null;
+            if (emitters.isEmpty()) {
+                layer.destroy();
+                _batches.remove(this);
+            }
+        }
+    }
+
+    protected ParticleBuffer.Layout _layout = ParticleBuffer.Layout.SPARSE;
+    protected boolean _batched, _pooled;
+    protected Budget _budget;
+    protected boolean _culling;
+    protected int _culledInterval;
+    protected IRectangle _viewport;
+    protected InternalTransform _xform;
+    protected Parallel _parallel;
+    protected int _minParallel;
+    protected Telemetry _telemetry;
+    protected final Map<Image,List<Emitter>> _pools = new HashMap<Image,List<Emitter>>();
+    protected final List<Batch> _batches = new ArrayList<Batch>();
     protected final Now _now = new Now();
-    protected final Signal<Now> _onPaint = Signal.create();
+    /** The emitters that are awake, and any that went to sleep since we last updated. */
+    protected final List<Emitter> _active = new ArrayList<Emitter>();
+    /** The emitters that have gone to sleep, checked each frame for a newly assigned generator. */
+    protected final List<Emitter> _sleeping = new ArrayList<Emitter>();
     protected final ParticleShader _shader = new ParticleShader(graphics().ctx());
 }
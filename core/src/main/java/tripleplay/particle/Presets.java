@@ -0,0 +1,395 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.particle;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import pythagoras.f.Vector;
+
+import playn.core.Asserts;
+import playn.core.GroupLayer;
+import playn.core.Image;
+import playn.core.Json;
+import playn.core.util.Callback;
+import static playn.core.PlayN.*;
+
+import tripleplay.particle.effect.Alpha;
+import tripleplay.particle.effect.Drag;
+import tripleplay.particle.effect.Gravity;
+import tripleplay.particle.effect.Move;
+import tripleplay.particle.init.Color;
+import tripleplay.particle.init.Lifespan;
+import tripleplay.particle.init.Transform;
+import tripleplay.particle.init.Velocity;
+import tripleplay.util.Deflater;
+import tripleplay.util.FastRandom;
+import tripleplay.util.Inflater;
+import tripleplay.util.Interpolator;
+import tripleplay.util.JsonUtil;
+import tripleplay.util.Randoms;
+
+/**
+ * A set of named particle effects, defined declaratively rather than in code. Each effect's
+ * initializers and effectors are created once, when the presets are loaded, and are shared by
+ * every emitter created from it, so spawning an effect costs an emitter checkout and a
+ * generator.
+ *
+ * <p>Presets are defined in JSON:</p>
+ * <pre>{@code
+ * { "presets": [
+ *   { "name": "sparks", "image": "images/spark.png", "maxParticles": 200,
+ *     "generator": { "type": "impulse", "count": 100 },
+ *     "initters": [ { "type": "identity" },
+ *                   { "type": "randomLifespan", "min": 0.5, "max": 1 },
+ *                   { "type": "color", "r": 1, "g": 0.8, "b": 0.2 },
+ *                   { "type": "randomCircle", "min": 50, "max": 150 } ],
+ *     "effectors": [ { "type": "gravity", "accel": 100 }, { "type": "move" },
+ *                    { "type": "alpha", "start": 1, "end": 0, "interp": "EASE_IN" } ] }
+ * ] }
+ * }</pre>
+ *
+ * <p>The supported steps and their parameters (with defaults) are those of the stock
+ * initializers, effectors and generators: see {@link Op}. Presets can also be stored in a
+ * compact encoding (see {@link #toCompact}), which is smaller and faster to decode than JSON,
+ * and which stores parameter values exactly.</p>
+ */
+public class Presets
+{
+    /** A single particle effect definition. Presets are immutable and may be shared freely. */
+    public static class Preset {
+        /** The name of this preset. */
+        public final String name;
+
+        /** The path of the image used for this preset's particles, or null. */
+        public final String image;
+
+        /** The maximum number of live particles in an emitter created from this preset. */
+        public final int maxParticles;
+
+        /** The initializers applied to new particles, in order. */
+        public final List<Initializer> initters;
+
+        /** The effectors applied to live particles, in order. */
+        public final List<Effector> effectors;
+
+        /**
+         * Creates an emitter for this effect, using the supplied image, and adds it to {@code
+         * onLayer}. If {@code placement} is not null, it is applied to new particles before this
+         * preset's initializers; this is generally a {@link Transform#layer} initializer that
+         * positions the effect.
+         */
+        public Emitter create (Particles parts, Image image, GroupLayer onLayer,
+                               Initializer placement) {
+            Emitter emitter = parts.createEmitter(maxParticles, image, onLayer);
+            if (placement != null) emitter.initters.add(placement);
+            emitter.initters.addAll(initters);
+            emitter.effectors.addAll(effectors);
+            emitter.setGenerator(_generator.createGenerator());
+            return emitter;
+        }
+
+        protected Preset (String name, String image, int maxParticles, Step generator,
+                          List<Step> initters, List<Step> effectors, Randoms rando) {
+            this.name = name;
+            this.image = image;
+            this.maxParticles = maxParticles;
+            _generator = generator;
+            _initters = initters;
+            _effectors = effectors;
+
+            List<Initializer> inits = new ArrayList<Initializer>();
+            for (Step step : initters) inits.add(step.op.createInitializer(step.args, rando));
+            this.initters = Collections.unmodifiableList(inits);
+            List<Effector> effs = new ArrayList<Effector>();
+            for (Step step : effectors) effs.add(step.op.createEffector(step.args, step.interp));
+            this.effectors = Collections.unmodifiableList(effs);
+        }
+
+        protected final Step _generator;
+        protected final List<Step> _initters, _effectors;
+    }
+
+    /** The presets, by name. */
+    public final Map<String,Preset> presets;
+
+    /**
+     * Loads presets from PlayN assets. If {@code path} ends with {@code .json} the presets are
+     * parsed from JSON, otherwise they are decoded from the compact encoding.
+     */
+    public static void fromAssets (final String path, final Callback<Presets> callback) {
+        Asserts.checkNotNull(callback);
+        assets().getText(path, new Callback.Chain<String>(callback) {
+            public void onSuccess (String text) {
+                Presets presets;
+                try {
+                    presets = path.endsWith(".json") ? fromJson(json().parse(text)) :
+                        fromCompact(text);
+                } catch (Exception err) {
+                    callback.onFailure(err);
+                    return;
+                }
+                callback.onSuccess(presets);
+            }
+        });
+    }
+
+    /** Creates presets from their JSON definition. */
+    public static Presets fromJson (Json.Object json) {
+        Presets presets = new Presets();
+        for (Json.Object pjson : json.getArray("presets", Json.Object.class)) {
+            Json.Object gjson = JsonUtil.getObject(pjson, "generator", null);
+            presets.add(JsonUtil.requireString(pjson, "name"),
+                        JsonUtil.getString(pjson, "image", null),
+                        JsonUtil.requireInt(pjson, "maxParticles"),
+                        (gjson == null) ? new Step(Op.NONE) : Step.fromJson(gjson, GENERATOR),
+                        steps(pjson, "initters", INITIALIZER),
+                        steps(pjson, "effectors", EFFECTOR));
+        }
+        return presets;
+    }
+
+    /** Creates presets from their compact encoding. */
+    public static Presets fromCompact (String data) {
+        Inflater in = new Inflater(data);
+        int version = in.popVarInt();
+        if (version != COMPACT_VERSION) throw new IllegalArgumentException(
+            "Unsupported presets version [version=" + version + "]");
+        Presets presets = new Presets();
+        for (int pp = 0, count = in.popVarInt(); pp < count; pp++) {
+            String name = in.popString(), image = in.popString();
+            int maxParticles = in.popVarInt();
+            Step generator = Step.fromCompact(in);
+            List<Step> initters = new ArrayList<Step>();
+            for (int ii = 0, icount = in.popVarInt(); ii < icount; ii++) {
+                initters.add(Step.fromCompact(in));
+            }
+            List<Step> effectors = new ArrayList<Step>();
+            for (int ii = 0, ecount = in.popVarInt(); ii < ecount; ii++) {
+                effectors.add(Step.fromCompact(in));
+            }
+            presets.add(name, image.length() == 0 ? null : image, maxParticles, generator,
+                        initters, effectors);
+        }
+        return presets;
+    }
+
+    /**
+     * Returns the preset with the specified name.
+     *
+     * @throws IllegalArgumentException if there is no such preset.
+     */
+    public Preset get (String name) {
+        Preset preset = presets.get(name);
+        if (preset == null) {
+            throw new IllegalArgumentException("Missing required preset [name=" + name + "]");
+        }
+        return preset;
+    }
+
+    /** Returns these presets in the compact encoding read by {@link #fromCompact}. */
+    public String toCompact () {
+        Deflater out = new Deflater();
+        out.addVarInt(COMPACT_VERSION).addVarInt(_ordered.size());
+        for (Preset preset : _ordered) {
+            out.addString(preset.name).addString(preset.image == null ? "" : preset.image);
+            out.addVarInt(preset.maxParticles);
+            preset._generator.toCompact(out);
+            out.addVarInt(preset._initters.size());
+            for (Step step : preset._initters) step.toCompact(out);
+            out.addVarInt(preset._effectors.size());
+            for (Step step : preset._effectors) step.toCompact(out);
+        }
+        return out.encoded();
+    }
+
+    /** The steps that may appear in a preset, along with their parameters and defaults. */
+    protected enum Op {
+        // generators
+        NONE(GENERATOR, "none"),
+        IMPULSE(GENERATOR, "impulse", "count", 1),
+        CONSTANT(GENERATOR, "constant", "rate", 1),
+
+        // initializers
+        IDENTITY(INITIALIZER, "identity"),
+        TRANSFORM(INITIALIZER, "transform", "scale", 1, "rotation", 0, "x", 0, "y", 0),
+        SCALE(INITIALIZER, "scale", "scale", 1),
+        RANDOM_SCALE(INITIALIZER, "randomScale", "min", 1, "max", 1),
+        RANDOM_POS(INITIALIZER, "randomPos", "x", 0, "y", 0, "width", 0, "height", 0),
+        RANDOM_OFFSET(INITIALIZER, "randomOffset", "noise", 0),
+        LIFESPAN(INITIALIZER, "lifespan", "lifespan", 1),
+        RANDOM_LIFESPAN(INITIALIZER, "randomLifespan", "min", 1, "max", 1),
+        COLOR(INITIALIZER, "color", "r", 1, "g", 1, "b", 1, "a", 1),
+        VELOCITY(INITIALIZER, "velocity", "x", 0, "y", 0),
+        RANDOM_SQUARE(INITIALIZER, "randomSquare", "minX", 0, "maxX", 0, "minY", 0, "maxY", 0),
+        RANDOM_NORMAL(INITIALIZER, "randomNormal", "meanX", 0, "devX", 0, "meanY", 0, "devY", 0),
+        RANDOM_CIRCLE(INITIALIZER, "randomCircle", "min", 0, "max", 0),
+        INCREMENT(INITIALIZER, "increment", "x", 0, "y", 0),
+
+        // effectors
+        MOVE(EFFECTOR, "move"),
+        GRAVITY(EFFECTOR, "gravity", "accel", Gravity.EARTH_G),
+        DRAG(EFFECTOR, "drag", "x", 1, "y", 1),
+        ALPHA(EFFECTOR, "alpha", "start", 1, "end", 0);
+
+        /** Whether this step is a generator, initializer or effector. */
+        public final int kind;
+        /** The name of this step in JSON. */
+        public final String type;
+        /** The names of this step's parameters in JSON. */
+        public final String[] params;
+        /** The default values for this step's parameters. */
+        public final float[] defaults;
+
+        public static Op forType (String type, int kind) {
+            for (Op op : values()) if (op.kind == kind && op.type.equals(type)) return op;
+            throw new IllegalArgumentException("Unknown preset step [type=" + type + "]");
+        }
+
+        Op (int kind, String type, Object... params) {
+            this.kind = kind;
+            this.type = type;
+            this.params = new String[params.length/2];
+            this.defaults = new float[params.length/2];
+            for (int ii = 0; ii < this.params.length; ii++) {
+                this.params[ii] = (String)params[2*ii];
+                this.defaults[ii] = ((Number)params[2*ii+1]).floatValue();
+            }
+        }
+
+        public Generator createGenerator (float[] args) {
+            switch (this) {
+            case IMPULSE: return Generator.impulse((int)args[0]);
+            case CONSTANT: return Generator.constant(args[0]);
+            default: return Generator.NOOP;
+            }
+        }
+
+        public Initializer createInitializer (float[] args, Randoms rando) {
+            switch (this) {
+            case IDENTITY: return Transform.identity();
+            case TRANSFORM: return Transform.constant(args[0], args[1], args[2], args[3]);
+            case SCALE: return Transform.scale(args[0]);
+            case RANDOM_SCALE: return Transform.randomScale(rando, args[0], args[1]);
+            case RANDOM_POS: return Transform.randomPos(rando, args[0], args[1], args[2], args[3]);
+            case RANDOM_OFFSET: return Transform.randomOffset(rando, args[0]);
+            case LIFESPAN: return Lifespan.constant(args[0]);
+            case RANDOM_LIFESPAN: return Lifespan.random(rando, args[0], args[1]);
+            case COLOR: return Color.constant(args[0], args[1], args[2], args[3]);
+            case VELOCITY: return Velocity.constant(new Vector(args[0], args[1]));
+            case RANDOM_SQUARE:
+                return Velocity.randomSquare(rando, args[0], args[1], args[2], args[3]);
+            case RANDOM_NORMAL:
+                return Velocity.randomNormal(rando, args[0], args[1], args[2], args[3]);
+            case RANDOM_CIRCLE: return Velocity.randomCircle(rando, args[0], args[1]);
+            case INCREMENT: return Velocity.increment(args[0], args[1]);
+            default: throw new AssertionError(this);
+            }
+        }
+
+        public Effector createEffector (float[] args, String interp) {
+            switch (this) {
+            case MOVE: return new Move();
+            case GRAVITY: return new Gravity(args[0]);
+            case DRAG: return new Drag(args[0], args[1]);
+            case ALPHA: return Alpha.byAge(interpolator(interp), args[0], args[1]);
+            default: throw new AssertionError(this);
+            }
+        }
+    }
+
+    /** A single generator, initializer or effector in a preset, with its parameters. */
+    protected static class Step {
+        public final Op op;
+        public final float[] args;
+        /** The name of the interpolator used by this step, or null. */
+        public final String interp;
+
+        public static Step fromJson (Json.Object json, int kind) {
+            Op op = Op.forType(JsonUtil.requireString(json, "type"), kind);
+            float[] args = new float[op.params.length];
+            for (int ii = 0; ii < args.length; ii++) {
+                args[ii] = JsonUtil.getFloat(json, op.params[ii], op.defaults[ii]);
+            }
+            return new Step(op, args, JsonUtil.getString(json, "interp", null));
+        }
+
+        public static Step fromCompact (Inflater in) {
+            Op op = Op.values()[in.popVarInt()];
+            float[] args = new float[op.params.length];
+            for (int ii = 0; ii < args.length; ii++) args[ii] = in.popFloat();
+            String interp = in.popString();
+            return new Step(op, args, interp.length() == 0 ? null : interp);
+        }
+
+        public Step (Op op) {
+            this(op, op.defaults, null);
+        }
+
+        public Step (Op op, float[] args, String interp) {
+            this.op = op;
+            this.args = args;
+            this.interp = interp;
+        }
+
+        public Generator createGenerator () {
+            return op.createGenerator(args);
+        }
+
+        public void toCompact (Deflater out) {
+            out.addVarInt(op.ordinal());
+            for (float arg : args) out.addFloat(arg);
+            out.addString(interp == null ? "" : interp);
+        }
+    }
+
+    protected static List<Step> steps (Json.Object json, String key, int kind) {
+        List<Step> steps = new ArrayList<Step>();
+        Json.Array array = JsonUtil.getArray(json, key, null);
+        if (array != null) {
+            for (int ii = 0, ll = array.length(); ii < ll; ii++) {
+                steps.add(Step.fromJson(array.getObject(ii), kind));
+            }
+        }
+        return steps;
+    }
+
+    protected static Interpolator interpolator (String name) {
+        if (name == null || name.equals("LINEAR")) return Interpolator.LINEAR;
+        if (name.equals("NOOP")) return Interpolator.NOOP;
+        if (name.equals("EASE_IN")) return Interpolator.EASE_IN;
+        if (name.equals("EASE_OUT")) return Interpolator.EASE_OUT;
+        if (name.equals("EASE_INOUT")) return Interpolator.EASE_INOUT;
+        if (name.equals("EASE_IN_BACK")) return Interpolator.EASE_IN_BACK;
+        if (name.equals("EASE_OUT_BACK")) return Interpolator.EASE_OUT_BACK;
+        throw new IllegalArgumentException("Unknown interpolator [name=" + name + "]");
+    }
+
+    protected Presets () {
+        this.presets = Collections.unmodifiableMap(_presets);
+    }
+
+    protected void add (String name, String image, int maxParticles, Step generator,
+                        List<Step> initters, List<Step> effectors) {
+        Preset preset = new Preset(
+            name, image, maxParticles, generator, initters, effectors, _rando);
+        _presets.put(name, preset);
+        _ordered.add(preset);
+    }
+
+    protected final Map<String,Preset> _presets = new HashMap<String,Preset>();
+    protected final List<Preset> _ordered = new ArrayList<Preset>();
+    /** The source of randomness for all of these presets' initializers. */
+    protected final Randoms _rando = Randoms.with(new FastRandom());
+
+    /** The kinds of preset steps. */
+    protected static final int GENERATOR = 0, INITIALIZER = 1, EFFECTOR = 2;
+
+    protected static final int COMPACT_VERSION = 2;
+}
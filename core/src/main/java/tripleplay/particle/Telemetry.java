@@ -0,0 +1,148 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.particle;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import react.Value;
+
+import tripleplay.util.Hud;
+
+/**
+ * Records what the emitters managed by a {@link Particles} instance cost, per emitter and in
+ * aggregate. Enable via {@link Particles#setTelemetry}; while disabled, emitters do no
+ * bookkeeping at all. The values are updated once per frame, at the start of {@link
+ * Particles#paint}, with the results of the previous frame, and may be added to a {@link Hud}
+ * via {@link Stats#addTo}. Times are measured with {@link
+ * tripleplay.platform.TPPlatform#nanoTime}, so their resolution depends on the platform.
+ */
+public class Telemetry
+{
+    /** The statistics for a single emitter, or for all emitters. */
+    public static class Stats {
+        /** A label used to identify these stats in {@link Telemetry#dump}. */
+        public String label;
+
+        /** The number of live particles at the end of the frame. */
+        public final Value<Integer> live = Value.create(0);
+        /** The number of particles added during the frame. */
+        public final Value<Integer> spawned = Value.create(0);
+        /** The number of particles that expired during the frame. */
+        public final Value<Integer> died = Value.create(0);
+
+        /** The nanoseconds spent running generators (including initializing new particles). */
+        public final Value<Long> generateNanos = Value.create(0L);
+        /** The nanoseconds spent applying effectors to live particles. */
+        public final Value<Long> applyNanos = Value.create(0L);
+        /** The nanoseconds spent rendering particles. */
+        public final Value<Long> renderNanos = Value.create(0L);
+
+        /** Adds rows for these stats to the supplied HUD. */
+        public void addTo (Hud hud) {
+            hud.add(label, true);
+            hud.add("Live:", live);
+            hud.add("Spawned:", spawned);
+            hud.add("Died:", died);
+            hud.add("Generate (ns):", generateNanos);
+            hud.add("Apply (ns):", applyNanos);
+            hud.add("Render (ns):", renderNanos);
+        }
+
+        @Override public String toString () {
+            return label + ": live=" + live.get() + " spawned=" + spawned.get() +
+                " died=" + died.get() + " generate=" + generateNanos.get() + "ns apply=" +
+                applyNanos.get() + "ns render=" + renderNanos.get() + "ns";
+        }
+
+        protected Stats (String label, Telemetry owner) {
+            this.label = label;
+            _owner = owner;
+            _total = (owner == null) ? null : owner.total;
+        }
+
+        void noteLive (int count) {
+            _live = count;
+        }
+
+        void noteSpawned (int count) {
+            _spawned += count;
+            if (_total != null) _total._spawned += count;
+        }
+
+        void noteGenerated (long nanos) {
+            _generate += nanos;
+            if (_total != null) _total._generate += nanos;
+        }
+
+        void noteApplied (int died, long nanos) {
+            _died += died;
+            _apply += nanos;
+            if (_total != null) _total.noteApplied(died, nanos);
+        }
+
+        void noteRendered (long nanos) {
+            _render += nanos;
+            if (_total != null) _total._render += nanos;
+        }
+
+        void publish () {
+            live.update(_live);
+            spawned.update(_spawned);
+            died.update(_died);
+            generateNanos.update(_generate);
+            applyNanos.update(_apply);
+            renderNanos.update(_render);
+            _spawned = _died = 0;
+            _generate = _apply = _render = 0;
+        }
+
+        protected final Telemetry _owner;
+        protected final Stats _total;
+        protected int _live, _spawned, _died;
+        protected long _generate, _apply, _render;
+    }
+
+    /** The statistics for all emitters. */
+    public final Stats total = new Stats("total", null);
+
+    /** Returns a summary of the most recently published statistics for all emitters. */
+    public String dump () {
+        StringBuilder buf = new StringBuilder(total.toString());
+        for (int ii = 0, ll = _emitters.size(); ii < ll; ii++) {
+            buf.append("\n  ").append(_emitters.get(ii));
+        }
+        return buf.toString();
+    }
+
+    /** Creates the stats for a newly created (or checked out) emitter. */
+    Stats register () {
+        Stats stats = new Stats("emitter" + (++_created), this);
+        _emitters.add(stats);
+        return stats;
+    }
+
+    /** Called when an emitter is destroyed. */
+    void unregister (Stats stats) {
+        stats.publish();
+        _emitters.remove(stats);
+    }
+
+    /** Publishes the previous frame's statistics. */
+    void publish () {
+        int live = 0;
+        for (int ii = 0, ll = _emitters.size(); ii < ll; ii++) {
+            Stats stats = _emitters.get(ii);
+            live += stats._live;
+            stats.publish();
+        }
+        total._live = live;
+        total.publish();
+    }
+
+    protected final List<Stats> _emitters = new ArrayList<Stats>();
+    protected int _created;
+}
@@ -8,6 +8,7 @@ package tripleplay.particle.effect;
 import playn.core.Color;
 
 import tripleplay.particle.Effector;
+import tripleplay.particle.ParticleBuffer;
 import tripleplay.util.Interpolator;
 import static tripleplay.particle.ParticleBuffer.*;
 
@@ -29,16 +30,79 @@ public class Alpha
      * supplied interpolator. In general you'd use {@code startAlpha} of 1 and {@code endAlpha} of
      * 0, but if you are doing uncommon things, you might use different values.
      */
-    public static Effector byAge (final Interpolator interp,
-                                  final float startAlpha, float endAlpha) {
-        final float rangeAlpha = endAlpha - startAlpha;
-        return new Effector() {
-            @Override public void apply (int index, float[] data, int start, float now, float dt) {
-                float alpha = interp.apply(
-                    startAlpha, rangeAlpha, now - data[start + BIRTH], data[start + LIFESPAN]);
-                float red = Color.decodeLower(data[start + ALPHA_RED]);
-                data[start + ALPHA_RED] = Color.encode(alpha, red);
+    public static Effector byAge (Interpolator interp, float startAlpha, float endAlpha) {
+        return new ByAge(interp, startAlpha, endAlpha - startAlpha);
+    }
+
+    /**
+     * Returns an effector that sets the particle's alpha to the value of {@code curve} at the
+     * particle's normalized age. Values outside [0, 1] are clamped.
+     */
+    public static Effector overLife (Curve curve) {
+        float[] table = new float[curve.table.length];
+        for (int ii = 0; ii < table.length; ii++) {
+            table[ii] = Color.encode(Math.max(0, Math.min(1, curve.table[ii])), 0);
+        }
+        return new OverLife(new Curve(table));
+    }
+
+    /** The effector returned by {@link #overLife}. Its curve holds alpha values pre-encoded into
+     * the upper half of {@link ParticleBuffer#ALPHA_RED}. */
+    static class OverLife extends Effector {
+        public final Curve encoded;
+
+        public OverLife (Curve encoded) {
+            this.encoded = encoded;
+        }
+
+        @Override public void apply (int index, float[] data, int start, float now, float dt) {
+            int idx = encoded.index(now - data[start + BIRTH], data[start + LIFESPAN]);
+            data[start + ALPHA_RED] = encoded.table[idx] + data[start + ALPHA_RED] % 256;
+        }
+
+        @Override public void apply (ParticleBuffer buffer, int from, int to, float now, float dt) {
+            if (buffer.fields == null) {
+                super.apply(buffer, from, to, now, dt);
+                return;
+            }
+            float[] births = buffer.fields[BIRTH], lifespans = buffer.fields[LIFESPAN];
+            float[] alphaReds = buffer.fields[ALPHA_RED], table = encoded.table;
+            for (int ii = from; ii < to; ii++) {
+                int idx = encoded.index(now - births[ii], lifespans[ii]);
+                alphaReds[ii] = table[idx] + alphaReds[ii] % 256;
+            }
+        }
+    }
+
+    /** The effector returned by {@link #byAge}. Exposed to {@link Fused}. */
+    static class ByAge extends Effector {
+        public final Interpolator interp;
+        public final float startAlpha, rangeAlpha;
+
+        public ByAge (Interpolator interp, float startAlpha, float rangeAlpha) {
+            this.interp = interp;
+            this.startAlpha = startAlpha;
+            this.rangeAlpha = rangeAlpha;
+        }
+
+        @Override public void apply (int index, float[] data, int start, float now, float dt) {
+            float alpha = interp.apply(
+                startAlpha, rangeAlpha, now - data[start + BIRTH], data[start + LIFESPAN]);
+            float red = Color.decodeLower(data[start + ALPHA_RED]);
+            data[start + ALPHA_RED] = Color.encode(alpha, red);
+        }
+
+        @Override public void apply (ParticleBuffer buffer, int from, int to, float now, float dt) {
+            if (buffer.fields == null) {
+                super.apply(buffer, from, to, now, dt);
+                return;
+            }
+            float[] births = buffer.fields[BIRTH], lifespans = buffer.fields[LIFESPAN];
+            float[] alphaReds = buffer.fields[ALPHA_RED];
+            for (int ii = from; ii < to; ii++) {
+                float alpha = interp.apply(startAlpha, rangeAlpha, now - births[ii], lifespans[ii]);
+                alphaReds[ii] = Color.encode(alpha, Color.decodeLower(alphaReds[ii]));
             }
-        };
+        }
     }
 }
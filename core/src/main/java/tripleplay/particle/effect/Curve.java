@@ -0,0 +1,122 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.particle.effect;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import tripleplay.util.Interpolator;
+
+/**
+ * A value that varies over a particle's lifetime, baked into a lookup table indexed by the
+ * particle's normalized age ({@code (now - birth) / lifespan}). Used by the over-life effectors
+ * ({@link Alpha#overLife}, {@link Tint#overLife}, {@link Scale#overLife}) so that arbitrarily
+ * complex curves cost a single table lookup per particle per frame.
+ */
+public class Curve
+{
+    /** The default number of samples in a baked curve. */
+    public static final int SAMPLES = 256;
+
+    /** Builds a curve from a series of keyframes. */
+    public static class Builder {
+        /**
+         * Adds a keyframe with the specified value at normalized age {@code t} (in [0, 1]). The
+         * value is interpolated linearly from the previous keyframe.
+         */
+        public Builder key (float t, float value) {
+            return key(t, value, Interpolator.LINEAR);
+        }
+
+        /**
+         * Adds a keyframe with the specified value at normalized age {@code t} (in [0, 1]). The
+         * value is interpolated from the previous keyframe using {@code interp}. Keyframes must be
+         * added in increasing order of {@code t}.
+         */
+        public Builder key (float t, float value, Interpolator interp) {
+            if (!_times.isEmpty() && t < _times.get(_times.size()-1)) throw new
+                IllegalArgumentException("Keyframes must be added in order [t=" + t + "]");
+            _times.add(t);
+            _values.add(value);
+            _interps.add(interp);
+            return this;
+        }
+
+        /** Bakes the keyframes into a curve with {@link #SAMPLES} samples. */
+        public Curve bake () {
+            return bake(SAMPLES);
+        }
+
+        /** Bakes the keyframes into a curve with the specified number of samples. */
+        public Curve bake (int samples) {
+            if (_times.isEmpty()) throw new IllegalStateException("Curve has no keyframes.");
+            float[] table = new float[samples+1];
+            int key = 0, keys = _times.size();
+            for (int ii = 0; ii <= samples; ii++) {
+                float t = ii / (float)samples;
+                while (key < keys && _times.get(key) < t) key++;
+                if (key == 0) table[ii] = _values.get(0);
+                else if (key == keys) table[ii] = _values.get(keys-1);
+                else {
+                    float t0 = _times.get(key-1), v0 = _values.get(key-1);
+                    table[ii] = _interps.get(key).apply(
+                        v0, _values.get(key) - v0, t - t0, _times.get(key) - t0);
+                }
+            }
+            return new Curve(table);
+        }
+
+        protected final List<Float> _times = new ArrayList<Float>();
+        protected final List<Float> _values = new ArrayList<Float>();
+        protected final List<Interpolator> _interps = new ArrayList<Interpolator>();
+    }
+
+    /** Returns a builder for a keyframed curve. */
+    public static Builder builder () {
+        return new Builder();
+    }
+
+    /** Returns a curve that holds the specified value over the particle's entire life. */
+    public static Curve constant (float value) {
+        return new Builder().key(0, value).bake(1);
+    }
+
+    /**
+     * Returns a curve that moves from {@code start} at birth to {@code end} at death, as adjusted
+     * by the supplied interpolator.
+     */
+    public static Curve between (float start, float end, Interpolator interp) {
+        return new Builder().key(0, start).key(1, end, interp).bake();
+    }
+
+    /** The baked samples. Sample {@code i} is the value at normalized age {@code i/samples}. */
+    public final float[] table;
+
+    /** The number of intervals between samples (one less than the length of {@link #table}). */
+    public final int samples;
+
+    /** Creates a curve with the supplied (already baked) samples. */
+    public Curve (float[] table) {
+        this.table = table;
+        this.samples = table.length-1;
+    }
+
+    /** Returns the value of this curve at normalized age {@code t}, clamped to [0, 1]. */
+    public float sample (float t) {
+        return table[index(t)];
+    }
+
+    /** Returns the index in {@link #table} of the sample for normalized age {@code t}. */
+    public int index (float t) {
+        int idx = (int)(t * samples);
+        return (idx < 0) ? 0 : (idx > samples ? samples : idx);
+    }
+
+    /** Returns the index in {@link #table} for a particle of the specified age and lifespan. */
+    public int index (float age, float lifespan) {
+        return (lifespan <= 0) ? samples : index(age / lifespan);
+    }
+}
@@ -6,6 +6,7 @@
 package tripleplay.particle.effect;
 
 import tripleplay.particle.Effector;
+import tripleplay.particle.ParticleBuffer;
 import static tripleplay.particle.ParticleBuffer.*;
 
 /**
@@ -38,5 +39,16 @@ public class Drag extends Effector
         data[start + VEL_Y] *= _dragY;
     }
 
+    @Override public void apply (ParticleBuffer buffer, int from, int to, float now, float dt) {
+        if (buffer.fields == null) {
+            super.apply(buffer, from, to, now, dt);
+            return;
+        }
+        float dragX = _dragX, dragY = _dragY;
+        float[] vx = buffer.fields[VEL_X], vy = buffer.fields[VEL_Y];
+        for (int ii = from; ii < to; ii++) vx[ii] *= dragX;
+        for (int ii = from; ii < to; ii++) vy[ii] *= dragY;
+    }
+
     protected final float _dragX, _dragY;
 }
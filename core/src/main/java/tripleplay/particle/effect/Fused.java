@@ -0,0 +1,172 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.particle.effect;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import playn.core.Color;
+
+import tripleplay.particle.Effector;
+import tripleplay.particle.ParticleBuffer;
+import tripleplay.util.Interpolator;
+import static tripleplay.particle.ParticleBuffer.*;
+
+/**
+ * Applies a sequence of stock effectors ({@link Move}, {@link Gravity}, {@link Drag} and {@link
+ * Alpha#byAge}) in a single pass, reading each particle's fields once, applying every effect in
+ * order and writing the fields back once. Use {@link #compile} to obtain fused effectors.
+ */
+public class Fused extends Effector
+{
+    /**
+     * Compiles the supplied effectors into an equivalent list in which every run of two or more
+     * consecutive stock effectors is replaced by a single fused effector. Other effectors are
+     * left in place and applied normally.
+     */
+    public static List<Effector> compile (List<? extends Effector> effectors) {
+        List<Effector> compiled = new ArrayList<Effector>();
+        List<Effector> run = new ArrayList<Effector>();
+        for (Effector eff : effectors) {
+            if (isFusible(eff)) {
+                run.add(eff);
+                continue;
+            }
+            flush(run, compiled);
+            compiled.add(eff);
+        }
+        flush(run, compiled);
+        return compiled;
+    }
+
+    /**
+     * Returns true if the supplied effector can be fused with other stock effectors.
+     */
+    public static boolean isFusible (Effector eff) {
+        Class<?> clazz = eff.getClass();
+        return clazz == Move.class || clazz == Gravity.class || clazz == Drag.class ||
+            clazz == Alpha.ByAge.class;
+    }
+
+    @Override public void apply (int index, float[] data, int start, float now, float dt) {
+        float vx = data[start + VEL_X], vy = data[start + VEL_Y];
+        float tx = data[start + TX], ty = data[start + TY];
+        float ar = _usesAlpha ? data[start + ALPHA_RED] : 0;
+        float age = now - data[start + BIRTH], life = data[start + LIFESPAN];
+        for (int oo = 0, ll = _ops.length; oo < ll; oo++) {
+            switch (_ops[oo]) {
+            case MOVE:
+                tx += vx * dt;
+                ty += vy * dt;
+                break;
+            case GRAVITY:
+                vy += _params[2*oo] * dt;
+                break;
+            case DRAG:
+                vx *= _params[2*oo];
+                vy *= _params[2*oo+1];
+                break;
+            case ALPHA:
+                float alpha = _interps[oo].apply(_params[2*oo], _params[2*oo+1], age, life);
+                ar = Color.encode(alpha, Color.decodeLower(ar));
+                break;
+            }
+        }
+        data[start + VEL_X] = vx;
+        data[start + VEL_Y] = vy;
+        data[start + TX] = tx;
+        data[start + TY] = ty;
+        if (_usesAlpha) data[start + ALPHA_RED] = ar;
+    }
+
+    @Override public void apply (ParticleBuffer buffer, int from, int to, float now, float dt) {
+        if (buffer.fields == null) {
+            super.apply(buffer, from, to, now, dt);
+            return;
+        }
+        float[][] fields = buffer.fields;
+        float[] vxs = fields[VEL_X], vys = fields[VEL_Y], txs = fields[TX], tys = fields[TY];
+        float[] ars = fields[ALPHA_RED], births = fields[BIRTH], lifes = fields[LIFESPAN];
+        for (int ii = from; ii < to; ii++) {
+            float vx = vxs[ii], vy = vys[ii], tx = txs[ii], ty = tys[ii];
+            float ar = _usesAlpha ? ars[ii] : 0;
+            for (int oo = 0, ll = _ops.length; oo < ll; oo++) {
+                switch (_ops[oo]) {
+                case MOVE:
+                    tx += vx * dt;
+                    ty += vy * dt;
+                    break;
+                case GRAVITY:
+                    vy += _params[2*oo] * dt;
+                    break;
+                case DRAG:
+                    vx *= _params[2*oo];
+                    vy *= _params[2*oo+1];
+                    break;
+                case ALPHA:
+                    float alpha = _interps[oo].apply(
+                        _params[2*oo], _params[2*oo+1], now - births[ii], lifes[ii]);
+                    ar = Color.encode(alpha, Color.decodeLower(ar));
+                    break;
+                }
+            }
+            vxs[ii] = vx;
+            vys[ii] = vy;
+            txs[ii] = tx;
+            tys[ii] = ty;
+            if (_usesAlpha) ars[ii] = ar;
+        }
+    }
+
+    protected Fused (List<Effector> effectors) {
+        int count = effectors.size();
+        _ops = new int[count];
+        _params = new float[2*count];
+        _interps = new Interpolator[count];
+        boolean usesAlpha = false;
+        for (int oo = 0; oo < count; oo++) {
+            Effector eff = effectors.get(oo);
+            if (eff instanceof Move) {
+                _ops[oo] = MOVE;
+            } else if (eff instanceof Gravity) {
+                _ops[oo] = GRAVITY;
+                _params[2*oo] = ((Gravity)eff)._accel;
+            } else if (eff instanceof Drag) {
+                _ops[oo] = DRAG;
+                _params[2*oo] = ((Drag)eff)._dragX;
+                _params[2*oo+1] = ((Drag)eff)._dragY;
+            } else {
+                Alpha.ByAge alpha = (Alpha.ByAge)eff;
+                _ops[oo] = ALPHA;
+                _params[2*oo] = alpha.startAlpha;
+                _params[2*oo+1] = alpha.rangeAlpha;
+                _interps[oo] = alpha.interp;
+                usesAlpha = true;
+            }
+        }
+        _usesAlpha = usesAlpha;
+    }
+
+    protected static void flush (List<Effector> run, List<Effector> into) {
+        if (run.size() == 1) into.add(run.get(0));
+        else if (run.size() > 1) into.add(new Fused(run));
+        run.clear();
+    }
+
+    /** The operation performed at each step of the kernel. */
+    protected final int[] _ops;
+    /** The (up to) two parameters for each operation, at {@code 2*op} and {@code 2*op+1}. */
+    protected final float[] _params;
+    /** The interpolator for each {@link #ALPHA} operation. */
+    protected final Interpolator[] _interps;
+    /** Whether any step of the kernel updates {@link ParticleBuffer#ALPHA_RED}. */
+    protected final boolean _usesAlpha;
+
+    protected static final int MOVE = 0;
+    protected static final int GRAVITY = 1;
+    protected static final int DRAG = 2;
+    protected static final int ALPHA = 3;
+}
@@ -39,5 +39,15 @@ public class Gravity extends Effector
         data[start + ParticleBuffer.VEL_Y] += _accel * dt;
     }
 
+    @Override public void apply (ParticleBuffer buffer, int from, int to, float now, float dt) {
+        if (buffer.fields == null) {
+            super.apply(buffer, from, to, now, dt);
+            return;
+        }
+        float dv = _accel * dt;
+        float[] vy = buffer.fields[ParticleBuffer.VEL_Y];
+        for (int ii = from; ii < to; ii++) vy[ii] += dv;
+    }
+
     protected final float _accel;
 }
@@ -6,6 +6,7 @@
 package tripleplay.particle.effect;
 
 import tripleplay.particle.Effector;
+import tripleplay.particle.ParticleBuffer;
 import static tripleplay.particle.ParticleBuffer.*;
 
 /**
@@ -17,4 +18,15 @@ public class Move extends Effector
         data[start + TX] += data[start + VEL_X] * dt;
         data[start + TY] += data[start + VEL_Y] * dt;
     }
+
+    @Override public void apply (ParticleBuffer buffer, int from, int to, float now, float dt) {
+        if (buffer.fields == null) {
+            super.apply(buffer, from, to, now, dt);
+            return;
+        }
+        float[] tx = buffer.fields[TX], vx = buffer.fields[VEL_X];
+        for (int ii = from; ii < to; ii++) tx[ii] += vx[ii] * dt;
+        float[] ty = buffer.fields[TY], vy = buffer.fields[VEL_Y];
+        for (int ii = from; ii < to; ii++) ty[ii] += vy[ii] * dt;
+    }
 }
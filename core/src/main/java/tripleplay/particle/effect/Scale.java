@@ -0,0 +1,82 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.particle.effect;
+
+import tripleplay.particle.Effector;
+import tripleplay.particle.ParticleBuffer;
+import static tripleplay.particle.ParticleBuffer.*;
+
+/**
+ * Adjusts the scale of a particle.
+ */
+public class Scale
+{
+    /**
+     * Returns an effector that scales the particle by the value of {@code curve} at the
+     * particle's normalized age, relative to the transform it was given by its initializers. The
+     * scale last applied to each particle is recorded in its {@link ParticleBuffer#SCALE} field
+     * and divided out before the new scale is applied, so values are clamped to a magnitude of at
+     * least {@link #MIN_SCALE} to keep the particle's transform invertible; use that rather than
+     * zero to shrink a particle out of sight.
+     */
+    public static Effector overLife (Curve curve) {
+        float[] table = new float[curve.table.length];
+        for (int ii = 0; ii < table.length; ii++) {
+            float scale = curve.table[ii];
+            if (Math.abs(scale) < MIN_SCALE) scale = (scale < 0) ? -MIN_SCALE : MIN_SCALE;
+            table[ii] = scale;
+        }
+        return new OverLife(new Curve(table));
+    }
+
+    /** The smallest magnitude of scale applied by {@link #overLife}. */
+    public static final float MIN_SCALE = 0.001f;
+
+    /** The effector returned by {@link #overLife}. */
+    static class OverLife extends Effector {
+        public final Curve curve;
+
+        public OverLife (Curve curve) {
+            this.curve = curve;
+        }
+
+        @Override public void apply (int index, float[] data, int start, float now, float dt) {
+            // divide out the scale we last applied, so that skipped time doesn't compound
+            float scale = scale(now - data[start + BIRTH], data[start + LIFESPAN]);
+            float change = scale / data[start + SCALE];
+            data[start + SCALE] = scale;
+            data[start + M00] *= change;
+            data[start + M01] *= change;
+            data[start + M10] *= change;
+            data[start + M11] *= change;
+        }
+
+        @Override public void apply (ParticleBuffer buffer, int from, int to, float now, float dt) {
+            if (buffer.fields == null) {
+                super.apply(buffer, from, to, now, dt);
+                return;
+            }
+            float[][] fields = buffer.fields;
+            float[] births = fields[BIRTH], lifespans = fields[LIFESPAN], scales = fields[SCALE];
+            float[] m00s = fields[M00], m01s = fields[M01], m10s = fields[M10], m11s = fields[M11];
+            for (int ii = from; ii < to; ii++) {
+                float scale = scale(now - births[ii], lifespans[ii]);
+                float change = scale / scales[ii];
+                scales[ii] = scale;
+                m00s[ii] *= change;
+                m01s[ii] *= change;
+                m10s[ii] *= change;
+                m11s[ii] *= change;
+            }
+        }
+
+        /** Returns the scale of a particle of the specified age, relative to its initial
+         * transform. */
+        protected float scale (float age, float lifespan) {
+            return curve.table[curve.index(age, lifespan)];
+        }
+    }
+}
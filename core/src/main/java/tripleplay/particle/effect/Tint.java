@@ -0,0 +1,87 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.particle.effect;
+
+import playn.core.Color;
+
+import tripleplay.particle.Effector;
+import tripleplay.particle.ParticleBuffer;
+import tripleplay.util.Interpolator;
+import static tripleplay.particle.ParticleBuffer.*;
+
+/**
+ * Adjusts the tint (red, green and blue) of a particle, leaving its alpha unchanged.
+ */
+public class Tint
+{
+    /**
+     * Returns an effector that sets the particle's tint to the values of the supplied curves at
+     * the particle's normalized age. Values outside [0, 1] are clamped.
+     */
+    public static Effector overLife (Curve red, Curve green, Curve blue) {
+        int samples = Math.max(red.samples, Math.max(green.samples, blue.samples));
+        float[] reds = new float[samples+1], greenBlues = new float[samples+1];
+        for (int ii = 0; ii <= samples; ii++) {
+            float t = ii / (float)samples;
+            reds[ii] = Color.encode(0, clamp(red.sample(t)));
+            greenBlues[ii] = Color.encode(clamp(green.sample(t)), clamp(blue.sample(t)));
+        }
+        return new OverLife(new Curve(reds), new Curve(greenBlues));
+    }
+
+    /**
+     * Returns an effector that fades the particle's tint from {@code startRGB} at birth to {@code
+     * endRGB} at death, as adjusted by the supplied interpolator.
+     */
+    public static Effector overLife (Interpolator interp, int startRGB, int endRGB) {
+        return overLife(channel(interp, startRGB, endRGB, 16),
+                        channel(interp, startRGB, endRGB, 8),
+                        channel(interp, startRGB, endRGB, 0));
+    }
+
+    /** The effector returned by {@link #overLife}. Its curves hold pre-encoded values for the
+     * lower half of {@link ParticleBuffer#ALPHA_RED} and for {@link ParticleBuffer#GREEN_BLUE}. */
+    static class OverLife extends Effector {
+        public final Curve reds, greenBlues;
+
+        public OverLife (Curve reds, Curve greenBlues) {
+            this.reds = reds;
+            this.greenBlues = greenBlues;
+        }
+
+        @Override public void apply (int index, float[] data, int start, float now, float dt) {
+            int idx = reds.index(now - data[start + BIRTH], data[start + LIFESPAN]);
+            float ar = data[start + ALPHA_RED];
+            data[start + ALPHA_RED] = ar - ar % 256 + reds.table[idx];
+            data[start + GREEN_BLUE] = greenBlues.table[idx];
+        }
+
+        @Override public void apply (ParticleBuffer buffer, int from, int to, float now, float dt) {
+            if (buffer.fields == null) {
+                super.apply(buffer, from, to, now, dt);
+                return;
+            }
+            float[] births = buffer.fields[BIRTH], lifespans = buffer.fields[LIFESPAN];
+            float[] alphaReds = buffer.fields[ALPHA_RED], greenBlues = buffer.fields[GREEN_BLUE];
+            float[] rtable = reds.table, gbtable = this.greenBlues.table;
+            for (int ii = from; ii < to; ii++) {
+                int idx = reds.index(now - births[ii], lifespans[ii]);
+                float ar = alphaReds[ii];
+                alphaReds[ii] = ar - ar % 256 + rtable[idx];
+                greenBlues[ii] = gbtable[idx];
+            }
+        }
+    }
+
+    protected static Curve channel (Interpolator interp, int startRGB, int endRGB, int shift) {
+        return Curve.between(((startRGB >> shift) & 0xFF) / 255f,
+                             ((endRGB >> shift) & 0xFF) / 255f, interp);
+    }
+
+    protected static float clamp (float value) {
+        return Math.max(0, Math.min(1, value));
+    }
+}
@@ -0,0 +1,336 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.particle.effect;
+
+import tripleplay.particle.Effector;
+import tripleplay.particle.ParticleBuffer;
+import static tripleplay.particle.ParticleBuffer.*;
+
+/**
+ * Applies a set of zones to particles: circular attractors and repulsors, circular and
+ * rectangular kill zones (which kill the particles that enter them) and rectangular colliders
+ * (off of which particles bounce). The zones are hashed into a uniform grid so that each
+ * particle only tests the zones that overlap its grid cell.
+ *
+ * <p>Zones are generally rebuilt every frame: call {@link #clear} and then add the current zones.
+ * The grid is rebuilt the next time the effector is applied. Zones are specified in the
+ * coordinate system of particle positions.</p>
+ */
+public class Zones extends Effector
+{
+    /**
+     * Creates an effector that hashes its zones into square cells of the specified size. Cells
+     * a little larger than the typical zone work well. The cell size will be increased if
+     * needed to keep the grid to at most {@link #MAX_CELLS} cells.
+     */
+    public Zones (float cellSize) {
+        _cellSize = cellSize;
+    }
+
+    /** Removes all zones. */
+    public Zones clear () {
+        _count = 0;
+        _dirty = true;
+        return this;
+    }
+
+    /**
+     * Adds a circular attractor. Particles within {@code radius} of {@code (x, y)} are
+     * accelerated toward it by {@code accel} pixels per second squared at its center, falling off
+     * linearly to zero at its edge.
+     */
+    public Zones addAttractor (float x, float y, float radius, float accel) {
+        return add(FORCE, x, y, radius, radius, accel);
+    }
+
+    /**
+     * Adds a circular repulsor. Particles within {@code radius} of {@code (x, y)} are accelerated
+     * away from it by {@code accel} pixels per second squared at its center, falling off linearly
+     * to zero at its edge.
+     */
+    public Zones addRepulsor (float x, float y, float radius, float accel) {
+        return add(FORCE, x, y, radius, radius, -accel);
+    }
+
+    /** Adds a circular kill zone. Particles within {@code radius} of {@code (x, y)} die. */
+    public Zones addKillZone (float x, float y, float radius) {
+        return add(KILL_CIRCLE, x, y, radius, radius, 0);
+    }
+
+    /** Adds a rectangular kill zone. Particles within the rectangle die. */
+    public Zones addKillZone (float x, float y, float width, float height) {
+        return add(KILL_RECT, x, y, width, height, 0);
+    }
+
+    /**
+     * Adds a rectangular collider. Particles that enter the rectangle are pushed back out of its
+     * nearest edge, and the component of their velocity toward that edge is reversed and scaled
+     * by {@code restitution} (one for a perfectly elastic bounce, zero to stop dead).
+     */
+    public Zones addCollider (float x, float y, float width, float height, float restitution) {
+        return add(COLLIDE, x, y, width, height, restitution);
+    }
+
+    /** Returns the number of zones. */
+    public int size () {
+        return _count;
+    }
+
+    @Override public void apply (int index, float[] data, int start, float now, float dt) {
+        if (_dirty) build();
+        applyTo(_cellStart, data, start, dt);
+    }
+
+    @Override public void apply (ParticleBuffer buffer, int from, int to, float now, float dt) {
+        // check (and rebuild) our grid once per batch, rather than once per particle
+        if (_dirty) build();
+        if (_count == 0) return;
+        float[] data = buffer.data;
+        int[] cellStart = _cellStart;
+        if (buffer.fields == null) {
+            int ppos = from * NUM_FIELDS;
+            for (int pp = from; pp < to; pp++, ppos += NUM_FIELDS) {
+                applyTo(cellStart, data, ppos, dt);
+            }
+            return;
+        }
+
+        // most particles will be in empty cells; stage the rest in the buffer's staging area
+        float[] txs = buffer.fields[TX], tys = buffer.fields[TY];
+        float[] vxs = buffer.fields[VEL_X], vys = buffer.fields[VEL_Y];
+        float[] lifespans = buffer.fields[LIFESPAN];
+        for (int ii = from; ii < to; ii++) {
+            int cell = cell(txs[ii], tys[ii]);
+            if (cell < 0 || cellStart[cell] == cellStart[cell+1]) continue;
+            data[TX] = txs[ii];
+            data[TY] = tys[ii];
+            data[VEL_X] = vxs[ii];
+            data[VEL_Y] = vys[ii];
+            data[LIFESPAN] = lifespans[ii];
+            interact(cell, data, 0, dt);
+            txs[ii] = data[TX];
+            tys[ii] = data[TY];
+            vxs[ii] = data[VEL_X];
+            vys[ii] = data[VEL_Y];
+            lifespans[ii] = data[LIFESPAN];
+        }
+    }
+
+    /** The maximum number of cells in the grid. */
+    public static final int MAX_CELLS = 256*256;
+
+    /** Applies the zones to the particle at {@code start}, using the already built grid. */
+    protected void applyTo (int[] cellStart, float[] data, int start, float dt) {
+        int cell = cell(data[start + TX], data[start + TY]);
+        if (cell >= 0 && cellStart[cell] < cellStart[cell+1]) interact(cell, data, start, dt);
+    }
+
+    protected Zones add (int type, float x, float y, float width, float height, float param) {
+        if (_count == _types.length) {
+            int size = _count*2;
+            _types = copy(_types, size);
+            _xs = copy(_xs, size);
+            _ys = copy(_ys, size);
+            _widths = copy(_widths, size);
+            _heights = copy(_heights, size);
+            _params = copy(_params, size);
+        }
+        int zz = _count++;
+        _types[zz] = type;
+        _xs[zz] = x;
+        _ys[zz] = y;
+        _widths[zz] = width;
+        _heights[zz] = height;
+        _params[zz] = param;
+        _dirty = true;
+        return this;
+    }
+
+    /** Returns the index of the cell containing {@code (x, y)}, or -1 if it's outside the grid. */
+    protected int cell (float x, float y) {
+        float cx = (x - _gridX) * _invCellSize, cy = (y - _gridY) * _invCellSize;
+        if (cx < 0 || cy < 0 || cx >= _cols || cy >= _rows) return -1;
+        return (int)cy * _cols + (int)cx;
+    }
+
+    /** Applies the zones in {@code cell} to the particle whose fields start at {@code start}. */
+    protected void interact (int cell, float[] data, int start, float dt) {
+        float tx = data[start + TX], ty = data[start + TY];
+        for (int cc = _cellStart[cell], end = _cellStart[cell+1]; cc < end; cc++) {
+            int zz = _cellZones[cc];
+            float zx = _xs[zz], zy = _ys[zz];
+            switch (_types[zz]) {
+            case FORCE: {
+                float dx = zx - tx, dy = zy - ty, radius = _widths[zz];
+                float d2 = dx*dx + dy*dy;
+                if (d2 >= radius*radius || d2 == 0) break;
+                float dist = (float)Math.sqrt(d2);
+                float dv = _params[zz] * (1 - dist/radius) * dt / dist;
+                data[start + VEL_X] += dx * dv;
+                data[start + VEL_Y] += dy * dv;
+                break;
+            }
+            case KILL_CIRCLE: {
+                float dx = zx - tx, dy = zy - ty, radius = _widths[zz];
+                if (dx*dx + dy*dy < radius*radius) {
+                    data[start + LIFESPAN] = -1; // swept out on the next update
+                    return;
+                }
+                break;
+            }
+            case KILL_RECT:
+                if (tx >= zx && ty >= zy && tx < zx + _widths[zz] && ty < zy + _heights[zz]) {
+                    data[start + LIFESPAN] = -1; // swept out on the next update
+                    return;
+                }
+                break;
+            case COLLIDE: {
+                float left = tx - zx, top = ty - zy;
+                float right = zx + _widths[zz] - tx, bottom = zy + _heights[zz] - ty;
+                if (left < 0 || top < 0 || right < 0 || bottom < 0) break;
+                // push the particle out of the nearest edge and bounce it off that edge
+                float restitution = _params[zz];
+                float minX = Math.min(left, right), minY = Math.min(top, bottom);
+                if (minX < minY) {
+                    float vx = data[start + VEL_X];
+                    if (left < right) {
+                        tx = zx;
+                        if (vx > 0) data[start + VEL_X] = -vx * restitution;
+                    } else {
+                        tx = zx + _widths[zz];
+                        if (vx < 0) data[start + VEL_X] = -vx * restitution;
+                    }
+                    data[start + TX] = tx;
+                } else {
+                    float vy = data[start + VEL_Y];
+                    if (top < bottom) {
+                        ty = zy;
+                        if (vy > 0) data[start + VEL_Y] = -vy * restitution;
+                    } else {
+                        ty = zy + _heights[zz];
+                        if (vy < 0) data[start + VEL_Y] = -vy * restitution;
+                    }
+                    data[start + TY] = ty;
+                }
+                break;
+            }
+            }
+        }
+    }
+
+    /** Rehashes the zones into the grid. This is synchronized so that emitters that apply their
+     * effectors in parallel rebuild the grid only once. */
+    protected synchronized void build () {
+        if (!_dirty) return;
+        int count = _count;
+        if (count == 0) {
+            _cols = _rows = 0;
+            _cellStart = EMPTY_CELLS;
+            _dirty = false;
+            return;
+        }
+
+        // size the grid to cover the bounds of all of the zones
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        for (int zz = 0; zz < count; zz++) {
+            minX = Math.min(minX, minX(zz));
+            minY = Math.min(minY, minY(zz));
+            maxX = Math.max(maxX, maxX(zz));
+            maxY = Math.max(maxY, maxY(zz));
+        }
+        float cellSize = _cellSize;
+        while (((maxX - minX) / cellSize + 1) * ((maxY - minY) / cellSize + 1) > MAX_CELLS) {
+            cellSize *= 2;
+        }
+        float inv = 1 / cellSize;
+        int cols = (int)((maxX - minX) * inv) + 1, rows = (int)((maxY - minY) * inv) + 1;
+
+        // count the zones in each cell, then turn the counts into start offsets, then fill
+        int cells = cols * rows;
+        int[] cellStart = (_cellStart.length >= cells+1) ? _cellStart : new int[cells+1];
+        for (int cc = 0; cc <= cells; cc++) cellStart[cc] = 0;
+        for (int pass = 0; pass < 2; pass++) {
+            for (int zz = 0; zz < count; zz++) {
+                int c0 = (int)((minX(zz) - minX) * inv);
+                int c1 = Math.min(cols-1, (int)((maxX(zz) - minX) * inv));
+                int r0 = (int)((minY(zz) - minY) * inv);
+                int r1 = Math.min(rows-1, (int)((maxY(zz) - minY) * inv));
+                for (int rr = r0; rr <= r1; rr++) {
+                    for (int cc = c0; cc <= c1; cc++) {
+                        int cell = rr * cols + cc;
+                        if (pass == 0) cellStart[cell+1]++;
+                        else _cellZones[_fill[cell]++] = zz;
+                    }
+                }
+            }
+            if (pass == 0) {
+                for (int cc = 0; cc < cells; cc++) cellStart[cc+1] += cellStart[cc];
+                if (_cellZones.length < cellStart[cells]) _cellZones = new int[cellStart[cells]];
+                if (_fill.length < cells) _fill = new int[cells];
+                System.arraycopy(cellStart, 0, _fill, 0, cells);
+            }
+        }
+
+        _gridX = minX;
+        _gridY = minY;
+        _invCellSize = inv;
+        _cols = cols;
+        _rows = rows;
+        _cellStart = cellStart;
+        _dirty = false;
+    }
+
+    protected float minX (int zz) {
+        return isCircle(zz) ? _xs[zz] - _widths[zz] : _xs[zz];
+    }
+    protected float minY (int zz) {
+        return isCircle(zz) ? _ys[zz] - _widths[zz] : _ys[zz];
+    }
+    protected float maxX (int zz) {
+        return _xs[zz] + _widths[zz];
+    }
+    protected float maxY (int zz) {
+        return _ys[zz] + _heights[zz];
+    }
+    protected boolean isCircle (int zz) {
+        return _types[zz] == FORCE || _types[zz] == KILL_CIRCLE;
+    }
+
+    protected static int[] copy (int[] values, int size) {
+        int[] nvalues = new int[size];
+        System.arraycopy(values, 0, nvalues, 0, values.length);
+        return nvalues;
+    }
+
+    protected static float[] copy (float[] values, int size) {
+        float[] nvalues = new float[size];
+        System.arraycopy(values, 0, nvalues, 0, values.length);
+        return nvalues;
+    }
+
+    protected final float _cellSize;
+
+    /** The zones: circles are centered on (x, y) with their radius in width and height. */
+    protected int _count;
+    protected int[] _types = new int[8];
+    protected float[] _xs = new float[8], _ys = new float[8];
+    protected float[] _widths = new float[8], _heights = new float[8], _params = new float[8];
+
+    /** The grid: the zones in cell {@code c} are {@code _cellZones[_cellStart[c]]} up to (but
+     * not including) {@code _cellZones[_cellStart[c+1]]}. */
+    protected volatile boolean _dirty = true;
+    protected float _gridX, _gridY, _invCellSize;
+    protected int _cols, _rows;
+    protected int[] _cellStart = EMPTY_CELLS, _cellZones = new int[0], _fill = new int[0];
+
+    protected static final int[] EMPTY_CELLS = new int[1];
+
+    protected static final int FORCE = 0;
+    protected static final int KILL_CIRCLE = 1;
+    protected static final int KILL_RECT = 2;
+    protected static final int COLLIDE = 3;
+}
@@ -26,11 +26,16 @@ public class Color
     /**
      * Returns an initializer that initializes the particle's color to the supplied constant value.
      */
-    public static Initializer constant (final float r, final float g, final float b, final float a) {
+    public static Initializer constant (float r, float g, float b, float a) {
+        final float ar = playn.core.Color.encode(a, r), gb = playn.core.Color.encode(g, b);
         return new Initializer() {
             @Override public void init (int index, float[] data, int start) {
-                data[start+ParticleBuffer.ALPHA_RED]  = playn.core.Color.encode(a, r);
-                data[start+ParticleBuffer.GREEN_BLUE] = playn.core.Color.encode(g, b);
+                data[start+ParticleBuffer.ALPHA_RED]  = ar;
+                data[start+ParticleBuffer.GREEN_BLUE] = gb;
+            }
+            @Override public void init (ParticleBuffer buffer, int from, int to) {
+                buffer.fill(ParticleBuffer.ALPHA_RED, from, to, ar);
+                buffer.fill(ParticleBuffer.GREEN_BLUE, from, to, gb);
             }
         };
     }
@@ -23,6 +23,9 @@ public class Lifespan
             @Override public void init (int index, float[] data, int start) {
                 data[start+ParticleBuffer.LIFESPAN] = lifespan;
             }
+            @Override public void init (ParticleBuffer buffer, int from, int to) {
+                buffer.fill(ParticleBuffer.LIFESPAN, from, to, lifespan);
+            }
         };
     }
 
@@ -34,6 +37,11 @@ public class Lifespan
             @Override public void init (int index, float[] data, int start) {
                 data[start+ParticleBuffer.LIFESPAN] = rando.getInRange(min, max);
             }
+            @Override public void init (ParticleBuffer buffer, int from, int to) {
+                rando.fillInRange(buffer.array(ParticleBuffer.LIFESPAN),
+                                  buffer.offset(ParticleBuffer.LIFESPAN, from), buffer.stride(),
+                                  to - from, min, max);
+            }
         };
     }
 }
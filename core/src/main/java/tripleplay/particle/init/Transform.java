@@ -52,6 +52,14 @@ public class Transform
                 data[start + ParticleBuffer.TX] = tx;
                 data[start + ParticleBuffer.TY] = ty;
             }
+            @Override public void init (ParticleBuffer buffer, int from, int to) {
+                buffer.fill(ParticleBuffer.M00, from, to, m00);
+                buffer.fill(ParticleBuffer.M01, from, to, m01);
+                buffer.fill(ParticleBuffer.M10, from, to, m10);
+                buffer.fill(ParticleBuffer.M11, from, to, m11);
+                buffer.fill(ParticleBuffer.TX, from, to, tx);
+                buffer.fill(ParticleBuffer.TY, from, to, ty);
+            }
         };
     }
 
@@ -67,6 +75,12 @@ public class Transform
                 data[start + ParticleBuffer.M10] *= scale;
                 data[start + ParticleBuffer.M11] *= scale;
             }
+            @Override public void init (ParticleBuffer buffer, int from, int to) {
+                buffer.scale(ParticleBuffer.M00, from, to, scale);
+                buffer.scale(ParticleBuffer.M01, from, to, scale);
+                buffer.scale(ParticleBuffer.M10, from, to, scale);
+                buffer.scale(ParticleBuffer.M11, from, to, scale);
+            }
         };
     }
 
@@ -86,6 +100,31 @@ public class Transform
                 data[start + ParticleBuffer.M10] *= scale;
                 data[start + ParticleBuffer.M11] *= scale;
             }
+            @Override public void init (ParticleBuffer buffer, int from, int to) {
+                float[] m00s = buffer.array(ParticleBuffer.M00);
+                float[] m01s = buffer.array(ParticleBuffer.M01);
+                float[] m10s = buffer.array(ParticleBuffer.M10);
+                float[] m11s = buffer.array(ParticleBuffer.M11);
+                int pos00 = buffer.offset(ParticleBuffer.M00, from);
+                int pos01 = buffer.offset(ParticleBuffer.M01, from);
+                int pos10 = buffer.offset(ParticleBuffer.M10, from);
+                int pos11 = buffer.offset(ParticleBuffer.M11, from), stride = buffer.stride();
+                int count = to - from;
+                if (_scales.length < count) _scales = new float[count];
+                rando.fillInRange(_scales, 0, 1, count, minScale, maxScale);
+                for (int ii = 0; ii < count; ii++) {
+                    float scale = _scales[ii];
+                    m00s[pos00] *= scale;
+                    m01s[pos01] *= scale;
+                    m10s[pos10] *= scale;
+                    m11s[pos11] *= scale;
+                    pos00 += stride;
+                    pos01 += stride;
+                    pos10 += stride;
+                    pos11 += stride;
+                }
+            }
+            protected float[] _scales = new float[0];
         };
     }
 
@@ -111,6 +150,11 @@ public class Transform
             @Override public void init (int index, float[] data, int start) {
                 System.arraycopy(_matrix, 0, data, start + ParticleBuffer.M00, 6);
             }
+            @Override public void init (ParticleBuffer buffer, int from, int to) {
+                for (int ii = 0; ii < 6; ii++) {
+                    buffer.fill(ParticleBuffer.M00 + ii, from, to, _matrix[ii]);
+                }
+            }
             protected final InternalTransform xform = graphics().ctx().createTransform();
             protected final float[] _matrix = new float[6];
         };
@@ -127,6 +171,15 @@ public class Transform
                 data[start + ParticleBuffer.TX] = x + rando.getFloat(width);
                 data[start + ParticleBuffer.TY] = y + rando.getFloat(height);
             }
+            @Override public void init (ParticleBuffer buffer, int from, int to) {
+                int stride = buffer.stride(), count = to - from;
+                rando.fillInRange(buffer.array(ParticleBuffer.TX),
+                                  buffer.offset(ParticleBuffer.TX, from), stride, count,
+                                  x, x + width);
+                rando.fillInRange(buffer.array(ParticleBuffer.TY),
+                                  buffer.offset(ParticleBuffer.TY, from), stride, count,
+                                  y, y + height);
+            }
         };
     }
 
@@ -140,6 +193,21 @@ public class Transform
                 data[start + ParticleBuffer.TX] += rando.getInRange(-noise, noise);
                 data[start + ParticleBuffer.TY] += rando.getInRange(-noise, noise);
             }
+            @Override public void init (ParticleBuffer buffer, int from, int to) {
+                float[] txs = buffer.array(ParticleBuffer.TX);
+                float[] tys = buffer.array(ParticleBuffer.TY);
+                int xpos = buffer.offset(ParticleBuffer.TX, from);
+                int ypos = buffer.offset(ParticleBuffer.TY, from), stride = buffer.stride();
+                // the x offsets go in the first half of our scratch array, the y in the second
+                int count = to - from;
+                if (_offsets.length < 2*count) _offsets = new float[2*count];
+                rando.fillInRange(_offsets, 0, 1, 2*count, -noise, noise);
+                for (int ii = 0; ii < count; ii++, xpos += stride, ypos += stride) {
+                    txs[xpos] += _offsets[ii];
+                    tys[ypos] += _offsets[count+ii];
+                }
+            }
+            protected float[] _offsets = new float[0];
         };
     }
 }
@@ -110,6 +110,17 @@ public class Velocity
                 data[start + ParticleBuffer.VEL_X] += dx * scale;
                 data[start + ParticleBuffer.VEL_Y] += dy * scale;
             }
+            @Override public void init (ParticleBuffer buffer, int from, int to) {
+                float scale = graphics().ctx().scale.factor;
+                float[] vxs = buffer.array(ParticleBuffer.VEL_X);
+                float[] vys = buffer.array(ParticleBuffer.VEL_Y);
+                int xpos = buffer.offset(ParticleBuffer.VEL_X, from);
+                int ypos = buffer.offset(ParticleBuffer.VEL_Y, from), stride = buffer.stride();
+                for (int pp = from; pp < to; pp++, xpos += stride, ypos += stride) {
+                    vxs[xpos] += dx * scale;
+                    vys[ypos] += dy * scale;
+                }
+            }
         };
     }
 
@@ -121,6 +132,18 @@ public class Velocity
             data[start + ParticleBuffer.VEL_X] = _vel.x * scale;
             data[start + ParticleBuffer.VEL_Y] = _vel.y * scale;
         }
+        @Override public void init (ParticleBuffer buffer, int from, int to) {
+            float scale = graphics().ctx().scale.factor;
+            float[] vxs = buffer.array(ParticleBuffer.VEL_X);
+            float[] vys = buffer.array(ParticleBuffer.VEL_Y);
+            int xpos = buffer.offset(ParticleBuffer.VEL_X, from);
+            int ypos = buffer.offset(ParticleBuffer.VEL_Y, from), stride = buffer.stride();
+            for (int pp = from; pp < to; pp++, xpos += stride, ypos += stride) {
+                initVelocity(_vel);
+                vxs[xpos] = _vel.x * scale;
+                vys[ypos] = _vel.y * scale;
+            }
+        }
         protected abstract void initVelocity (Vector vel);
         protected final Vector _vel = new Vector();
     }
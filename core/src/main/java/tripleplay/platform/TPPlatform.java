@@ -7,10 +7,12 @@ package tripleplay.platform;
 
 import playn.core.Image;
 import playn.core.Keyboard;
+import playn.core.PlayN;
 import pythagoras.f.IRectangle;
 import react.Value;
 import react.ValueView;
 import tripleplay.ui.Field;
+import tripleplay.util.Parallel;
 
 /**
  * The entry point for per-platform services made available by TriplePlay. This is akin to the
@@ -75,6 +77,23 @@ public abstract class TPPlatform
 
     public abstract ImageOverlay createImageOverlay (Image image);
 
+    /**
+     * Returns an executor that runs tasks on as many threads as this platform can usefully
+     * provide. Platforms without threads return {@link Parallel#SERIAL}.
+     */
+    public Parallel parallel () {
+        return Parallel.SERIAL;
+    }
+
+    /**
+     * Returns the current value of this platform's highest resolution timer, in nanoseconds. Only
+     * the difference between two values is meaningful. Platforms without a high resolution timer
+     * derive it from {@link PlayN#currentTime}, so it has that method's resolution.
+     */
+    public long nanoTime () {
+        return (long)(PlayN.currentTime() * 1e6);
+    }
+
     /** Called by the static register methods in the per-platform backends. */
     static void register (TPPlatform instance) {
         if (_instance != _default) {
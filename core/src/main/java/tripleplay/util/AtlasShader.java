@@ -0,0 +1,125 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.util;
+
+import playn.core.gl.GLContext;
+import playn.core.gl.IndexedTrisShader;
+
+/**
+ * A custom shader that renders textured quads from a single (atlas) texture, each with its own
+ * transform, texture coordinates and tint, so that any number of sprites from the same atlas can
+ * be drawn as a single primitive. It bypasses the normal layer transform: quads must be
+ * transformed into screen coordinates by the caller. {@link tripleplay.particle.ParticleShader}
+ * extends it to draw particles directly from their buffers.
+ */
+public class AtlasShader extends IndexedTrisShader
+{
+    /** The maximum number of quads that fit into a single primitive, as limited by the 16-bit
+     * element indices. */
+    public static final int MAX_QUADS = 65536/4;
+
+    public AtlasCore core;
+
+    public AtlasShader (GLContext ctx) {
+        super(ctx);
+    }
+
+    /**
+     * Prepares this shader to render up to {@code maxQuads} quads using texture {@code tex}.
+     */
+    public AtlasShader prepare (int tex, int maxQuads) {
+        prepareTexture(tex, 1);
+        ((AtlasCore)texCore).ensureCapacity(Math.min(maxQuads, MAX_QUADS));
+        return this;
+    }
+
+    @Override
+    protected Core createTextureCore () {
+        return core = createCore(vertexShader(), textureFragmentShader());
+    }
+
+    /** Creates the core used to render quads. Subclasses may override this to add their own
+     * ways of adding quads. */
+    protected AtlasCore createCore (String vertexShader, String fragShader) {
+        return new AtlasCore(vertexShader, fragShader, 1);
+    }
+
+    @Override
+    protected Core createColorCore () {
+        throw new UnsupportedOperationException("Color core should not be used.");
+    }
+
+    public class AtlasCore extends ITCore {
+        /** Creates a core that stages the vertices of up to {@code stagedQuads} quads at once
+         * (in {@link #_verts}) before adding them to the primitive. */
+        public AtlasCore (String vertexShader, String fragShader, int stagedQuads) {
+            super(vertexShader, fragShader);
+            _verts = new float[stagedQuads*4*VERTEX_SIZE];
+        }
+
+        public void ensureCapacity (int maxQuads) {
+            // this doesn't actually change anything, it just makes sure we have space for a
+            // primitive of the specified size and does some idempotent math
+            beginPrimitive(maxQuads*4, maxQuads*6);
+        }
+
+        /**
+         * Adds a quad with corners ({@code left}, {@code top}) and ({@code right}, {@code bot})
+         * transformed by the supplied matrix, textured with the region of the texture from
+         * ({@code sl}, {@code st}) to ({@code sr}, {@code sb}) (in normalized texture coordinates)
+         * and tinted with {@code ar} and {@code gb} (see {@link playn.core.Color#encode}).
+         */
+        public void addQuad (float m00, float m01, float m10, float m11, float tx, float ty,
+                             float ar, float gb, float left, float top, float right, float bot,
+                             float sl, float st, float sr, float sb) {
+            int vertIdx = beginPrimitive(4, 6);
+            float[] verts = _verts;
+            verts[0] = m00;
+            verts[1] = m01;
+            verts[2] = m10;
+            verts[3] = m11;
+            verts[4] = tx;
+            verts[5] = ty;
+            verts[6] = ar;
+            verts[7] = gb;
+            System.arraycopy(verts, 0, verts, VERTEX_SIZE, 8);
+            System.arraycopy(verts, 0, verts, 2*VERTEX_SIZE, 8);
+            System.arraycopy(verts, 0, verts, 3*VERTEX_SIZE, 8);
+            addCorner(verts, 0, left, top, sl, st);
+            addCorner(verts, VERTEX_SIZE, right, top, sr, st);
+            addCorner(verts, 2*VERTEX_SIZE, left, bot, sl, sb);
+            addCorner(verts, 3*VERTEX_SIZE, right, bot, sr, sb);
+            vertices.add(verts, 0, 4*VERTEX_SIZE);
+            addElements(vertIdx);
+        }
+
+        /** Adds the elements of the quad whose first vertex is {@code vertIdx}. */
+        protected void addElements (int vertIdx) {
+            elements.add(vertIdx+0);
+            elements.add(vertIdx+1);
+            elements.add(vertIdx+2);
+            elements.add(vertIdx+1);
+            elements.add(vertIdx+3);
+            elements.add(vertIdx+2);
+        }
+
+        /** Fills in the position and texture coordinates of the vertex at {@code vv}, and returns
+         * the offset of the next vertex. */
+        protected int addCorner (float[] verts, int vv, float x, float y, float s, float t) {
+            verts[vv+8] = x;
+            verts[vv+9] = y;
+            verts[vv+10] = s;
+            verts[vv+11] = t;
+            return vv + VERTEX_SIZE;
+        }
+
+        protected final float[] _verts;
+    }
+
+    /** The number of floats per vertex: the quad's transform and tint, plus the position and
+     * texture coordinates of the corner. */
+    protected static final int VERTEX_SIZE = 12;
+}
@@ -45,6 +45,10 @@ public class Deflater extends Conflater
         return this;
     }
 
+    public Deflater addFloat (float value) {
+        return addInt(Float.floatToIntBits(value));
+    }
+
     public Deflater addVarInt (int value) {
         Asserts.checkArgument(value > Integer.MIN_VALUE, "Can't use varint for Int.MIN_VALUE");
         if (value < 0) {
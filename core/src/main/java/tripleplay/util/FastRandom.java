@@ -0,0 +1,74 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.util;
+
+import java.util.Random;
+
+/**
+ * A fast, unsynchronized xorshift random number generator. Its statistical quality is well short
+ * of {@link Random}, but is more than adequate for visual effects, and it avoids the atomic (or
+ * synchronized) seed update that {@code Random} performs on every call. It must not be shared
+ * between threads. Use it via {@link Randoms}: {@code Randoms.with(new FastRandom())}.
+ */
+public class FastRandom extends Random
+{
+    /** Creates a generator seeded from the current time. */
+    public FastRandom () {
+        this(System.currentTimeMillis() ^ (++_seedUniquifier * 0x5DEECE66DL));
+    }
+
+    /** Creates a generator with the specified seed. */
+    public FastRandom (long seed) {
+        super(seed);
+    }
+
+    @Override public void setSeed (long seed) {
+        // note: this is called by Random's constructor, before our fields are initialized
+        int state = (int)(seed ^ (seed >>> 32));
+        _state = (state == 0) ? 0x9E3779B9 : state;
+        _haveGaussian = false;
+    }
+
+    @Override public int nextInt () {
+        int x = _state;
+        x ^= x << 13;
+        x ^= x >>> 17;
+        x ^= x << 5;
+        return _state = x;
+    }
+
+    @Override public float nextFloat () {
+        return (nextInt() >>> 8) / (float)(1 << 24);
+    }
+
+    @Override public double nextGaussian () {
+        // the polar method, as in Random, but without the synchronization
+        if (_haveGaussian) {
+            _haveGaussian = false;
+            return _nextGaussian;
+        }
+        double v1, v2, s;
+        do {
+            v1 = 2 * nextDouble() - 1;
+            v2 = 2 * nextDouble() - 1;
+            s = v1 * v1 + v2 * v2;
+        } while (s >= 1 || s == 0);
+        double multiplier = Math.sqrt(-2 * Math.log(s)/s);
+        _nextGaussian = v2 * multiplier;
+        _haveGaussian = true;
+        return v1 * multiplier;
+    }
+
+    @Override protected int next (int bits) {
+        return nextInt() >>> (32 - bits);
+    }
+
+    protected int _state;
+    protected double _nextGaussian;
+    protected boolean _haveGaussian;
+
+    protected static long _seedUniquifier;
+}
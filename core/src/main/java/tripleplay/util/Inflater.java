@@ -38,6 +38,10 @@ public class Inflater extends Conflater
         return fromHexString(_data, pos(8), 8);
     }
 
+    public float popFloat () {
+        return Float.intBitsToFloat(popInt());
+    }
+
     public int popVarInt () {
         int value = 0;
         char c;
@@ -80,6 +80,104 @@ public abstract class Interpolator
         }
     };
 
+    /** The default number of samples used by {@link #baked}, {@link #cubicBezier} and {@link
+     * #spring}. */
+    public static final int SAMPLES = 256;
+
+    /**
+     * An interpolator that looks up its curve in a table of samples, interpolating linearly
+     * between adjacent samples. The curve is sampled over [0, 1] and clamped outside that range.
+     * This makes expensive curves (and wrapped interpolators that would otherwise evaluate a
+     * polynomial on every call) cost a multiply, a table lookup and a lerp.
+     */
+    public static class Baked extends Interpolator {
+        /** The samples of the normalized curve: sample {@code i} is the fraction of the range
+         * covered at {@code dt/t = i/(table.length-1)}. */
+        public final float[] table;
+
+        /** Creates an interpolator with the supplied samples. */
+        public Baked (float[] table) {
+            if (table.length < 2) throw new IllegalArgumentException(
+                "Baked interpolators require at least two samples.");
+            this.table = table;
+            _samples = table.length-1;
+        }
+
+        @Override public float apply (float start, float range, float dt, float t) {
+            if (t == 0) return start + range;
+            float pos = dt / t * _samples;
+            if (pos <= 0) return start + range * table[0];
+            if (pos >= _samples) return start + range * table[_samples];
+            int idx = (int)pos;
+            float v0 = table[idx];
+            return start + range * (v0 + (table[idx+1] - v0) * (pos - idx));
+        }
+
+        protected final int _samples;
+    }
+
+    /**
+     * Returns a table-backed version of {@code interp} with {@link #SAMPLES} samples.
+     */
+    public static Baked baked (Interpolator interp) {
+        return baked(interp, SAMPLES);
+    }
+
+    /**
+     * Returns a table-backed version of {@code interp}, sampled at {@code samples+1} evenly spaced
+     * points over its duration.
+     */
+    public static Baked baked (Interpolator interp, int samples) {
+        float[] table = new float[samples+1];
+        for (int ii = 0; ii <= samples; ii++) table[ii] = interp.apply(0, 1, ii, samples);
+        return new Baked(table);
+    }
+
+    /**
+     * Returns a (baked) interpolator that follows the cubic bezier curve from (0, 0) to (1, 1)
+     * with control points ({@code x1}, {@code y1}) and ({@code x2}, {@code y2}), as with CSS
+     * {@code cubic-bezier} timing functions. {@code x1} and {@code x2} must be in [0, 1].
+     */
+    public static Baked cubicBezier (float x1, float y1, float x2, float y2) {
+        if (x1 < 0 || x1 > 1 || x2 < 0 || x2 > 1) throw new IllegalArgumentException(
+            "Control point x values must be in [0, 1] [x1=" + x1 + ", x2=" + x2 + "]");
+        float[] table = new float[SAMPLES+1];
+        for (int ii = 0; ii <= SAMPLES; ii++) {
+            float x = ii / (float)SAMPLES;
+            // x(s) is monotonic for control points in [0, 1], so bisect for the s that yields x
+            float lo = 0, hi = 1, s = x;
+            for (int jj = 0; jj < 24; jj++) {
+                if (bezier(s, x1, x2) < x) lo = s;
+                else hi = s;
+                s = (lo + hi) / 2;
+            }
+            table[ii] = bezier(s, y1, y2);
+        }
+        table[0] = 0;
+        table[SAMPLES] = 1;
+        return new Baked(table);
+    }
+
+    /**
+     * Returns a (baked) interpolator that overshoots its target and oscillates around it like a
+     * damped spring, settling on the final value at the end of the interpolation.
+     *
+     * @param damping how quickly the oscillations die down; 5 to 10 is a reasonable range.
+     * @param oscillations the number of oscillations over the duration of the interpolation.
+     */
+    public static Baked spring (float damping, float oscillations) {
+        float[] table = new float[SAMPLES+1];
+        double omega = 2 * Math.PI * oscillations;
+        double end = 1 - Math.exp(-damping) * Math.cos(omega);
+        for (int ii = 0; ii <= SAMPLES; ii++) {
+            double u = ii / (double)SAMPLES;
+            double v = 1 - Math.exp(-damping * u) * Math.cos(omega * u);
+            // correct for the residual oscillation so that we end exactly on the target
+            table[ii] = (float)(v + u * (1 - end));
+        }
+        return new Baked(table);
+    }
+
     /**
      * Interpolates between two values.
      *
@@ -98,4 +196,10 @@ public abstract class Interpolator
     public float applyClamp (float start, float range, float dt, float t) {
         return apply(start, range, MathUtil.clamp(dt, 0, t), t);
     }
+
+    /** Evaluates one coordinate of a cubic bezier from 0 to 1 with control values c1 and c2. */
+    protected static float bezier (float s, float c1, float c2) {
+        float is = 1 - s;
+        return 3 * is * is * s * c1 + 3 * is * s * s * c2 + s * s * s;
+    }
 }
@@ -0,0 +1,36 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.util;
+
+/**
+ * Runs batches of independent tasks, on multiple threads where the platform supports it. Obtain
+ * the executor for the current platform via {@link tripleplay.platform.TPPlatform#parallel}.
+ */
+public abstract class Parallel
+{
+    /** An executor that runs tasks one after another on the calling thread. Used on platforms
+     * without threads. */
+    public static final Parallel SERIAL = new Parallel() {
+        @Override public int threads () {
+            return 1;
+        }
+        @Override public void run (Runnable[] tasks, int count) {
+            for (int ii = 0; ii < count; ii++) tasks[ii].run();
+        }
+    };
+
+    /**
+     * Returns the number of tasks this executor can usefully run at once.
+     */
+    public abstract int threads ();
+
+    /**
+     * Runs the first {@code count} tasks in {@code tasks}, returning when all have completed. The
+     * tasks may be run concurrently and in any order, so they must not depend on one another. If
+     * any task throws an exception, it is rethrown (wrapped if necessary) on the calling thread.
+     */
+    public abstract void run (Runnable[] tasks, int count);
+}
@@ -65,6 +65,20 @@ public class Randoms
         return low + (_r.nextFloat() * (high - low));
     }
 
+    /**
+     * Fills {@code count} elements of {@code into}, starting at {@code start} and {@code stride}
+     * elements apart, with pseudorandom, uniformly distributed values between {@code low}
+     * (inclusive) and {@code high} (exclusive).
+     */
+    public void fillInRange (float[] into, int start, int stride, int count,
+                             float low, float high) {
+        Random r = _r;
+        float range = high - low;
+        for (int ii = 0, pos = start; ii < count; ii++, pos += stride) {
+            into[pos] = low + r.nextFloat() * range;
+        }
+    }
+
     /**
      * Returns true approximately one in {@code n} times.
      *
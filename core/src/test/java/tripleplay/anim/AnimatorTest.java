@@ -8,8 +8,20 @@ package tripleplay.anim;
 import org.junit.*;
 import static org.junit.Assert.*;
 
+import playn.core.GroupLayer;
+import playn.core.Layer;
+import playn.core.util.Clock;
+import playn.java.JavaPlatform;
+import static playn.core.PlayN.graphics;
+
 public class AnimatorTest
 {
+    static {
+        JavaPlatform.Config config = new JavaPlatform.Config();
+        config.headless = true;
+        JavaPlatform.register(config);
+    }
+
     @Test public void testAnimDoubleRegisterFreakout () {
         Animator anim = new Animator();
         Runnable NOOP = new Runnable() { public void run () {} };
@@ -23,4 +35,299 @@ public class AnimatorTest
             fail("Double register failed to freakout");
         } catch (IllegalStateException ise) {} // success
     }
+
+    @Test public void testCompletion () {
+        Animator anim = new Animator();
+        final float[] values = new float[5];
+        for (int ii = 0; ii < values.length; ii++) {
+            final int idx = ii;
+            anim.tween(new Animation.Value() {
+                public float initial () { return 0; }
+                public void set (float value) { values[idx] = value; }
+            }).to(1).in(100 * (1 + ii % 2)); // alternately complete after 100ms and 200ms
+        }
+        TestClock clock = new TestClock();
+        anim.paint(clock);
+        clock.time = 150;
+        anim.paint(clock);
+        for (int ii = 0; ii < values.length; ii++) {
+            assertEquals(ii % 2 == 0 ? 1 : 0.75f, values[ii], 1e-4f);
+        }
+        assertEquals(2, anim._anims.size());
+        clock.time = 200;
+        anim.paint(clock);
+        for (int ii = 0; ii < values.length; ii++) assertEquals(1, values[ii], 0);
+        assertTrue(anim._anims.isEmpty());
+    }
+
+    @Test public void testCoalesce () {
+        Animator anim = new Animator().setCoalesced(true);
+        Layer layer = graphics().createGroupLayer();
+        final boolean[] ran = new boolean[1];
+        anim.tweenAlpha(layer).to(0).in(100).then().action(new Runnable() {
+            public void run () { ran[0] = true; }
+        });
+        TestClock clock = new TestClock();
+        anim.paint(clock);
+        clock.time = 50;
+        anim.paint(clock);
+        assertEquals(0.5f, layer.alpha(), 1e-4f);
+
+        // a second tween of the alpha supersedes the first, starting from its partial value, and
+        // the action chained after the first runs immediately
+        anim.tweenAlpha(layer).to(1).in(100);
+        anim.paint(clock);
+        assertTrue(ran[0]);
+        assertEquals(1, anim._anims.size());
+        clock.time = 100;
+        anim.paint(clock);
+        assertEquals(0.75f, layer.alpha(), 1e-4f);
+
+        // once the tween completes, we no longer track the layer
+        clock.time = 150;
+        anim.paint(clock);
+        assertEquals(1, layer.alpha(), 0);
+        assertTrue(anim._anims.isEmpty());
+        assertTrue(anim._tweening.isEmpty());
+    }
+
+    @Test public void testCoalescePooled () {
+        Animator anim = new Animator().setCoalesced(true).setPooled(true);
+        Layer layer = graphics().createGroupLayer();
+        TestClock clock = new TestClock();
+        anim.tweenX(layer).to(10).in(100);
+        anim.tweenY(layer).to(10).in(100);
+        anim.paint(clock);
+        clock.time = 50;
+        anim.paint(clock);
+        anim.tweenX(layer).to(0).in(100);
+        anim.paint(clock);
+        assertEquals(2, anim._anims.size());
+        assertEquals(1, anim._pool.size());
+
+        // superseded and completed tweens are pooled, and their layer is no longer tracked
+        clock.time = 150;
+        anim.paint(clock);
+        assertEquals(0, layer.tx(), 0);
+        assertEquals(10, layer.ty(), 0);
+        assertTrue(anim._anims.isEmpty());
+        assertTrue(anim._tweening.isEmpty());
+        assertEquals(3, anim._pool.size());
+
+        // a reused tween is not superseded
+        anim.tweenX(layer).to(20).in(100);
+        anim.paint(clock);
+        clock.time = 200;
+        anim.paint(clock);
+        assertEquals(10, layer.tx(), 1e-4f);
+    }
+
+    @Test public void testCoalesceChained () {
+        Animator anim = new Animator().setCoalesced(true);
+        Layer layer = graphics().createGroupLayer();
+        anim.tweenX(layer).to(10).in(100).then().tweenX(layer).to(20).in(100);
+        TestClock clock = new TestClock();
+        anim.paint(clock);
+        clock.time = 150;
+        anim.paint(clock);
+        assertEquals(15, layer.tx(), 1e-4f);
+
+        // a new tween supersedes the chained tween that is now updating the property
+        anim.tweenX(layer).to(0).in(100);
+        anim.paint(clock);
+        assertEquals(1, anim._anims.size());
+        clock.time = 200;
+        anim.paint(clock);
+        assertEquals(7.5f, layer.tx(), 1e-4f);
+        clock.time = 250;
+        anim.paint(clock);
+        assertEquals(0, layer.tx(), 0);
+        assertTrue(anim._tweening.isEmpty());
+    }
+
+    @Test public void testCoalesceAxes () {
+        Animator anim = new Animator().setCoalesced(true);
+        Layer layer = graphics().createGroupLayer();
+        anim.tweenXY(layer).to(100, 100).in(100);
+        TestClock clock = new TestClock();
+        anim.paint(clock);
+        clock.time = 50;
+        anim.paint(clock);
+
+        // a tween of the x translation supersedes only the x axis of the x/y tween
+        anim.tweenX(layer).to(0).in(100);
+        anim.paint(clock);
+        assertEquals(2, anim._anims.size());
+        clock.time = 100;
+        anim.paint(clock);
+        assertEquals(25, layer.tx(), 1e-4f);
+        assertEquals(100, layer.ty(), 0);
+        assertEquals(1, anim._anims.size());
+
+        // a tween of both axes supersedes the x tween entirely
+        anim.tweenTranslation(layer).to(50, 50).in(100);
+        anim.paint(clock);
+        assertEquals(1, anim._anims.size());
+        clock.time = 200;
+        anim.paint(clock);
+        assertEquals(50, layer.tx(), 0);
+        assertEquals(50, layer.ty(), 0);
+        assertTrue(anim._tweening.isEmpty());
+
+        // likewise for the scale, both axes of which are updated by a scale tween
+        anim.tweenScaleXY(layer).to(2, 2).in(100);
+        anim.paint(clock);
+        anim.tweenScale(layer).to(3).in(100);
+        anim.paint(clock);
+        assertEquals(1, anim._anims.size());
+    }
+
+    @Test public void testCullHidden () {
+        Animator anim = new Animator().setCulling(true);
+        GroupLayer parent = graphics().createGroupLayer();
+        Layer layer = graphics().createGroupLayer();
+        parent.add(layer);
+        graphics().rootLayer().add(parent);
+        final int[] ran = new int[1];
+        anim.tweenX(layer).to(100).in(100).then().action(new Runnable() {
+            public void run () { ran[0]++; }
+        });
+        TestClock clock = new TestClock();
+        anim.paint(clock);
+        clock.time = 20;
+        anim.paint(clock);
+        assertEquals(20, layer.tx(), 1e-4f);
+
+        // while an ancestor is hidden, the tween does not write its value
+        parent.setVisible(false);
+        clock.time = 50;
+        anim.paint(clock);
+        assertEquals(20, layer.tx(), 1e-4f);
+
+        // once shown, it resumes at its on-schedule value
+        parent.setVisible(true);
+        clock.time = 60;
+        anim.paint(clock);
+        assertEquals(60, layer.tx(), 1e-4f);
+
+        // if it would have finished while hidden, it writes its end value once and its chain
+        // proceeds
+        parent.setVisible(false);
+        clock.time = 150;
+        anim.paint(clock);
+        assertEquals(100, layer.tx(), 0);
+        assertEquals(1, ran[0]);
+        assertTrue(anim._anims.isEmpty());
+        layer.setTx(5);
+        clock.time = 200;
+        anim.paint(clock);
+        assertEquals(5, layer.tx(), 0);
+        assertEquals(1, ran[0]);
+        graphics().rootLayer().remove(parent);
+    }
+
+    @Test public void testCullDetached () {
+        Animator anim = new Animator().setCulling(true);
+        Layer layer = graphics().createGroupLayer();
+        anim.tweenAlpha(layer).from(1).to(0).in(100);
+        TestClock clock = new TestClock();
+        anim.paint(clock);
+        clock.time = 50;
+        anim.paint(clock);
+        assertEquals(1, layer.alpha(), 0);
+
+        graphics().rootLayer().add(layer);
+        clock.time = 70;
+        anim.paint(clock);
+        assertEquals(0.3f, layer.alpha(), 1e-4f);
+        graphics().rootLayer().remove(layer);
+    }
+
+    @Test public void testCullRepeat () {
+        Animator anim = new Animator().setCulling(true);
+        GroupLayer parent = graphics().createGroupLayer();
+        Layer layer = graphics().createGroupLayer();
+        parent.add(layer);
+        graphics().rootLayer().add(parent);
+        final int[] loops = new int[1];
+        anim.repeat(layer).tweenX(layer).from(0).to(100).in(100).then().action(new Runnable() {
+            public void run () { loops[0]++; }
+        });
+        TestClock clock = new TestClock();
+        anim.paint(clock);
+        clock.time = 50;
+        anim.paint(clock);
+        assertEquals(50, layer.tx(), 1e-4f);
+
+        // the iteration in progress when the parent is hidden completes, but the loop then waits
+        // for the layer to be shown, rather than running the iterations it missed
+        parent.setVisible(false);
+        clock.time = 150;
+        anim.paint(clock);
+        assertEquals(100, layer.tx(), 0);
+        assertEquals(1, loops[0]);
+        clock.time = 1000;
+        anim.paint(clock);
+        assertEquals(100, layer.tx(), 0);
+        assertEquals(1, loops[0]);
+
+        // once shown, the loop starts its next iteration
+        parent.setVisible(true);
+        clock.time = 1050;
+        anim.paint(clock);
+        assertEquals(50, layer.tx(), 1e-4f);
+        clock.time = 1150;
+        anim.paint(clock);
+        assertEquals(2, loops[0]);
+
+        // removing the layer ends the loop, even while its parent is hidden
+        parent.setVisible(false);
+        parent.remove(layer);
+        clock.time = 1300;
+        anim.paint(clock);
+        assertTrue(anim._anims.isEmpty());
+        graphics().rootLayer().remove(parent);
+    }
+
+    @Test public void testCullShake () {
+        Animator anim = new Animator().setCulling(true);
+        GroupLayer parent = graphics().createGroupLayer();
+        Layer layer = graphics().createGroupLayer();
+        layer.setTranslation(10, 10);
+        parent.add(layer);
+        graphics().rootLayer().add(parent);
+        final int[] loops = new int[1];
+        anim.repeat(layer).shake(layer).in(100).then().action(new Runnable() {
+            public void run () { loops[0]++; }
+        });
+        TestClock clock = new TestClock();
+        anim.paint(clock);
+        clock.time = 50;
+        anim.paint(clock);
+
+        // a shake loop under a hidden ancestor finishes its current shake, then is suspended
+        parent.setVisible(false);
+        for (int ii = 1; ii <= 10; ii++) {
+            clock.time = 50 + ii*100;
+            anim.paint(clock);
+        }
+        assertEquals(1, loops[0]);
+        assertEquals(10, layer.tx(), 0);
+        assertEquals(10, layer.ty(), 0);
+
+        parent.setVisible(true);
+        clock.time = 1100;
+        anim.paint(clock);
+        clock.time = 1200;
+        anim.paint(clock);
+        assertEquals(2, loops[0]);
+        graphics().rootLayer().remove(parent);
+    }
+
+    protected static class TestClock implements Clock {
+        public float time;
+        public float time () { return time; }
+        public float dt () { return 0; }
+        public float alpha () { return 0; }
+    }
 }
@@ -0,0 +1,146 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.anim;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import playn.core.Image;
+import playn.core.ImageLayer;
+import playn.java.JavaPlatform;
+import static playn.core.PlayN.graphics;
+
+import tripleplay.util.SimpleFrames;
+
+public class FlipbookBatchTest
+{
+    static {
+        JavaPlatform.Config config = new JavaPlatform.Config();
+        config.headless = true;
+        JavaPlatform.register(config);
+    }
+
+    @Test public void testTiming () {
+        Image atlas = graphics().createImage(40, 10);
+        RecordingFrames frames = new RecordingFrames(atlas);
+        Flipbook book = new Flipbook(frames, new float[] { 10, 25, 30, 50 });
+        FlipbookBatch batch = new FlipbookBatch(atlas);
+        int id = batch.add(book, 0, 0);
+        Animator anim = new Animator();
+        anim.flipbook(graphics().createImageLayer(), book);
+
+        // the batch shows the same frame as a flip animation at every step, including when it
+        // starts at a time other than zero
+        AnimatorTest.TestClock clock = new AnimatorTest.TestClock();
+        for (int tt = 100; tt <= 150; tt++) {
+            clock.time = tt;
+            anim.paint(clock);
+            batch.paint(clock);
+            assertTrue(batch.isPlaying(id));
+            assertEquals(frames.current, book.frameIndexes[batch._cursor[batch.index(id)]]);
+        }
+
+        // and is removed once its flipbook has played
+        clock.time = 151;
+        batch.paint(clock);
+        assertFalse(batch.isPlaying(id));
+        assertEquals(0, batch.size());
+    }
+
+    @Test public void testLoop () {
+        Image atlas = graphics().createImage(40, 10);
+        Flipbook book = new Flipbook(new SimpleFrames(atlas, 10), new float[] { 10, 25, 30, 50 });
+        FlipbookBatch batch = new FlipbookBatch(atlas);
+        int id = batch.add(book, 0, 0, true);
+        AnimatorTest.TestClock clock = new AnimatorTest.TestClock();
+        batch.paint(clock);
+
+        // a looping instance restarts when its flipbook ends, and plays until it is removed
+        int[] cursors = { 0, 0, 1, 3, 3, 0, 0, 1, 2, 3 };
+        float[] times = { 5, 10, 11, 31, 50, 51, 60, 61, 80, 1045 };
+        for (int ii = 0; ii < times.length; ii++) {
+            clock.time = times[ii];
+            batch.paint(clock);
+            assertTrue(batch.isPlaying(id));
+            assertEquals("cursor at " + times[ii], cursors[ii], batch._cursor[batch.index(id)]);
+        }
+        batch.remove(id);
+        assertFalse(batch.isPlaying(id));
+        assertEquals(0, batch.size());
+    }
+
+    @Test public void testSwapRemove () {
+        Image atlas = graphics().createImage(40, 10);
+        Flipbook book = new Flipbook(new SimpleFrames(atlas, 10), 10);
+        FlipbookBatch batch = new FlipbookBatch(atlas);
+        int a = batch.add(book, 1, 1), b = batch.add(book, 2, 2), c = batch.add(book, 3, 3);
+
+        // removing the first instance moves the last into its place, and its id follows it
+        batch.remove(a);
+        assertEquals(2, batch.size());
+        assertEquals(0, batch.index(c));
+        assertEquals(1, batch.index(b));
+        batch.setPosition(c, 30, 30);
+        assertEquals(30, batch._x[0], 0);
+        assertEquals(2, batch._x[1], 0);
+        batch.setTint(b, 0xFF00FF00);
+        assertEquals(0xFF00FF00, batch._tint[1]);
+        assertEquals(0xFFFFFFFF, batch._tint[0]);
+
+        // removing the last instance moves nothing
+        batch.remove(b);
+        assertEquals(1, batch.size());
+        assertEquals(0, batch.index(c));
+        assertEquals(30, batch._x[0], 0);
+    }
+
+    @Test public void testStaleIds () {
+        Image atlas = graphics().createImage(40, 10);
+        Flipbook book = new Flipbook(new SimpleFrames(atlas, 10), 10);
+        FlipbookBatch batch = new FlipbookBatch(atlas);
+        int a = batch.add(book, 1, 1);
+        batch.remove(a);
+
+        // a new instance reuses the removed instance's slot, but not its id
+        int b = batch.add(book, 2, 2);
+        assertTrue(a != b);
+        assertFalse(batch.isPlaying(a));
+        assertTrue(batch.isPlaying(b));
+        try {
+            batch.setPosition(a, 5, 5);
+            fail("Stale id updated an instance");
+        } catch (IllegalArgumentException e) {} // success
+        batch.remove(a);
+        assertTrue(batch.isPlaying(b));
+        assertEquals(2, batch._x[batch.index(b)], 0);
+
+        // likewise for instances removed because they finished playing
+        AnimatorTest.TestClock clock = new AnimatorTest.TestClock();
+        batch.paint(clock);
+        clock.time = 100;
+        batch.paint(clock);
+        assertFalse(batch.isPlaying(b));
+        int c = batch.add(book, 3, 3);
+        assertFalse(batch.isPlaying(a));
+        assertFalse(batch.isPlaying(b));
+        assertTrue(batch.isPlaying(c));
+
+        // ids that were never issued are not playing
+        assertFalse(batch.isPlaying(-1));
+        assertFalse(batch.isPlaying(c+1));
+    }
+
+    /** Frames that record the frame most recently applied to a layer. */
+    protected static class RecordingFrames extends SimpleFrames {
+        public int current = -1;
+        public RecordingFrames (Image atlas) {
+            super(atlas, 10);
+        }
+        @Override public void apply (int index, ImageLayer layer) {
+            current = index;
+        }
+    }
+}
@@ -0,0 +1,178 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.anim;
+
+import java.util.Random;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import playn.core.Layer;
+import playn.java.JavaPlatform;
+import static playn.core.PlayN.graphics;
+
+import tripleplay.util.Interpolator;
+
+public class TimelineTest
+{
+    static {
+        JavaPlatform.Config config = new JavaPlatform.Config();
+        config.headless = true;
+        JavaPlatform.register(config);
+    }
+
+    @Test public void testSample () {
+        Timeline.Track track = new Timeline.Builder().
+            key(Timeline.X, 0, 0).key(Timeline.X, 100, 10).key(Timeline.X, 300, 30).
+            key(Timeline.ALPHA, 50, 1).key(Timeline.ALPHA, 150, 0, Interpolator.EASE_IN).build();
+        assertEquals(300, track.duration, 0);
+        assertFalse(track.hasKeys(Timeline.Y));
+        assertEquals(0, track.sample(Timeline.X, -10), 0);
+        assertEquals(5, track.sample(Timeline.X, 50), 1e-5f);
+        assertEquals(20, track.sample(Timeline.X, 200), 1e-5f);
+        assertEquals(30, track.sample(Timeline.X, 400), 0);
+        assertEquals(1, track.sample(Timeline.ALPHA, 0), 0);
+        assertEquals(Interpolator.EASE_IN.apply(1, -1, 50, 100),
+                     track.sample(Timeline.ALPHA, 100), 1e-5f);
+    }
+
+    @Test public void testCursors () {
+        Timeline.Builder builder = new Timeline.Builder();
+        Random rando = new Random(42);
+        float time = 0;
+        for (int ii = 0; ii < 500; ii++) {
+            builder.key(Timeline.Y, time, rando.nextFloat());
+            time += rando.nextFloat() * 10;
+        }
+        Timeline.Track track = builder.build();
+        int[] cursors = new int[Timeline.CHANNELS];
+        // sequential playback, then random seeks, should match uncached sampling
+        for (float tt = -5; tt < track.duration + 5; tt += 0.7f) {
+            assertEquals(track.sample(Timeline.Y, tt), track.sample(Timeline.Y, tt, cursors), 0);
+        }
+        for (int ii = 0; ii < 500; ii++) {
+            float tt = rando.nextFloat() * track.duration;
+            assertEquals(track.sample(Timeline.Y, tt), track.sample(Timeline.Y, tt, cursors), 0);
+        }
+    }
+
+    @Test public void testOutOfOrder () {
+        try {
+            new Timeline.Builder().key(Timeline.X, 100, 0).key(Timeline.X, 50, 1);
+            fail("Builder accepted out of order keyframes");
+        } catch (IllegalArgumentException iae) {} // success
+    }
+
+    @Test public void testPlay () {
+        Animator anim = new Animator();
+        Layer layer = graphics().createGroupLayer();
+        final boolean[] ran = new boolean[1];
+        Timeline timeline = anim.timeline(layer, ramp());
+        timeline.then().tweenY(layer).to(100).in(100).then().action(new Runnable() {
+            public void run () { ran[0] = true; }
+        });
+        AnimatorTest.TestClock clock = new AnimatorTest.TestClock();
+        anim.paint(clock);
+        assertEquals(0, layer.tx(), 0);
+        clock.time = 40;
+        anim.paint(clock);
+        assertEquals(40, timeline.position(), 0);
+        assertEquals(40, layer.tx(), 1e-4f);
+        assertEquals(1, layer.alpha(), 0);
+
+        // once finished, the timeline passes its overflow on to the next animation in its chain
+        clock.time = 150;
+        anim.paint(clock);
+        assertEquals(100, layer.tx(), 0);
+        assertEquals(0.5f, layer.alpha(), 0);
+        assertEquals(50, layer.ty(), 1e-4f);
+        clock.time = 200;
+        anim.paint(clock);
+        assertTrue(ran[0]);
+        assertTrue(anim._anims.isEmpty());
+    }
+
+    @Test public void testApply () {
+        Timeline timeline = new Timeline(graphics().createGroupLayer(), ramp());
+        timeline.init(1000);
+        // the remaining time until the end of the track, which is negative once it is over
+        assertEquals(60, timeline.apply(1040), 0);
+        assertEquals(0, timeline.apply(1100), 0);
+        assertEquals(-25, timeline.apply(1125), 0);
+        assertEquals(125, timeline.position(), 0);
+        // a looping timeline never ends
+        timeline.loop();
+        assertEquals(1, timeline.apply(1125), 0);
+        assertEquals(25, timeline.position(), 0);
+    }
+
+    @Test public void testLoop () {
+        Animator anim = new Animator();
+        Layer layer = graphics().createGroupLayer();
+        Timeline timeline = anim.timeline(layer, ramp()).loop();
+        AnimatorTest.TestClock clock = new AnimatorTest.TestClock();
+        anim.paint(clock);
+        clock.time = 150;
+        anim.paint(clock);
+        assertEquals(50, timeline.position(), 0);
+        assertEquals(50, layer.tx(), 1e-4f);
+
+        // a looping timeline keeps playing (and its position stays within the track) until it
+        // is removed
+        clock.time = 100030;
+        anim.paint(clock);
+        assertEquals(30, timeline.position(), 1e-2f);
+        assertEquals(30, layer.tx(), 1e-2f);
+        assertEquals(1, anim._anims.size());
+        anim.clear();
+        clock.time = 100040;
+        anim.paint(clock);
+        assertEquals(30, layer.tx(), 1e-2f);
+    }
+
+    @Test public void testSeek () {
+        Animator anim = new Animator();
+        Layer layer = graphics().createGroupLayer();
+        // seeking before the timeline starts starts it from that position
+        Timeline timeline = anim.timeline(layer, ramp()).seek(40);
+        assertEquals(40, timeline.position(), 0);
+        AnimatorTest.TestClock clock = new AnimatorTest.TestClock();
+        clock.time = 1000;
+        anim.paint(clock);
+        assertEquals(40, layer.tx(), 1e-4f);
+        clock.time = 1010;
+        anim.paint(clock);
+        assertEquals(50, timeline.position(), 0);
+        assertEquals(50, layer.tx(), 1e-4f);
+
+        // seeking after it starts continues from that position on the next frame
+        timeline.seek(10);
+        clock.time = 1020;
+        anim.paint(clock);
+        assertEquals(10, timeline.position(), 0);
+        assertEquals(10, layer.tx(), 1e-4f);
+        clock.time = 1050;
+        anim.paint(clock);
+        assertEquals(40, layer.tx(), 1e-4f);
+
+        // as does seeking backwards past the start of the track
+        timeline.seek(-20);
+        clock.time = 1060;
+        anim.paint(clock);
+        assertEquals(0, layer.tx(), 0);
+        clock.time = 1200;
+        anim.paint(clock);
+        assertEquals(100, layer.tx(), 0);
+        assertTrue(anim._anims.isEmpty());
+    }
+
+    /** A track that moves x from 0 to 100 over 100ms, and fades alpha to 0.5 over its second
+     * half. */
+    protected static Timeline.Track ramp () {
+        return new Timeline.Builder().key(Timeline.X, 0, 0).key(Timeline.X, 100, 100).
+            key(Timeline.ALPHA, 50, 1).key(Timeline.ALPHA, 100, 0.5f).build();
+    }
+}
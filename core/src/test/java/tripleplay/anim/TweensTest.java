@@ -0,0 +1,61 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.anim;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import tripleplay.util.Interpolator;
+
+public class TweensTest
+{
+    @Test public void testTweens () {
+        float[] values = new float[4];
+        values[0] = 10;
+        Tweens tweens = new Tweens(Tweens.array(values));
+        tweens.add(0, 20, 100); // from current value (10)
+        tweens.add(1, 0, 5, 200, Interpolator.LINEAR);
+        tweens.add(2, 0, 1, 100, Interpolator.EASE_INOUT, 100);
+        tweens.init(1000);
+
+        tweens.apply(1050);
+        assertEquals(15, values[0], 1e-4f);
+        assertEquals(1.25f, values[1], 1e-4f);
+        assertEquals(0, values[2], 0); // not yet started
+        assertEquals(3, tweens.size());
+
+        tweens.apply(1150);
+        assertEquals(20, values[0], 0);
+        assertEquals(3.75f, values[1], 1e-4f);
+        assertEquals(0.5f, values[2], 1e-4f);
+        assertEquals(2, tweens.size());
+
+        tweens.apply(1300);
+        assertEquals(5, values[1], 0);
+        assertEquals(1, values[2], 0);
+        assertEquals(0, tweens.size());
+
+        // tweens added after we've started begin at the time of the most recent update
+        tweens.add(3, 0, 1, 100, Interpolator.LINEAR);
+        tweens.apply(1350);
+        assertEquals(0.5f, values[3], 1e-4f);
+        assertEquals(1, tweens.remove(3));
+        assertEquals(0, tweens.size());
+    }
+
+    @Test public void testManyTweens () {
+        int count = 10000;
+        float[] values = new float[count];
+        Tweens tweens = new Tweens(Tweens.array(values));
+        for (int ii = 0; ii < count; ii++) {
+            tweens.add(ii, 0, ii, 1 + ii % 100, Interpolator.LINEAR);
+        }
+        tweens.init(0);
+        for (int tt = 1; tt <= 100; tt++) tweens.apply(tt);
+        assertEquals(0, tweens.size());
+        for (int ii = 0; ii < count; ii++) assertEquals(ii, values[ii], 0);
+    }
+}
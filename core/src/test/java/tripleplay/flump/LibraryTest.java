@@ -0,0 +1,111 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.flump;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import pythagoras.f.IPoint;
+
+import playn.core.Json;
+import playn.core.util.Callback;
+import playn.java.JavaPlatform;
+import static playn.core.PlayN.json;
+
+import tripleplay.util.Inflater;
+
+public class LibraryTest
+{
+    static {
+        JavaPlatform.Config config = new JavaPlatform.Config();
+        config.headless = true;
+        JavaPlatform.register(config);
+    }
+
+    @Test public void testCompact () {
+        Json.Object json = json().parse(MovieTest.LIBRARY.replace('\'', '"'));
+        Library jlib = MovieTest.library();
+        LibraryCallback callback = new LibraryCallback();
+        new Library(new Inflater(Library.toCompact(json)), MovieTest.BASE_DIR, callback);
+        Library clib = callback.lib;
+        assertNotNull(clib);
+
+        assertEquals(jlib.frameRate, clib.frameRate, 0);
+        assertEquals(jlib.symbols.keySet(), clib.symbols.keySet());
+        int textures = 0;
+        for (String name : jlib.symbols.keySet()) {
+            if (jlib.symbols.get(name) instanceof Texture.Symbol) {
+                assertSameTexture((Texture.Symbol)jlib.symbols.get(name),
+                                  (Texture.Symbol)clib.symbols.get(name));
+                textures++;
+                continue;
+            }
+            Movie.Symbol jmovie = (Movie.Symbol)jlib.symbols.get(name);
+            Movie.Symbol cmovie = (Movie.Symbol)clib.symbols.get(name);
+            assertEquals(jmovie.name(), cmovie.name());
+            assertEquals(jmovie.frames, cmovie.frames);
+            assertEquals(jmovie.duration, cmovie.duration, 0);
+            assertEquals(jmovie.layers.size(), cmovie.layers.size());
+            for (int ll = 0; ll < jmovie.layers.size(); ll++) {
+                assertSameLayer(jmovie.layers.get(ll), cmovie.layers.get(ll), clib);
+            }
+        }
+        assertEquals(2, textures);
+    }
+
+    @Test public void testVersion () {
+        Json.Object json = json().parse(MovieTest.LIBRARY.replace('\'', '"'));
+        String data = Library.toCompact(json);
+        try {
+            new Library(new Inflater("!" + data), "", new LibraryCallback());
+            fail("Loaded a library with an unsupported version");
+        } catch (IllegalArgumentException e) {} // success
+    }
+
+    protected static void assertSameLayer (LayerData jlayer, LayerData clayer, Library clib) {
+        assertEquals(jlayer.name, clayer.name);
+        assertEquals(jlayer._multipleSymbols, clayer._multipleSymbols);
+        assertEquals(jlayer.keyframes.size(), clayer.keyframes.size());
+        for (int kk = 0; kk < jlayer.keyframes.size(); kk++) {
+            KeyframeData jkf = jlayer.keyframes.get(kk), ckf = clayer.keyframes.get(kk);
+            assertEquals(jkf.index, ckf.index);
+            assertEquals(jkf.duration, ckf.duration);
+            assertEquals(jkf.label, ckf.label);
+            assertSamePoint(jkf.loc, ckf.loc);
+            assertSamePoint(jkf.scale, ckf.scale);
+            assertSamePoint(jkf.skew, ckf.skew);
+            assertSamePoint(jkf.pivot, ckf.pivot);
+            assertEquals(jkf.visible, ckf.visible);
+            assertEquals(jkf.alpha, ckf.alpha, 0);
+            assertEquals(jkf.tweened, ckf.tweened);
+            assertEquals(jkf.ease, ckf.ease, 0);
+            assertEquals(jkf._symbolName, ckf._symbolName);
+            if (ckf._symbolName != null) {
+                assertSame(clib.symbols.get(ckf._symbolName), ckf.symbol());
+            }
+        }
+    }
+
+    protected static void assertSameTexture (Texture.Symbol jtex, Texture.Symbol ctex) {
+        assertEquals(jtex.name(), ctex.name());
+        assertSamePoint(jtex.origin, ctex.origin);
+        assertEquals(jtex.region.x(), ctex.region.x(), 0);
+        assertEquals(jtex.region.y(), ctex.region.y(), 0);
+        assertEquals(jtex.region.width(), ctex.region.width(), 0);
+        assertEquals(jtex.region.height(), ctex.region.height(), 0);
+    }
+
+    protected static void assertSamePoint (IPoint expected, IPoint actual) {
+        assertEquals(expected.x(), actual.x(), 0);
+        assertEquals(expected.y(), actual.y(), 0);
+    }
+
+    protected static class LibraryCallback implements Callback<Library> {
+        public Library lib;
+        public void onSuccess (Library result) { lib = result; }
+        public void onFailure (Throwable cause) { throw new RuntimeException(cause); }
+    }
+}
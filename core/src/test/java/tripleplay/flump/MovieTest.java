@@ -0,0 +1,268 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.flump;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import playn.core.GroupLayer;
+import playn.core.ImageLayer;
+import playn.core.Layer;
+import playn.core.util.Callback;
+import playn.java.JavaPlatform;
+import static playn.core.PlayN.graphics;
+import static playn.core.PlayN.json;
+
+public class MovieTest
+{
+    static {
+        JavaPlatform.Config config = new JavaPlatform.Config();
+        config.headless = true;
+        JavaPlatform.register(config);
+    }
+
+    @Test public void testBake () {
+        Movie.Symbol symbol = (Movie.Symbol)library().symbols.get("outer");
+        assertFalse(symbol.baked());
+        Movie.Baked baked = symbol.bake(false)._baked;
+        assertTrue(symbol.baked());
+        assertEquals(20, baked.frames);
+
+        float[] m = new float[6];
+        for (int ll = 0; ll < symbol.layers.size(); ll++) {
+            List<KeyframeData> kfs = symbol.layers.get(ll).keyframes;
+            for (int ff = 0; ff < baked.frames; ff++) {
+                int idx = ll*baked.frames + ff, kfIdx = baked.keyframes[idx];
+                KeyframeData kf = kfs.get(kfIdx);
+                assertTrue(kf.index <= ff);
+                assertTrue(kfIdx == kfs.size()-1 || ff < kf.index + kf.duration);
+                assertEquals(Movie.interpolate(kfs, kfIdx, ff, m, 0), baked.alphas[idx], 0);
+                m[4] -= m[0]*kf.pivot.x() + m[2]*kf.pivot.y();
+                m[5] -= m[1]*kf.pivot.x() + m[3]*kf.pivot.y();
+                for (int ii = 0; ii < 6; ii++) {
+                    assertEquals(m[ii], baked.matrices[idx*6+ii], EPSILON);
+                }
+            }
+        }
+
+        // layer a tweens into its second keyframe, but not its third
+        assertTrue(baked.tweened[9]);
+        assertTrue(baked.tweened[10]);
+        assertFalse(baked.tweened[14]);
+        assertFalse(baked.tweened[19]);
+        // layer b's second keyframe is empty, so its first does not tween into it
+        assertTrue(baked.tweened[20+2]);
+        assertFalse(baked.tweened[20+3]);
+        // layer c's pivot changes at its second keyframe, so it is not blended into it
+        assertTrue(baked.tweened[40+6]);
+        assertFalse(baked.tweened[40+7]);
+    }
+
+    @Test public void testBakedPlayback () {
+        Movie plain = library().createMovie("outer");
+        Library lib = library();
+        ((Movie.Symbol)lib.symbols.get("outer")).bake(false);
+        Movie baked = lib.createMovie("outer");
+
+        // at whole frames, baked movies match unbaked movies exactly
+        for (int ff = 0; ff < 20; ff++) {
+            plain.setPosition(ff*2);
+            baked.setPosition(ff*2);
+            for (String name : NAMES) {
+                assertSameLayer(plain.getNamedLayer(name), baked.getNamedLayer(name));
+            }
+        }
+    }
+
+    @Test public void testBakedBlend () {
+        Movie plain = library().createMovie("outer");
+        Library lib = library();
+        ((Movie.Symbol)lib.symbols.get("outer")).bake(true);
+        Movie baked = lib.createMovie("outer");
+
+        // layer c tweens linearly, so blending between whole frames matches tweening
+        for (int ff = 0; ff < 7; ff++) {
+            plain.setPosition(ff*2 + 1);
+            baked.setPosition(ff*2 + 1);
+            assertSameLayer(plain.getNamedLayer("c"), baked.getNamedLayer("c"));
+        }
+    }
+
+    @Test public void testBatchedPlayback () {
+        Library lib = library();
+        Movie movie = lib.createMovie("outer");
+        BatchedMovie batched = lib.createBatchedMovie("outer");
+
+        // batched movies switch keyframes and advance nested movies just as movies do
+        for (int ii = 0; ii < 50; ii++) {
+            movie.paint(3);
+            batched.paint(3);
+            assertEquals(movie.position(), batched.position(), 0);
+            for (int ll = 0; ll < NAMES.length; ll++) {
+                Movie.LayerAnimator animator = movie._animators[ll];
+                assertEquals(animator.keyframeIdx, batched._root.keyframes[ll]);
+                BatchedMovie.Playback child =
+                    batched._root.children[ll][animator.keyframeIdx];
+                if (child != null) {
+                    assertEquals(((Movie)animator._current).position(), child.position, 0);
+                }
+            }
+        }
+    }
+
+    @Test public void testBatchedRender () {
+        Library lib = library();
+        Movie movie = lib.createMovie("scene");
+        RecordingMovie batched = new RecordingMovie((Movie.Symbol)lib.symbols.get("scene"));
+
+        // the movies' layers and their parents have origins and alphas, which the batched movie
+        // must apply along with their transforms
+        for (Layer layer : new Layer[] { movie.layer(), batched.layer() }) {
+            GroupLayer parent = graphics().createGroupLayer();
+            parent.setTranslation(100, 50);
+            parent.setScale(2);
+            parent.setOrigin(3, 4);
+            parent.setAlpha(0.5f);
+            layer.setOrigin(1, 2);
+            layer.setAlpha(0.8f);
+            parent.add(layer);
+            graphics().rootLayer().add(parent);
+        }
+
+        // each quad has the transform and alpha of the image layer that shows its texture
+        List<float[]> expected = new ArrayList<float[]>();
+        for (int ii = 0; ii < 20; ii++) {
+            movie.paint(1.3f);
+            batched.paint(1.3f);
+            expected.clear();
+            addQuads(movie.layer(), expected);
+            batched.quads.clear();
+            batched.renderMovie();
+            assertEquals(expected.size(), batched.quads.size());
+            for (int qq = 0; qq < expected.size(); qq++) {
+                float[] e = expected.get(qq), a = batched.quads.get(qq);
+                for (int kk = 0; kk < e.length; kk++) assertEquals(e[kk], a[kk], EPSILON);
+            }
+        }
+        graphics().rootLayer().removeAll();
+    }
+
+    /** A batched movie that records the transform (including the texture origin) and alpha of
+     * each quad that it renders, rather than rendering them. */
+    protected static class RecordingMovie extends BatchedMovie {
+        public final List<float[]> quads = new ArrayList<float[]>();
+
+        public RecordingMovie (Movie.Symbol symbol) {
+            super(symbol);
+        }
+
+        @Override protected void addQuad (Texture.Symbol texture, boolean useOrigin, int off,
+                                          float alpha) {
+            float[] m = _stack, q = new float[7];
+            float ox = useOrigin ? texture.origin.x() : 0, oy = useOrigin ? texture.origin.y() : 0;
+            System.arraycopy(m, off, q, 0, 6);
+            q[4] -= m[off]*ox + m[off+2]*oy;
+            q[5] -= m[off+1]*ox + m[off+3]*oy;
+            q[6] = alpha;
+            quads.add(q);
+        }
+    }
+
+    /** Adds the world transform and alpha of each visible image layer in {@code layer}. */
+    protected static void addQuads (Layer layer, List<float[]> quads) {
+        if (!layer.visible()) return;
+        if (layer instanceof ImageLayer) {
+            float[] q = new float[7];
+            q[0] = q[3] = q[6] = 1;
+            for (Layer xlayer = layer; xlayer != null; xlayer = xlayer.parent()) {
+                float[] t = matrix(xlayer);
+                float m00 = t[0]*q[0] + t[2]*q[1], m01 = t[1]*q[0] + t[3]*q[1];
+                float m10 = t[0]*q[2] + t[2]*q[3], m11 = t[1]*q[2] + t[3]*q[3];
+                float tx = t[0]*q[4] + t[2]*q[5] + t[4], ty = t[1]*q[4] + t[3]*q[5] + t[5];
+                q[0] = m00;
+                q[1] = m01;
+                q[2] = m10;
+                q[3] = m11;
+                q[4] = tx;
+                q[5] = ty;
+                q[6] *= xlayer.alpha();
+            }
+            quads.add(q);
+        } else if (layer instanceof GroupLayer) {
+            GroupLayer group = (GroupLayer)layer;
+            for (int ii = 0; ii < group.size(); ii++) addQuads(group.get(ii), quads);
+        }
+    }
+
+    protected static void assertSameLayer (Layer expected, Layer actual) {
+        assertEquals(expected.visible(), actual.visible());
+        if (!expected.visible()) return;
+        assertEquals(expected.alpha(), actual.alpha(), EPSILON);
+        float[] e = matrix(expected), a = matrix(actual);
+        for (int ii = 0; ii < 6; ii++) assertEquals(e[ii], a[ii], EPSILON);
+    }
+
+    /** Returns the transform of {@code layer}, including its origin. */
+    protected static float[] matrix (Layer layer) {
+        float[] m = new float[6];
+        layer.transform().get(m);
+        m[4] -= m[0]*layer.originX() + m[2]*layer.originY();
+        m[5] -= m[1]*layer.originX() + m[3]*layer.originY();
+        return m;
+    }
+
+    protected static Library library () {
+        final Library[] lib = new Library[1];
+        new Library(json().parse(LIBRARY.replace('\'', '"')), BASE_DIR, new Callback<Library>() {
+            public void onSuccess (Library result) { lib[0] = result; }
+            public void onFailure (Throwable cause) { throw new RuntimeException(cause); }
+        });
+        assertNotNull(lib[0]);
+        return lib[0];
+    }
+
+    protected static final String[] NAMES = { "a", "b", "c" };
+
+    protected static final float EPSILON = 1e-4f;
+
+    /** The directory (under assets/ on the test classpath) containing the fixture's atlas. */
+    protected static final String BASE_DIR = "flump";
+
+    // a frame rate of 500 gives two milliseconds per frame (quotes are swapped when parsing)
+    protected static final String LIBRARY = "{'frameRate': 500, 'movies': [" +
+        "{'id': 'inner', 'layers': [{'name': 'empty', 'keyframes': [{'duration': 1}]}]}," +
+        "{'id': 'outer', 'layers': [" +
+        "{'name': 'a', 'keyframes': [" +
+        "{'duration': 10, 'ref': 'inner', 'label': 'start', 'pivot': [5.5, 2.5], 'ease': 0.5}," +
+        "{'duration': 5, 'ref': 'inner', 'loc': [100.5, 50.5], 'scale': [2.5, 1.5]," +
+        " 'skew': [0.5, 0.25], 'alpha': 0.5, 'ease': -0.75, 'pivot': [5.5, 2.5]," +
+        " 'tweened': false}," +
+        "{'duration': 5, 'ref': 'inner', 'loc': [10.5, 0.5]}]}," +
+        "{'name': 'b', 'keyframes': [" +
+        "{'duration': 4, 'ref': 'inner', 'loc': [10.5, 10.5]}," +
+        "{'duration': 4, 'visible': false}]}," +
+        "{'name': 'c', 'keyframes': [" +
+        "{'duration': 8, 'ref': 'inner', 'pivot': [2.5, 2.5]}," +
+        "{'duration': 2, 'ref': 'inner', 'loc': [40.5, 20.5], 'alpha': 0.25}]}]}," +
+        "{'id': 'sprite', 'layers': [{'name': 'tex', 'keyframes': [" +
+        "{'duration': 4, 'ref': 'red', 'loc': [3.5, 1.5], 'alpha': 0.5}," +
+        "{'duration': 4, 'ref': 'red', 'loc': [7.5, 1.5]}]}]}," +
+        "{'id': 'scene', 'layers': [" +
+        "{'name': 'a', 'keyframes': [" +
+        "{'duration': 6, 'ref': 'sprite', 'loc': [10.5, 20.5], 'scale': [2, 0.5], 'alpha': 0.5}," +
+        "{'duration': 2, 'ref': 'sprite', 'loc': [30.5, 20.5], 'skew': [0.5, 0.25]}]}," +
+        "{'name': 'b', 'keyframes': [" +
+        "{'duration': 8, 'ref': 'blue', 'loc': [5, 5], 'pivot': [1, 2], 'alpha': 0.75}]}," +
+        "{'name': 'c', 'keyframes': [" +
+        "{'duration': 4, 'ref': 'red', 'pivot': [2, 1]}," +
+        "{'duration': 4, 'ref': 'blue', 'loc': [6, 6], 'pivot': [2, 1]}]}]}]," +
+        "'textureGroups': [{'atlases': [{'file': 'atlas.png', 'textures': [" +
+        "{'symbol': 'red', 'origin': [4.5, 2.25], 'rect': [0, 0, 16, 8]}," +
+        "{'symbol': 'blue', 'origin': [0, 8], 'rect': [16, 4, 12.5, 12]}]}]}]}";
+}
@@ -0,0 +1,56 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.particle;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class BudgetTest
+{
+    @Test
+    public void testThrottling () {
+        Budget budget = new Budget(1000, 0);
+        // under budget, nothing is throttled
+        frame(budget, 200, 200, 200);
+        assertEquals(1, budget.scale(0), 0);
+        assertEquals(1, budget.scale(2), 0);
+
+        // between low water and the budget, the lowest tier is scaled down
+        frame(budget, 300, 300, 300);
+        assertEquals(0.9f, budget.utilization.get(), 1e-6f);
+        assertEquals(0.4f, budget.scale(0), 1e-6f);
+        assertEquals(1, budget.scale(1), 0);
+
+        // over budget, the lowest tier is suspended and the next tier scaled down
+        frame(budget, 400, 400, 400);
+        assertEquals(0, budget.scale(0), 0);
+        assertEquals(0, budget.scale(1), 0);
+        assertEquals(1, budget.scale(2), 0);
+        assertEquals(1, (int)budget.cutoff.get());
+
+        // still over budget, but the highest tier is never suspended
+        frame(budget, 400, 400, 400);
+        frame(budget, 400, 400, 400);
+        assertEquals(2, (int)budget.cutoff.get());
+        assertEquals(0, budget.scale(1), 0);
+
+        // back under low water, tiers resume one per frame
+        frame(budget, 100, 100, 100);
+        assertEquals(1, (int)budget.cutoff.get());
+        frame(budget, 100, 100, 100);
+        assertEquals(Integer.MIN_VALUE, (int)budget.cutoff.get());
+        assertEquals(1, budget.scale(0), 0);
+    }
+
+    // simulates a frame with emitters at priorities 0, 1 and 2 with the supplied live counts
+    protected void frame (Budget budget, int live0, int live1, int live2) {
+        budget.noteUpdated(2, live2);
+        budget.noteUpdated(0, live0);
+        budget.noteUpdated(1, live1);
+        budget.didUpdate(0);
+        budget.willUpdate();
+    }
+}
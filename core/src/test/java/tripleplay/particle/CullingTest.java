@@ -0,0 +1,136 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.particle;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import pythagoras.f.Rectangle;
+
+import playn.java.JavaPlatform;
+import static playn.core.PlayN.graphics;
+
+import tripleplay.particle.init.Lifespan;
+import tripleplay.particle.init.Transform;
+
+public class CullingTest
+{
+    static {
+        JavaPlatform.Config config = new JavaPlatform.Config();
+        config.headless = true;
+        JavaPlatform.register(config);
+    }
+
+    @Test
+    public void testNeverUpdated () {
+        Particles parts = new Particles().setCulling(true, 0);
+        Emitter emitter = parts.createEmitter(10, graphics().createImage(4, 4));
+        Recorder gen = new Recorder();
+        emitter.generator = gen;
+
+        // a hidden emitter is never updated, and the time for which it was hidden is dropped
+        emitter.layer.setVisible(false);
+        for (int ii = 0; ii < 60; ii++) emitter.update(ii/60f, 1/60f);
+        assertTrue(emitter.isCulled());
+        assertEquals(0, gen.calls);
+
+        emitter.layer.setVisible(true);
+        emitter.update(1, 1/60f);
+        assertFalse(emitter.isCulled());
+        assertEquals(1, gen.calls);
+        assertEquals(1/60f, gen.dt, 1e-6f);
+    }
+
+    @Test
+    public void testCatchUp () {
+        Particles parts = new Particles().setCulling(true, 2);
+        Emitter emitter = parts.createEmitter(10, graphics().createImage(4, 4));
+        Recorder gen = new Recorder();
+        emitter.generator = gen;
+
+        // a culled emitter is updated every few frames with the accumulated time
+        emitter.layer.setVisible(false);
+        emitter.update(0.1f, 0.1f);
+        assertEquals(0, gen.calls);
+        emitter.update(0.2f, 0.1f);
+        assertEquals(1, gen.calls);
+        assertEquals(0.2f, gen.dt, 1e-6f);
+
+        // but the accumulated time is capped
+        parts.setCulling(true, 10);
+        for (int ii = 0; ii < 10; ii++) emitter.update(0.3f + ii/10f, 0.1f);
+        assertEquals(2, gen.calls);
+        assertEquals(Emitter.MAX_CULLED_DT, gen.dt, 1e-6f);
+
+        // and not applied again once the emitter is visible
+        emitter.layer.setVisible(true);
+        emitter.update(1.3f, 0.1f);
+        assertEquals(3, gen.calls);
+        assertEquals(0.1f, gen.dt, 1e-6f);
+    }
+
+    @Test
+    public void testViewport () {
+        Particles parts = new Particles().setCulling(true, 0).setViewport(
+            new Rectangle(0, 0, 100, 100));
+        Emitter emitter = parts.createEmitter(10, graphics().createImage(4, 4));
+        emitter.initters.add(Lifespan.constant(10));
+        emitter.initters.add(Transform.constant(500, 500));
+        emitter.generator = Generator.impulse(1);
+
+        // an emitter whose particles and layer are outside the viewport is culled
+        emitter.layer.setTranslation(300, 300);
+        emitter.update(0, 0.1f);
+        assertFalse(emitter.isCulled());
+        emitter.update(0.1f, 0.1f);
+        assertTrue(emitter.isCulled());
+        emitter.update(0.2f, 0.1f);
+        assertTrue(emitter.isCulled());
+
+        // once its layer moves into the viewport it is no longer culled, even though the bounds
+        // of its particles were not updated while it was culled
+        emitter.layer.setTranslation(50, 50);
+        emitter.update(0.3f, 0.1f);
+        assertFalse(emitter.isCulled());
+    }
+
+    @Test
+    public void testBudget () {
+        Budget budget = new Budget(1000, 0);
+        Particles parts = new Particles().setCulling(true, 2).setBudget(budget);
+        Emitter emitter = parts.createEmitter(10, graphics().createImage(4, 4));
+        emitter.initters.add(Lifespan.constant(10));
+        emitter.addParticles(5);
+        emitter.update(0, 0.1f);
+        budget.willUpdate();
+        assertEquals(5, (int)budget.live.get());
+
+        // a culled emitter's particles don't count against the budget, whether or not it's
+        // updated on a given frame
+        emitter.layer.setVisible(false);
+        emitter.update(0.1f, 0.1f);
+        budget.willUpdate();
+        assertEquals(0, (int)budget.live.get());
+        emitter.update(0.2f, 0.1f);
+        budget.willUpdate();
+        assertEquals(0, (int)budget.live.get());
+
+        emitter.layer.setVisible(true);
+        emitter.update(0.3f, 0.1f);
+        budget.willUpdate();
+        assertEquals(5, (int)budget.live.get());
+    }
+
+    protected static class Recorder extends Generator {
+        public int calls;
+        public float dt;
+        @Override public boolean generate (Emitter emitter, float now, float dt) {
+            this.calls++;
+            this.dt = dt;
+            return false;
+        }
+    }
+}
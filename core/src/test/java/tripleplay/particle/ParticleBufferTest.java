@@ -6,14 +6,21 @@
 package tripleplay.particle;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Random;
 import java.util.Set;
 
+import pythagoras.f.Rectangle;
+
 import org.junit.*;
 import static org.junit.Assert.*;
 
+import tripleplay.particle.effect.Move;
+import tripleplay.particle.init.Transform;
+import tripleplay.util.Parallel;
 import tripleplay.util.Randoms;
 
 public class ParticleBufferTest
@@ -39,6 +46,7 @@ public class ParticleBufferTest
             }
         }), 0, 0);
         assertEquals(lives.size(), applied[0]);
+        assertEquals(lives.size(), buffer.liveCount());
     }
 
     @Test
@@ -47,6 +55,7 @@ public class ParticleBufferTest
         ParticleBuffer buffer = new ParticleBuffer(maxParts);
 
         buffer.add(100, 0, new ArrayList<Initializer>());
+        assertEquals(100, buffer.liveCount());
         final int[] applied = new int[] { 0 };
         buffer.apply(Collections.singletonList(new Effector() {
             @Override public void apply (int index, float[] data, int start, float now, float dt) {
@@ -55,4 +64,232 @@ public class ParticleBufferTest
         }), 0, 0);
         assertEquals(100, applied[0]);
     }
+
+    @Test
+    public void testCompactApply () {
+        int maxParts = 4096;
+        ParticleBuffer buffer = new ParticleBuffer(maxParts, ParticleBuffer.Layout.COMPACT);
+
+        // add particles that alternately die at time 1 and time 2
+        buffer.add(100, 0, Collections.singletonList(new Initializer() {
+            @Override public void init (int index, float[] data, int start) {
+                data[start+ParticleBuffer.LIFESPAN] = (index % 2 == 0) ? 1 : 2;
+            }
+        }));
+        assertEquals(100, buffer.liveCount());
+
+        final int[] applied = new int[] { 0 };
+        Effector counter = new Effector() {
+            @Override public void apply (int index, float[] data, int start, float now, float dt) {
+                assertEquals(index, start/ParticleBuffer.NUM_FIELDS);
+                assertTrue(now - data[start+ParticleBuffer.BIRTH] <=
+                           data[start+ParticleBuffer.LIFESPAN]);
+                applied[0] += 1;
+            }
+        };
+        assertEquals(100, buffer.apply(Collections.singletonList(counter), 0.5f, 0.5f));
+        assertEquals(100, applied[0]);
+
+        applied[0] = 0;
+        assertEquals(50, buffer.apply(Collections.singletonList(counter), 1.5f, 1));
+        assertEquals(50, applied[0]);
+        assertEquals(50, buffer.liveCount());
+        assertTrue(buffer.isAlive(49));
+        assertFalse(buffer.isAlive(50));
+
+        applied[0] = 0;
+        assertEquals(0, buffer.apply(Collections.singletonList(counter), 2.5f, 1));
+        assertEquals(0, applied[0]);
+    }
+
+    @Test
+    public void testCompactFull () {
+        ParticleBuffer buffer = new ParticleBuffer(10, ParticleBuffer.Layout.COMPACT);
+        buffer.add(7, 0, new ArrayList<Initializer>());
+        buffer.add(7, 0, new ArrayList<Initializer>());
+        assertTrue(buffer.isFull());
+        assertEquals(10, buffer.liveCount());
+        buffer.setAlive(3, false);
+        assertEquals(9, buffer.liveCount());
+        assertFalse(buffer.isFull());
+    }
+
+    @Test
+    public void testClear () {
+        for (ParticleBuffer.Layout layout : ParticleBuffer.Layout.values()) {
+            ParticleBuffer buffer = new ParticleBuffer(64, layout);
+            buffer.add(40, 0, new ArrayList<Initializer>());
+            buffer.clear();
+            assertEquals(0, buffer.liveCount());
+            assertFalse(buffer.isAlive(0));
+            buffer.add(64, 0, new ArrayList<Initializer>());
+            assertTrue(buffer.isAlive(63));
+        }
+    }
+
+    @Test
+    public void testBounds () {
+        for (ParticleBuffer.Layout layout : ParticleBuffer.Layout.values()) {
+            ParticleBuffer buffer = new ParticleBuffer(64, layout);
+            Rectangle bounds = new Rectangle();
+            assertFalse(buffer.computeBounds(2, 2, bounds));
+            buffer.add(10, 0, Collections.singletonList(new Initializer() {
+                @Override public void init (int index, float[] data, int start) {
+                    data[start+ParticleBuffer.M00] = data[start+ParticleBuffer.M11] = 1;
+                    data[start+ParticleBuffer.M01] = data[start+ParticleBuffer.M10] = 0;
+                    data[start+ParticleBuffer.TX] = 10 + index;
+                    data[start+ParticleBuffer.TY] = 20 - index;
+                }
+            }));
+            assertTrue(buffer.computeBounds(2, 2, bounds));
+            assertEquals(9, bounds.x, 1e-6f);
+            assertEquals(10, bounds.y, 1e-6f);
+            assertEquals(11, bounds.width, 1e-6f);
+            assertEquals(11, bounds.height, 1e-6f);
+        }
+    }
+
+    @Test
+    public void testFieldsMatchCompact () {
+        ParticleBuffer compact = new ParticleBuffer(100, ParticleBuffer.Layout.COMPACT);
+        ParticleBuffer fields = new ParticleBuffer(100, ParticleBuffer.Layout.FIELDS);
+        Initializer init = new Initializer() {
+            @Override public void init (int index, float[] data, int start) {
+                data[start+ParticleBuffer.LIFESPAN] = 1 + index % 3;
+                data[start+ParticleBuffer.VEL_X] = index;
+                data[start+ParticleBuffer.VEL_Y] = -index;
+            }
+        };
+        // a bulk effector (Move) and one that relies on the per-particle fallback
+        Effector slow = new Effector() {
+            @Override public void apply (int index, float[] data, int start, float now, float dt) {
+                data[start+ParticleBuffer.VEL_X] *= 0.5f;
+            }
+        };
+        compact.add(60, 0, Collections.singletonList(init));
+        fields.add(60, 0, Collections.singletonList(init));
+        for (int ii = 1; ii <= 4; ii++) {
+            float now = ii * 0.75f;
+            int clive = compact.apply(Arrays.asList(new Move(), slow), now, 0.75f);
+            int flive = fields.apply(Arrays.asList(new Move(), slow), now, 0.75f);
+            assertEquals(clive, flive);
+            float[] part = new float[ParticleBuffer.NUM_FIELDS];
+            for (int pp = 0; pp < flive; pp++) {
+                fields.get(pp, part, 0);
+                int ppos = pp*ParticleBuffer.NUM_FIELDS;
+                for (int ff = 0; ff < ParticleBuffer.NUM_FIELDS; ff++) {
+                    assertEquals(compact.data[ppos+ff], part[ff], 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testParallelMatchesSerial () {
+        // runs its tasks in reverse order to make sure slices don't depend on one another
+        Parallel reversed = new Parallel() {
+            @Override public int threads () { return 3; }
+            @Override public void run (Runnable[] tasks, int count) {
+                for (int ii = count-1; ii >= 0; ii--) tasks[ii].run();
+            }
+        };
+        Initializer init = new Initializer() {
+            @Override public void init (int index, float[] data, int start) {
+                data[start+ParticleBuffer.LIFESPAN] = 1 + index % 3;
+                data[start+ParticleBuffer.VEL_X] = index;
+            }
+        };
+        for (ParticleBuffer.Layout layout : ParticleBuffer.Layout.values()) {
+            ParticleBuffer serial = new ParticleBuffer(200, layout);
+            ParticleBuffer parallel = new ParticleBuffer(200, layout);
+            parallel.setParallel(reversed, 10);
+            serial.add(150, 0, Collections.singletonList(init));
+            parallel.add(150, 0, Collections.singletonList(init));
+            for (int ii = 1; ii <= 4; ii++) {
+                float now = ii * 0.75f;
+                int slive = serial.apply(Collections.singletonList(new Move()), now, 0.75f);
+                int plive = parallel.apply(Collections.singletonList(new Move()), now, 0.75f);
+                assertEquals(slive, plive);
+                assertEquals(slive, parallel.liveCount());
+                float[] spart = new float[ParticleBuffer.NUM_FIELDS];
+                float[] ppart = new float[ParticleBuffer.NUM_FIELDS];
+                for (int pp = 0; pp < 200; pp++) {
+                    assertEquals(serial.isAlive(pp), parallel.isAlive(pp));
+                    if (!serial.isAlive(pp)) continue;
+                    serial.get(pp, spart, 0);
+                    parallel.get(pp, ppart, 0);
+                    assertTrue(Arrays.equals(spart, ppart));
+                }
+                // refill both so that the sparse free slot hints are exercised
+                serial.add(20, now, Collections.singletonList(init));
+                parallel.add(20, now, Collections.singletonList(init));
+            }
+        }
+    }
+
+    @Test
+    public void testBulkInit () {
+        Initializer lifespan = new Initializer() {
+            @Override public void init (int index, float[] data, int start) {
+                data[start+ParticleBuffer.LIFESPAN] = index;
+            }
+            @Override public void init (ParticleBuffer buffer, int from, int to) {
+                for (int pp = from; pp < to; pp++) {
+                    buffer.array(ParticleBuffer.LIFESPAN)[
+                        buffer.offset(ParticleBuffer.LIFESPAN, pp)] = pp;
+                }
+            }
+        };
+        // an initializer that relies on the per-particle fallback
+        Initializer velocity = new Initializer() {
+            @Override public void init (int index, float[] data, int start) {
+                data[start+ParticleBuffer.VEL_X] = 2 * data[start+ParticleBuffer.LIFESPAN];
+            }
+        };
+        for (ParticleBuffer.Layout layout : ParticleBuffer.Layout.values()) {
+            ParticleBuffer buffer = new ParticleBuffer(64, layout);
+            buffer.add(10, 3, Arrays.asList(lifespan, velocity));
+            buffer.add(10, 4, Arrays.asList(lifespan, velocity));
+            buffer.scale(ParticleBuffer.VEL_X, 0, buffer.liveCount(), 0.5f);
+            float[] part = new float[ParticleBuffer.NUM_FIELDS];
+            for (int pp = 0; pp < 20; pp++) {
+                buffer.get(pp, part, 0);
+                assertEquals(pp < 10 ? 3 : 4, part[ParticleBuffer.BIRTH], 0);
+                assertEquals(pp, part[ParticleBuffer.LIFESPAN], 0);
+                if (layout != ParticleBuffer.Layout.SPARSE) {
+                    assertEquals(pp, part[ParticleBuffer.VEL_X], 0);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testBulkRandomTransform () {
+        Randoms rando = Randoms.with(new Random(7));
+        List<Initializer> inits = Arrays.asList(
+            Transform.identity(), Transform.randomScale(rando, 2, 3),
+            Transform.randomOffset(rando, 1));
+        for (ParticleBuffer.Layout layout : ParticleBuffer.Layout.values()) {
+            ParticleBuffer buffer = new ParticleBuffer(64, layout);
+            // a small batch followed by a larger one, which must grow the scratch arrays
+            buffer.add(5, 0, inits);
+            buffer.add(30, 0, inits);
+            float[] part = new float[ParticleBuffer.NUM_FIELDS];
+            Set<Float> offsets = new HashSet<Float>();
+            for (int pp = 0; pp < 35; pp++) {
+                buffer.get(pp, part, 0);
+                float scale = part[ParticleBuffer.M00];
+                assertTrue(scale >= 2 && scale < 3);
+                assertEquals(scale, part[ParticleBuffer.M11], 0);
+                assertEquals(0, part[ParticleBuffer.M01], 0);
+                assertEquals(0, part[ParticleBuffer.M10], 0);
+                for (int ff : new int[] { ParticleBuffer.TX, ParticleBuffer.TY }) {
+                    assertTrue(part[ff] >= -1 && part[ff] < 1);
+                    offsets.add(part[ff]);
+                }
+            }
+            // every particle and axis gets its own offset
+            assertEquals(70, offsets.size());
+        }
+    }
 }
@@ -0,0 +1,66 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.particle;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import react.UnitSlot;
+
+import playn.core.Image;
+import playn.core.util.Clock;
+import playn.java.JavaPlatform;
+import static playn.core.PlayN.graphics;
+
+public class PoolTest
+{
+    static {
+        JavaPlatform.Config config = new JavaPlatform.Config();
+        config.headless = true;
+        JavaPlatform.register(config);
+    }
+
+    @Test
+    public void testReuse () {
+        Particles parts = new Particles().setPooled(true);
+        Image image = graphics().createImage(4, 4);
+        Emitter first = parts.createEmitter(10, image);
+        final int[] stale = new int[2];
+        first.onEmpty.connect(new UnitSlot() {
+            @Override public void onEmit () { stale[0]++; }
+        });
+        first.onExhausted.connect(new UnitSlot() {
+            @Override public void onEmit () { stale[1]++; }
+        });
+        first.layer.setOrigin(5, 6);
+        first.layer.setDepth(3);
+        first.destroy();
+
+        // the pooled emitter is handed out again, without its previous owner's state
+        Emitter second = parts.createEmitter(10, image);
+        assertSame(first, second);
+        assertEquals(0, second.layer.originX(), 0);
+        assertEquals(0, second.layer.originY(), 0);
+        assertEquals(0, second.layer.depth(), 0);
+
+        final int[] fresh = new int[1];
+        second.onEmpty.connect(new UnitSlot() {
+            @Override public void onEmit () { fresh[0]++; }
+        });
+        second.generator = Generator.impulse(0);
+        parts.paint(new TestClock());
+        parts.paint(new TestClock());
+        assertEquals(1, fresh[0]);
+        assertEquals(0, stale[0]);
+        assertEquals(0, stale[1]);
+    }
+
+    protected static class TestClock implements Clock {
+        public float dt () { return 100; }
+        public float time () { return 0; }
+        public float alpha () { return 0; }
+    }
+}
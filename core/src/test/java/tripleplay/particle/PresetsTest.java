@@ -0,0 +1,60 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.particle;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class PresetsTest
+{
+    @Test
+    public void testCompactRoundTrip () {
+        Presets presets = new Presets();
+        presets.add("sparks", "images/spark.png", 200,
+                    new Presets.Step(Presets.Op.IMPULSE, new float[] { 100 }, null),
+                    Arrays.asList(new Presets.Step(Presets.Op.IDENTITY),
+                                  new Presets.Step(Presets.Op.RANDOM_LIFESPAN,
+                                                   new float[] { 0.5f, 1.25f }, null),
+                                  new Presets.Step(Presets.Op.COLOR,
+                                                   new float[] { 1, 0.5f, 0.25f, 1 }, null)),
+                    Arrays.asList(new Presets.Step(Presets.Op.MOVE),
+                                  new Presets.Step(Presets.Op.DRAG,
+                                                   new float[] { 0.9995f, 0.8f }, null),
+                                  new Presets.Step(Presets.Op.ALPHA, new float[] { 1, 0 },
+                                                   "EASE_IN")));
+        presets.add("smoke", null, 50, new Presets.Step(Presets.Op.NONE),
+                    Collections.<Presets.Step>emptyList(), Collections.<Presets.Step>emptyList());
+
+        Presets decoded = Presets.fromCompact(presets.toCompact());
+        assertEquals(2, decoded.presets.size());
+        Presets.Preset sparks = decoded.get("sparks");
+        assertEquals("images/spark.png", sparks.image);
+        assertEquals(200, sparks.maxParticles);
+        assertEquals(3, sparks.initters.size());
+        assertEquals(3, sparks.effectors.size());
+        assertEquals(Presets.Op.IMPULSE, sparks._generator.op);
+        assertEquals(100, sparks._generator.args[0], 0);
+        assertEquals(1.25f, sparks._initters.get(1).args[1], 0);
+        // values that aren't multiples of any fixed precision are preserved exactly
+        assertEquals(0.9995f, sparks._effectors.get(1).args[0], 0);
+        assertEquals(0.8f, sparks._effectors.get(1).args[1], 0);
+        assertEquals("EASE_IN", sparks._effectors.get(2).interp);
+        assertNull(decoded.get("smoke").image);
+        // encoding the decoded presets yields the same data
+        assertEquals(presets.toCompact(), decoded.toCompact());
+    }
+
+    @Test
+    public void testMissingPreset () {
+        try {
+            new Presets().get("nope");
+            fail("Missing preset was returned");
+        } catch (IllegalArgumentException iae) {} // success
+    }
+}
@@ -0,0 +1,97 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.particle;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import react.UnitSlot;
+
+import playn.core.Image;
+import playn.core.util.Clock;
+import playn.java.JavaPlatform;
+import static playn.core.PlayN.graphics;
+
+import tripleplay.particle.init.Lifespan;
+
+public class SleepTest
+{
+    static {
+        JavaPlatform.Config config = new JavaPlatform.Config();
+        config.headless = true;
+        JavaPlatform.register(config);
+    }
+
+    @Test
+    public void testSleep () {
+        Particles parts = new Particles();
+        Emitter emitter = parts.createEmitter(10, graphics().createImage(4, 4));
+        final int[] empties = new int[1];
+        emitter.onEmpty.connect(new UnitSlot() {
+            @Override public void onEmit () { empties[0]++; }
+        });
+
+        // an emitter with nothing to do signals that it's empty once, then sleeps
+        TestClock clock = new TestClock();
+        parts.paint(clock);
+        parts.paint(clock);
+        assertEquals(1, empties[0]);
+        assertEquals(0, parts.activeEmitters());
+
+        // adding particles wakes it immediately
+        emitter.initters.add(Lifespan.constant(0.15f));
+        emitter.addParticles(1);
+        assertEquals(1, parts.activeEmitters());
+        parts.paint(clock);
+        assertEquals(1, empties[0]);
+        parts.paint(clock);
+        assertEquals(2, empties[0]);
+        assertEquals(0, parts.activeEmitters());
+    }
+
+    @Test
+    public void testWakeByField () {
+        Particles parts = new Particles();
+        Image image = graphics().createImage(4, 4);
+        // the second emitter is updated first, so it's asleep before the first one is empty
+        final Emitter second = parts.createEmitter(10, image);
+        Emitter first = parts.createEmitter(10, image);
+        first.initters.add(Lifespan.constant(0.05f));
+        first.generator = Generator.impulse(1);
+        final Recorder gen = new Recorder();
+        first.onEmpty.connect(new UnitSlot() {
+            @Override public void onEmit () { second.generator = gen; }
+        });
+
+        TestClock clock = new TestClock();
+        parts.paint(clock);
+        assertEquals(1, parts.activeEmitters());
+        parts.paint(clock);
+        assertEquals(0, gen.calls);
+        assertNotNull(second.generator);
+
+        // a generator assigned to the sleeping emitter's field wakes it on the next frame
+        parts.paint(clock);
+        assertEquals(1, gen.calls);
+        assertEquals(1, parts.activeEmitters());
+        parts.paint(clock);
+        assertEquals(2, gen.calls);
+    }
+
+    protected static class Recorder extends Generator {
+        public int calls;
+        @Override public boolean generate (Emitter emitter, float now, float dt) {
+            calls++;
+            return false;
+        }
+    }
+
+    protected static class TestClock implements Clock {
+        public float dt () { return 100; }
+        public float time () { return 0; }
+        public float alpha () { return 0; }
+    }
+}
@@ -0,0 +1,48 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.particle;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class TelemetryTest
+{
+    @Test
+    public void testPublish () {
+        Telemetry telem = new Telemetry();
+        Telemetry.Stats a = telem.register(), b = telem.register();
+
+        a.noteSpawned(10);
+        a.noteApplied(2, 500000);
+        a.noteLive(8);
+        b.noteSpawned(5);
+        b.noteLive(5);
+        b.noteRendered(250000);
+        // nothing is visible until the frame's results are published
+        assertEquals(0, (int)telem.total.live.get());
+
+        telem.publish();
+        assertEquals(8, (int)a.live.get());
+        assertEquals(10, (int)a.spawned.get());
+        assertEquals(2, (int)a.died.get());
+        assertEquals(500000L, (long)a.applyNanos.get());
+        assertEquals(13, (int)telem.total.live.get());
+        assertEquals(15, (int)telem.total.spawned.get());
+        assertEquals(250000L, (long)telem.total.renderNanos.get());
+
+        // an emitter that isn't updated retains its live count, but its per-frame counts reset
+        a.noteLive(6);
+        telem.publish();
+        assertEquals(6, (int)a.live.get());
+        assertEquals(5, (int)b.live.get());
+        assertEquals(0, (int)b.spawned.get());
+        assertEquals(11, (int)telem.total.live.get());
+
+        telem.unregister(b);
+        assertFalse(telem.dump().contains(b.label));
+        assertTrue(telem.dump().contains(a.label));
+    }
+}
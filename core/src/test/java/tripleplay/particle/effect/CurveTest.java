@@ -0,0 +1,97 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.particle.effect;
+
+import java.util.Collections;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import playn.core.Color;
+
+import tripleplay.particle.Initializer;
+import tripleplay.particle.ParticleBuffer;
+import tripleplay.util.Interpolator;
+
+public class CurveTest
+{
+    @Test
+    public void testBake () {
+        Curve curve = Curve.builder().key(0, 0).key(0.5f, 1).key(1, 0, Interpolator.EASE_IN).bake();
+        assertEquals(Curve.SAMPLES+1, curve.table.length);
+        assertEquals(0, curve.sample(0), 1e-6f);
+        assertEquals(0.5f, curve.sample(0.25f), 1e-2f);
+        assertEquals(1, curve.sample(0.5f), 1e-6f);
+        assertEquals(0, curve.sample(1), 1e-6f);
+        // out of range ages are clamped
+        assertEquals(0, curve.sample(-1), 1e-6f);
+        assertEquals(0, curve.sample(2), 1e-6f);
+        assertEquals(3, Curve.constant(3).sample(0.7f), 1e-6f);
+    }
+
+    @Test
+    public void testOverLife () {
+        for (ParticleBuffer.Layout layout : ParticleBuffer.Layout.values()) {
+            ParticleBuffer buffer = new ParticleBuffer(16, layout);
+            buffer.add(1, 0, Collections.singletonList(new Initializer() {
+                @Override public void init (int index, float[] data, int start) {
+                    data[start+ParticleBuffer.LIFESPAN] = 1;
+                    data[start+ParticleBuffer.M00] = data[start+ParticleBuffer.M11] = 2;
+                    data[start+ParticleBuffer.ALPHA_RED] = Color.encode(1, 1);
+                    data[start+ParticleBuffer.GREEN_BLUE] = Color.encode(1, 1);
+                }
+            }));
+            buffer.apply(Collections.singletonList(
+                Alpha.overLife(Curve.between(1, 0, Interpolator.LINEAR))), 0, 0);
+            buffer.apply(Collections.singletonList(
+                Tint.overLife(Interpolator.LINEAR, 0xFFFFFF, 0x000000)), 0, 0);
+            Curve grow = Curve.between(1, 3, Interpolator.LINEAR);
+            for (int ii = 0; ii <= 2; ii++) {
+                buffer.apply(Collections.singletonList(Scale.overLife(grow)), ii*0.25f, 0.25f);
+            }
+
+            float[] part = new float[ParticleBuffer.NUM_FIELDS];
+            buffer.get(0, part, 0);
+            assertEquals(1, Color.decodeUpper(part[ParticleBuffer.ALPHA_RED]), 1e-6f);
+            assertEquals(1, Color.decodeLower(part[ParticleBuffer.ALPHA_RED]), 1e-6f);
+            assertEquals(2*2, part[ParticleBuffer.M00], 1e-2f);
+
+            buffer.apply(Collections.singletonList(
+                Alpha.overLife(Curve.between(1, 0, Interpolator.LINEAR))), 0.5f, 0);
+            buffer.apply(Collections.singletonList(
+                Tint.overLife(Interpolator.LINEAR, 0xFFFFFF, 0x000000)), 0.5f, 0);
+            buffer.get(0, part, 0);
+            assertEquals(0.5f, Color.decodeUpper(part[ParticleBuffer.ALPHA_RED]), 1e-2f);
+            assertEquals(0.5f, Color.decodeLower(part[ParticleBuffer.ALPHA_RED]), 1e-2f);
+            assertEquals(0.5f, Color.decodeUpper(part[ParticleBuffer.GREEN_BLUE]), 1e-2f);
+            assertEquals(0.5f, Color.decodeLower(part[ParticleBuffer.GREEN_BLUE]), 1e-2f);
+        }
+    }
+
+    @Test
+    public void testScaleSkippedTime () {
+        for (ParticleBuffer.Layout layout : ParticleBuffer.Layout.values()) {
+            ParticleBuffer buffer = new ParticleBuffer(16, layout);
+            buffer.add(1, 0, Collections.singletonList(new Initializer() {
+                @Override public void init (int index, float[] data, int start) {
+                    data[start+ParticleBuffer.LIFESPAN] = 1;
+                    data[start+ParticleBuffer.M00] = data[start+ParticleBuffer.M11] = 2;
+                }
+            }));
+            Curve grow = Curve.between(1, 3, Interpolator.LINEAR);
+            // the time between updates need not match dt (as when an emitter is culled), and the
+            // scale always matches the particle's age
+            float[] times = { 0, 0.1f, 0.5f, 0.55f, 0.8f }, dts = { 0, 0.1f, 0.1f, 0.05f, 0.25f };
+            float[] part = new float[ParticleBuffer.NUM_FIELDS];
+            for (int ii = 0; ii < times.length; ii++) {
+                buffer.apply(Collections.singletonList(Scale.overLife(grow)), times[ii], dts[ii]);
+                buffer.get(0, part, 0);
+                assertEquals(2*(1+2*times[ii]), part[ParticleBuffer.M00], 2e-2f);
+                assertEquals(2*(1+2*times[ii]), part[ParticleBuffer.M11], 2e-2f);
+            }
+        }
+    }
+}
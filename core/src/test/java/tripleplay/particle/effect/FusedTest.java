@@ -0,0 +1,75 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.particle.effect;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import tripleplay.particle.Effector;
+import tripleplay.particle.Initializer;
+import tripleplay.particle.ParticleBuffer;
+import tripleplay.util.Interpolator;
+
+public class FusedTest
+{
+    @Test
+    public void testCompile () {
+        Effector custom = new Effector() {
+            @Override public void apply (int index, float[] data, int start, float now, float dt) {}
+        };
+        Move move = new Move();
+        List<Effector> effs = Fused.compile(Arrays.asList(
+            new Drag(0.5f), move, custom, move, custom, Alpha.byAge(Interpolator.LINEAR), move));
+        assertEquals(5, effs.size());
+        assertTrue(effs.get(0) instanceof Fused);
+        assertSame(custom, effs.get(1));
+        assertSame(move, effs.get(2));
+        assertSame(custom, effs.get(3));
+        assertTrue(effs.get(4) instanceof Fused);
+    }
+
+    @Test
+    public void testFusedMatchesUnfused () {
+        for (ParticleBuffer.Layout layout : ParticleBuffer.Layout.values()) {
+            List<Effector> effs = Arrays.asList(
+                new Drag(0.9f, 0.8f), new Move(), Alpha.byAge(Interpolator.EASE_IN));
+            ParticleBuffer plain = createBuffer(layout), fused = createBuffer(layout);
+            for (int ii = 1; ii <= 5; ii++) {
+                float now = ii * 0.5f;
+                plain.apply(effs, now, 0.5f);
+                fused.apply(Fused.compile(effs), now, 0.5f);
+                float[] ppart = new float[ParticleBuffer.NUM_FIELDS];
+                float[] fpart = new float[ParticleBuffer.NUM_FIELDS];
+                for (int pp = 0; pp < 50; pp++) {
+                    assertEquals(plain.isAlive(pp), fused.isAlive(pp));
+                    if (!plain.isAlive(pp)) continue;
+                    plain.get(pp, ppart, 0);
+                    fused.get(pp, fpart, 0);
+                    for (int ff = 0; ff < ParticleBuffer.NUM_FIELDS; ff++) {
+                        assertEquals(ppart[ff], fpart[ff], 0);
+                    }
+                }
+            }
+        }
+    }
+
+    protected ParticleBuffer createBuffer (ParticleBuffer.Layout layout) {
+        ParticleBuffer buffer = new ParticleBuffer(50, layout);
+        buffer.add(50, 0, Collections.singletonList(new Initializer() {
+            @Override public void init (int index, float[] data, int start) {
+                data[start+ParticleBuffer.LIFESPAN] = 1 + index % 4;
+                data[start+ParticleBuffer.VEL_X] = index;
+                data[start+ParticleBuffer.VEL_Y] = 2 * index;
+                data[start+ParticleBuffer.ALPHA_RED] = playn.core.Color.encode(1, 0.5f);
+            }
+        }));
+        return buffer;
+    }
+}
@@ -0,0 +1,95 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.particle.effect;
+
+import java.util.Arrays;
+import java.util.Collections;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+import tripleplay.particle.Effector;
+import tripleplay.particle.Initializer;
+import tripleplay.particle.ParticleBuffer;
+import static tripleplay.particle.ParticleBuffer.*;
+
+public class ZonesTest
+{
+    @Test
+    public void testZones () {
+        for (ParticleBuffer.Layout layout : ParticleBuffer.Layout.values()) {
+            Zones zones = new Zones(16)
+                .addAttractor(100, 0, 50, 10)
+                .addKillZone(0, 100, 10)
+                .addKillZone(200, 200, 20, 20)
+                .addCollider(0, 200, 40, 40, 0.5f);
+            ParticleBuffer buffer = new ParticleBuffer(8, layout);
+            // one particle in each zone, plus one outside all of them
+            final float[][] parts = {
+                { 80, 0, 0, 0 }, { 2, 101, 0, 0 }, { 210, 210, 0, 0 }, { 1, 220, 30, 0 },
+                { 500, 500, 1, 1 }
+            };
+            buffer.add(parts.length, 0, Collections.singletonList(new Initializer() {
+                @Override public void init (int index, float[] data, int start) {
+                    data[start+LIFESPAN] = 10;
+                    data[start+TX] = parts[index][0];
+                    data[start+TY] = parts[index][1];
+                    data[start+VEL_X] = parts[index][2];
+                    data[start+VEL_Y] = parts[index][3];
+                }
+            }));
+
+            Effector[] effs = { zones };
+            assertEquals(5, buffer.apply(Arrays.asList(effs), 1, 1));
+            float[] part = new float[NUM_FIELDS];
+            // the attracted particle accelerates toward the attractor
+            find(buffer, 80, 0, part);
+            assertEquals(10 * (1 - 20/50f), part[VEL_X], 1e-4f);
+            // the collider pushes its particle out of its left edge and bounces it
+            find(buffer, 0, 220, part);
+            assertEquals(-15, part[VEL_X], 1e-4f);
+            // the particle outside all zones is unaffected
+            find(buffer, 500, 500, part);
+            assertEquals(1, part[VEL_X], 0);
+
+            // the particles in the kill zones are swept out on the next update
+            assertEquals(3, buffer.apply(Arrays.asList(effs), 2, 1));
+
+            // clearing the zones disables them
+            zones.clear();
+            find(buffer, 80, 0, part);
+            float vx = part[VEL_X];
+            buffer.apply(Arrays.asList(effs), 3, 1);
+            find(buffer, 80, 0, part);
+            assertEquals(vx, part[VEL_X], 0);
+        }
+    }
+
+    @Test
+    public void testManyZones () {
+        Zones zones = new Zones(8);
+        for (int ii = 0; ii < 500; ii++) zones.addKillZone(ii * 10, ii * 10, 4);
+        ParticleBuffer buffer = new ParticleBuffer(1000, ParticleBuffer.Layout.FIELDS);
+        buffer.add(1000, 0, Collections.singletonList(new Initializer() {
+            @Override public void init (int index, float[] data, int start) {
+                data[start+LIFESPAN] = 10;
+                // even particles sit at the center of a zone, odd ones between zones
+                data[start+TX] = data[start+TY] = (index / 2) * 10 + (index % 2) * 5;
+            }
+        }));
+        buffer.apply(Collections.singletonList(zones), 1, 1);
+        assertEquals(500, buffer.apply(Collections.singletonList(zones), 2, 1));
+    }
+
+    protected static void find (ParticleBuffer buffer, float x, float y, float[] into) {
+        for (int pp = 0; pp < buffer.maxParticles(); pp++) {
+            if (!buffer.isAlive(pp)) continue;
+            buffer.get(pp, into, 0);
+            if (into[TX] == x && into[TY] == y) return;
+        }
+        fail("No particle at " + x + "," + y);
+    }
+}
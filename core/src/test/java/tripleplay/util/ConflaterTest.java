@@ -25,6 +25,9 @@ public class ConflaterTest
         for (int ii = Integer.MAX_VALUE; ii >= 0; ii -= 65536) {
             d.addInt(ii).addVarInt(ii);
         }
+        float[] floats = { 0, -0f, 1, -1.5f, 0.1f, Float.MIN_VALUE, Float.MAX_VALUE,
+                           Float.NEGATIVE_INFINITY };
+        for (float f : floats) d.addFloat(f);
         d.addBool(false);
 
         Inflater i = new Inflater(d.encoded());
@@ -43,6 +46,9 @@ public class ConflaterTest
             assertEquals(ii, i.popInt());
             assertEquals(ii, i.popVarInt());
         }
+        for (float f : floats) {
+            assertEquals(Float.floatToIntBits(f), Float.floatToIntBits(i.popFloat()));
+        }
         assertEquals(false, i.popBool());
     }
 }
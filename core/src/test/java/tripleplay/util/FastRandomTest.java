@@ -0,0 +1,44 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.util;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class FastRandomTest
+{
+    @Test
+    public void testSeeded () {
+        FastRandom r1 = new FastRandom(42), r2 = new FastRandom(42);
+        for (int ii = 0; ii < 100; ii++) assertEquals(r1.nextInt(), r2.nextInt());
+        r1.setSeed(7);
+        r2.setSeed(7);
+        assertEquals(r1.nextFloat(), r2.nextFloat(), 0);
+        // a zero seed must not leave the generator stuck at zero
+        assertTrue(new FastRandom(0).nextInt() != 0);
+    }
+
+    @Test
+    public void testRanges () {
+        Randoms rando = Randoms.with(new FastRandom(1));
+        float[] values = new float[3000];
+        rando.fillInRange(values, 1, 3, 1000, -2, 5);
+        float sum = 0;
+        for (int ii = 0; ii < values.length; ii++) {
+            if (ii % 3 != 1) {
+                assertEquals(0, values[ii], 0);
+                continue;
+            }
+            assertTrue(values[ii] >= -2 && values[ii] < 5);
+            sum += values[ii];
+        }
+        assertEquals(1.5f, sum / 1000, 0.25f);
+        for (int ii = 0; ii < 1000; ii++) {
+            int value = rando.getInt(10);
+            assertTrue(value >= 0 && value < 10);
+        }
+    }
+}
@@ -0,0 +1,51 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.util;
+
+import org.junit.*;
+import static org.junit.Assert.*;
+
+public class InterpolatorTest
+{
+    @Test public void testBaked () {
+        Interpolator[] interps = { Interpolator.LINEAR, Interpolator.EASE_INOUT,
+                                   Interpolator.EASE_IN_BACK, Interpolator.EASE_OUT_BACK };
+        for (Interpolator interp : interps) {
+            Interpolator baked = Interpolator.baked(interp);
+            for (int ii = 0; ii <= 100; ii++) {
+                float dt = ii * 3.7f;
+                assertEquals(interp.apply(10, -5, dt, 370), baked.apply(10, -5, dt, 370), 1e-3f);
+            }
+            // baked interpolators clamp rather than extrapolate
+            assertEquals(5, baked.apply(10, -5, 500, 370), 1e-6f);
+            assertEquals(5, baked.apply(10, -5, 1, 0), 0);
+        }
+    }
+
+    @Test public void testCubicBezier () {
+        // a bezier with its control points on the diagonal is linear
+        Interpolator linear = Interpolator.cubicBezier(0.25f, 0.25f, 0.75f, 0.75f);
+        for (int ii = 0; ii <= 10; ii++) assertEquals(ii, linear.apply(0, 10, ii, 10), 1e-3f);
+        // CSS ease-in-out is symmetric about its midpoint
+        Interpolator ease = Interpolator.cubicBezier(0.42f, 0, 0.58f, 1);
+        assertEquals(0.5f, ease.apply(0, 1, 0.5f, 1), 1e-3f);
+        assertEquals(1 - ease.apply(0, 1, 0.2f, 1), ease.apply(0, 1, 0.8f, 1), 1e-3f);
+        assertTrue(ease.apply(0, 1, 0.2f, 1) < 0.2f);
+        try {
+            Interpolator.cubicBezier(-1, 0, 1, 1);
+            fail("Bezier accepted out of range control point");
+        } catch (IllegalArgumentException iae) {} // success
+    }
+
+    @Test public void testSpring () {
+        Interpolator spring = Interpolator.spring(6, 3);
+        assertEquals(0, spring.apply(0, 1, 0, 1), 1e-6f);
+        assertEquals(1, spring.apply(0, 1, 1, 1), 1e-6f);
+        float max = 0;
+        for (int ii = 0; ii <= 100; ii++) max = Math.max(max, spring.apply(0, 1, ii, 100));
+        assertTrue("Spring should overshoot", max > 1);
+    }
+}
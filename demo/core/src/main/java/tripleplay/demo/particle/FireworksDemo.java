@@ -57,8 +57,8 @@ public class FireworksDemo extends ParticleDemo
             float ty = 100 + rando.getFloat(graphics().height()-200);
             explode1.layer.setTranslation(tx, ty);
             explode2.layer.setTranslation(tx, ty);
-            explode1.generator = Generator.impulse(200);
-            explode2.generator = Generator.impulse(200);
+            explode1.setGenerator(Generator.impulse(200));
+            explode2.setGenerator(Generator.impulse(200));
         }});
     }
 
@@ -0,0 +1,79 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.platform;
+
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import tripleplay.util.Parallel;
+
+/**
+ * Runs tasks on a fixed pool of daemon threads, plus the calling thread.
+ */
+public class JavaParallel extends Parallel
+{
+    /**
+     * Creates an executor that runs up to {@code threads} tasks at once. One of those tasks is
+     * always run on the calling thread, so {@code threads-1} pool threads are created.
+     */
+    public JavaParallel (int threads) {
+        _threads = Math.max(1, threads);
+        _futures = new Future<?>[_threads];
+        _pool = Executors.newFixedThreadPool(Math.max(1, _threads-1), new ThreadFactory() {
+            public Thread newThread (Runnable task) {
+                Thread thread = new Thread(task, "TriplePlay Parallel " + (++_created));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    @Override public int threads () {
+        return _threads;
+    }
+
+    @Override public void run (Runnable[] tasks, int count) {
+        if (count == 1 || _threads == 1) {
+            SERIAL.run(tasks, count);
+            return;
+        }
+        if (_futures.length < count) _futures = new Future<?>[count];
+
+        // hand all but the first task to the pool and run that one ourselves
+        for (int ii = 1; ii < count; ii++) _futures[ii] = _pool.submit(tasks[ii]);
+        RuntimeException failure = null;
+        try {
+            tasks[0].run();
+        } catch (RuntimeException e) {
+            failure = e;
+        }
+        for (int ii = 1; ii < count; ii++) {
+            try {
+                _futures[ii].get();
+            } catch (ExecutionException e) {
+                if (failure == null) failure = (e.getCause() instanceof RuntimeException) ?
+                    (RuntimeException)e.getCause() : new RuntimeException(e.getCause());
+            } catch (InterruptedException e) {
+                if (failure == null) failure = new RuntimeException(e);
+            }
+            _futures[ii] = null;
+        }
+        if (failure != null) throw failure;
+    }
+
+    /** Shuts down this executor's pool threads. */
+    public void shutdown () {
+        _pool.shutdown();
+    }
+
+    protected final int _threads;
+    protected final ExecutorService _pool;
+    protected Future<?>[] _futures;
+    protected int _created;
+}
@@ -20,6 +20,7 @@ import playn.java.JavaPlatform;
 import react.Value;
 import react.ValueView;
 import tripleplay.ui.Field;
+import tripleplay.util.Parallel;
 
 import com.google.common.base.Function;
 import com.google.common.collect.Lists;
@@ -101,6 +102,16 @@ public class JavaTPPlatform extends TPPlatform
         return new JavaImageOverlay(image);
     }
 
+    @Override public synchronized Parallel parallel () {
+        if (_parallel == null) _parallel = new JavaParallel(
+            Runtime.getRuntime().availableProcessors());
+        return _parallel;
+    }
+
+    @Override public long nanoTime () {
+        return System.nanoTime();
+    }
+
     /**
      * Gets the top-level window used by the tripleplay platform.
      */
@@ -147,4 +158,6 @@ public class JavaTPPlatform extends TPPlatform
     protected OS _os = OS.UNKNOWN;
 
     protected final Value<Boolean> _false = Value.create(false);
+
+    protected JavaParallel _parallel;
 }
@@ -0,0 +1,45 @@
+//
+// Triple Play - utilities for use in PlayN-based games
+// Copyright (c) 2011-2013, Three Rings Design, Inc. - All rights reserved.
+// http://github.com/threerings/tripleplay/blob/master/LICENSE
+
+package tripleplay.tools
+
+import java.io.{BufferedWriter, File, FileOutputStream, OutputStreamWriter}
+
+import scala.io.Source
+
+import playn.core.json.JsonImpl
+
+import tripleplay.flump.Library
+
+/**
+ * Converts a Flump {@code library.json} into the compact encoding read by {@link
+ * Library#fromCompactAssets}, which loads much faster than the JSON.
+ */
+object LibraryCompactor {
+  val usage = """Usage: LibraryCompactor source [target]
+  |  source is a library.json file, or a directory containing one
+  |  target defaults to library.compact alongside the source""" stripMargin('|')
+
+  def main (args :Array[String]) {
+    if (args.length < 1 || args.length > 2) {
+      System.err.println(usage)
+      System.exit(255)
+    }
+    val arg = new File(args(0))
+    val src = if (arg.isDirectory) new File(arg, "library.json") else arg
+    val dst = if (args.length > 1) new File(args(1))
+              else new File(src.getAbsoluteFile.getParentFile, Library.COMPACT_FILE)
+    compact(src, dst)
+  }
+
+  /** Reads the JSON library in {@code source} and writes its compact encoding to {@code target}. */
+  def compact (source :File, target :File) {
+    val in = Source.fromFile(source, "UTF-8")
+    val text = try in.mkString finally in.close()
+    val out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(target), "UTF-8"))
+    try out.write(Library.toCompact(new JsonImpl().parse(text)))
+    finally out.close()
+  }
+}